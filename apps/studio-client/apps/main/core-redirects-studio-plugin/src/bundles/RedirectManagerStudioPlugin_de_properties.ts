@@ -46,9 +46,16 @@ ResourceBundleUtil.override(RedirectManagerStudioPlugin_properties, {
   redirectmanager_editor_field_type_invalid: "Ungültiger Wert",
   redirectmanager_editor_field_parameters: "Parameter",
   redirectmanager_editor_field_description: "Beschreibung",
+  redirectmanager_editor_field_priority: "Priorität (von überlappenden Regex-Redirects gewinnt die höchste)",
+  redirectmanager_editor_field_statusCode: "Status-Code",
+  redirectmanager_editor_field_statusCode_301: "301 Dauerhaft verschoben",
+  redirectmanager_editor_field_statusCode_302: "302 Gefunden (vorübergehend)",
+  redirectmanager_editor_field_statusCode_307: "307 Vorübergehende Umleitung (behält die Methode)",
+  redirectmanager_editor_field_statusCode_308: "308 Dauerhafte Umleitung (behält die Methode)",
   redirectmanager_editor_field_sourceType: "Quell-Url-Type",
   redirectmanager_editor_field_sourceType_plain: "Plain",
   redirectmanager_editor_field_sourceType_regex: "Regulärer Ausdruck",
+  redirectmanager_editor_field_sourceType_prefix: "Präfix",
   redirectmanager_editor_actions_new_tooltip: "Neue Umleitung hinzufügen",
   redirectmanager_editor_actions_new_text: "Neue Umleitung",
   redirectmanager_editor_actions_new_success_text: "Die Umleitung wurde erfolgreich angelegt!<br/>Die Umleitung ist nicht direkt in der Tabelle sichtbar.<br/>Bitte klicken Sie den Aktualisierungs Button.",
@@ -115,9 +122,10 @@ ResourceBundleUtil.override(RedirectManagerStudioPlugin_properties, {
   redirectmanager_editor_actions_csvupload_import_result_button_ok_text: "OK",
   redirectmanager_editor_actions_csvupload_import_error_length_invalid: "Es werden 6 Spalten für den Import einer Umleitung benötigt.",
   redirectmanager_editor_actions_csvupload_import_error_active_invalid: "Der Wert für 'active' darf nur true oder false sein.",
-  redirectmanager_editor_actions_csvupload_import_error_sourceUrlType_invalid: "Der Wert für 'sourceUrlType' darf entweder 'REGEX' oder 'PLAIN' sein.",
+  redirectmanager_editor_actions_csvupload_import_error_sourceUrlType_invalid: "Der Wert für 'sourceUrlType' darf 'REGEX', 'PLAIN' oder 'PREFIX' sein.",
   redirectmanager_editor_actions_csvupload_import_error_source_invalid: "Der Wert für die Quelle darf nicht leer sein und muss mit einem '/' beginnen.",
   redirectmanager_editor_actions_csvupload_import_error_source_whitespace: "Der Wert für die Quelle darf keine Leerzeichen enthalten.",
+  redirectmanager_editor_actions_csvupload_import_error_source_prefix_invalid: "Ein Präfix darf keine Platzhalter ('*') enthalten, er gilt ohnehin für alle Urls unterhalb.",
   redirectmanager_editor_actions_csvupload_import_error_source_already_exists: "Es existiert bereits eine Umleitung für die Quelle mit den gleichen Quell-Parametern.",
   redirectmanager_editor_actions_csvupload_import_error_target_missing: "Die Umleitung benötigt ein Ziel.",
   redirectmanager_editor_actions_csvupload_import_error_target_invalid: "Um die Umleitung publizieren zu können muss das Ziel publiziert sein.",
@@ -130,12 +138,15 @@ ResourceBundleUtil.override(RedirectManagerStudioPlugin_properties, {
   redirectmanager_editor_actions_csvupload_import_error_parsing_failure: "Die Umleitung konnte nicht erstellt werden, da die Quell- oder Ziel-Parameter nicht gelesen werden konnten.",
   redirectmanager_editor_error_source_invalid: "Der Wert für die Quelle darf nicht leer sein und muss mit einem '/' beginnen.",
   redirectmanager_editor_error_source_whitespace: "Der Wert für die Quelle darf keine Leerzeichen enthalten.",
+  redirectmanager_editor_error_source_prefix_invalid: "Ein Präfix darf keine Platzhalter ('*') enthalten, er gilt ohnehin für alle Urls unterhalb.",
   redirectmanager_editor_error_source_already_exists: "Es existiert bereits eine Umleitung für die Quelle mit den gleichen Quell-Parametern.",
   redirectmanager_editor_error_target_missing: "Die Umleitung benötigt ein Ziel.",
   redirectmanager_editor_error_target_invalid: "Um die Umleitung publizieren zu können muss das Ziel publiziert sein.",
   redirectmanager_editor_error_target_both: "Es sollte ein \"Ziel-Inhalt\" oder eine \"Ziel-Url\" verwendet werden, nicht beide.",
   redirectmanager_editor_error_target_url_invalid: "Die Ziel-Url ist ungültig.",
   redirectmanager_editor_error_description_invalid: "Die Beschreibung ist ungültig. Sie darf nur 1024 Zeichen lang sein.",
+  redirectmanager_editor_error_priority_invalid: "Die Priorität ist ungültig. Sie muss eine ganze Zahl sein.",
+  redirectmanager_editor_error_statusCode_invalid: "Der Status-Code ist ungültig. Erlaubt sind 301, 302, 307 und 308.",
   redirectmanager_editor_grid_search_label: "Filter:",
   redirectmanager_editor_grid_search_empty_text: "Suchbegriff eingeben",
   redirectmanager_editor_grid_site_selector_label: "Umleitung der Seite:",
@@ -49,9 +49,16 @@ interface RedirectManagerStudioPlugin_properties {
   redirectmanager_editor_field_type_invalid: string;
   redirectmanager_editor_field_parameters: string;
   redirectmanager_editor_field_description: string;
+  redirectmanager_editor_field_priority: string;
+  redirectmanager_editor_field_statusCode: string;
+  redirectmanager_editor_field_statusCode_301: string;
+  redirectmanager_editor_field_statusCode_302: string;
+  redirectmanager_editor_field_statusCode_307: string;
+  redirectmanager_editor_field_statusCode_308: string;
   redirectmanager_editor_field_sourceType: string;
   redirectmanager_editor_field_sourceType_plain: string;
   redirectmanager_editor_field_sourceType_regex: string;
+  redirectmanager_editor_field_sourceType_prefix: string;
   redirectmanager_editor_field_parameterName: string;
   redirectmanager_editor_field_parameterValue: string;
   redirectmanager_editor_field_sourceParameters: string;
@@ -133,6 +140,7 @@ interface RedirectManagerStudioPlugin_properties {
   redirectmanager_editor_actions_csvupload_import_error_sourceUrlType_invalid: string;
   redirectmanager_editor_actions_csvupload_import_error_source_invalid: string;
   redirectmanager_editor_actions_csvupload_import_error_source_whitespace: string;
+  redirectmanager_editor_actions_csvupload_import_error_source_prefix_invalid: string;
   redirectmanager_editor_actions_csvupload_import_error_source_already_exists: string;
   redirectmanager_editor_actions_csvupload_import_error_target_missing: string;
   redirectmanager_editor_actions_csvupload_import_error_target_invalid: string;
@@ -145,12 +153,15 @@ interface RedirectManagerStudioPlugin_properties {
   redirectmanager_editor_actions_csvupload_import_error_parsing_failure: string;
   redirectmanager_editor_error_source_invalid: string;
   redirectmanager_editor_error_source_whitespace: string;
+  redirectmanager_editor_error_source_prefix_invalid: string;
   redirectmanager_editor_error_source_already_exists: string;
   redirectmanager_editor_error_target_missing: string;
   redirectmanager_editor_error_target_invalid: string;
   redirectmanager_editor_error_target_both: string;
   redirectmanager_editor_error_target_url_invalid: string;
   redirectmanager_editor_error_description_invalid: string;
+  redirectmanager_editor_error_priority_invalid: string;
+  redirectmanager_editor_error_statusCode_invalid: string;
   redirectmanager_editor_grid_search_label: string;
   redirectmanager_editor_grid_search_empty_text: string;
   redirectmanager_editor_grid_site_selector_label: string;
@@ -196,9 +207,16 @@ const RedirectManagerStudioPlugin_properties: RedirectManagerStudioPlugin_proper
   redirectmanager_editor_field_type_invalid: "Invalid value",
   redirectmanager_editor_field_parameters: "Parameters",
   redirectmanager_editor_field_description: "Description",
+  redirectmanager_editor_field_priority: "Priority (of overlapping regex redirects, the highest wins)",
+  redirectmanager_editor_field_statusCode: "Status Code",
+  redirectmanager_editor_field_statusCode_301: "301 Moved Permanently",
+  redirectmanager_editor_field_statusCode_302: "302 Found (temporary)",
+  redirectmanager_editor_field_statusCode_307: "307 Temporary Redirect (keeps the method)",
+  redirectmanager_editor_field_statusCode_308: "308 Permanent Redirect (keeps the method)",
   redirectmanager_editor_field_sourceType: "Source-Type",
   redirectmanager_editor_field_sourceType_plain: "Plain",
   redirectmanager_editor_field_sourceType_regex: "Regular Expression",
+  redirectmanager_editor_field_sourceType_prefix: "Prefix",
   redirectmanager_editor_field_parameterName: "Name",
   redirectmanager_editor_field_parameterValue: "Value",
   redirectmanager_editor_field_sourceParameters: "Source Parameters",
@@ -277,9 +295,10 @@ const RedirectManagerStudioPlugin_properties: RedirectManagerStudioPlugin_proper
   redirectmanager_editor_actions_csvupload_import_result_button_ok_text: "OK",
   redirectmanager_editor_actions_csvupload_import_error_length_invalid: "Invalid length. Six columns are required to import a redirect.",
   redirectmanager_editor_actions_csvupload_import_error_active_invalid: "The value for 'active' may only be true or false.",
-  redirectmanager_editor_actions_csvupload_import_error_sourceUrlType_invalid: "The value for'sourceUrlType' should be'REGEX' or'PLAIN'.",
+  redirectmanager_editor_actions_csvupload_import_error_sourceUrlType_invalid: "The value for'sourceUrlType' should be'REGEX','PLAIN' or'PREFIX'.",
   redirectmanager_editor_actions_csvupload_import_error_source_invalid: "The value for the source must not be empty and must start with '/'.",
   redirectmanager_editor_actions_csvupload_import_error_source_whitespace: "The value for the source must not contain whitespace characters.",
+  redirectmanager_editor_actions_csvupload_import_error_source_prefix_invalid: "A prefix source must not contain wildcards ('*'), it matches all urls below it anyway.",
   redirectmanager_editor_actions_csvupload_import_error_source_already_exists: "There is already a redirect for that source url and source parameters.",
   redirectmanager_editor_actions_csvupload_import_error_target_missing: "The redirect must contain a target.",
   redirectmanager_editor_actions_csvupload_import_error_target_invalid: "To publish the redirect the target must be published.",
@@ -292,12 +311,15 @@ const RedirectManagerStudioPlugin_properties: RedirectManagerStudioPlugin_proper
   redirectmanager_editor_actions_csvupload_import_error_parsing_failure: "The redirect could not be created because the source or target parameters could not be read.",
   redirectmanager_editor_error_source_invalid: "The value for the source must not be empty and must start with '/'.",
   redirectmanager_editor_error_source_whitespace: "The value for the source must not contain whitespace characters.",
+  redirectmanager_editor_error_source_prefix_invalid: "A prefix source must not contain wildcards ('*'), it matches all urls below it anyway.",
   redirectmanager_editor_error_source_already_exists: "There is already a redirect for that source url and source parameters.",
   redirectmanager_editor_error_target_missing: "The redirect must contain a target.",
   redirectmanager_editor_error_target_invalid: "To publish the redirect the target must be published.",
   redirectmanager_editor_error_target_both: "Use a either a \"Target Link\" or a \"Target Url\", bot not both.",
   redirectmanager_editor_error_target_url_invalid: "The target-Url is invalid.",
   redirectmanager_editor_error_description_invalid: "The description is invalid, only 1024 chars are allowed.",
+  redirectmanager_editor_error_priority_invalid: "The priority is invalid, only whole numbers are allowed.",
+  redirectmanager_editor_error_statusCode_invalid: "The status code is invalid, only 301, 302, 307 and 308 are allowed.",
   redirectmanager_editor_grid_search_label: "Filter Redirects:",
   redirectmanager_editor_grid_search_empty_text: "Enter search term",
   redirectmanager_editor_grid_site_selector_label: "Redirects for Site:",
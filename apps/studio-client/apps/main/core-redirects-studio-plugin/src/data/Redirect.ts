@@ -57,6 +57,14 @@ abstract class Redirect extends RemoteBean {
 
   abstract isImported(): boolean;
 
+  abstract getPriority(): number;
+
+  abstract setPriority(priority: number): void;
+
+  abstract getStatusCode(): number;
+
+  abstract setStatusCode(statusCode: number): void;
+
   abstract getSourceType(): string;
 
   abstract setSourceType(sourceType: string): void;
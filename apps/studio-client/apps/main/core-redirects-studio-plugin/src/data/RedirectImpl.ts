@@ -48,6 +48,8 @@ class RedirectImpl extends RemoteBeanImpl implements Redirect {
 
   static readonly SOURCE_TYPE_REGEX: string = "REGEX";
 
+  static readonly SOURCE_TYPE_PREFIX: string = "PREFIX";
+
   static readonly TARGET_LINK: string = "targetLink";
 
   static readonly TARGET_LINK_NAME: string = "targetLinkName";
@@ -58,6 +60,12 @@ class RedirectImpl extends RemoteBeanImpl implements Redirect {
 
   static readonly IMPORTED: string = "imported";
 
+  static readonly PRIORITY: string = "priority";
+
+  static readonly STATUS_CODE: string = "statusCode";
+
+  static readonly STATUS_CODE_DEFAULT: number = 301;
+
   static readonly SITE_ID: string = "siteId";
 
   static readonly SOURCE_PARAMETERS: string = "sourceParameters";
@@ -75,10 +83,13 @@ class RedirectImpl extends RemoteBeanImpl implements Redirect {
     RedirectImpl.SOURCE_TYPE,
     RedirectImpl.SOURCE_TYPE_PLAIN,
     RedirectImpl.SOURCE_TYPE_REGEX,
+    RedirectImpl.SOURCE_TYPE_PREFIX,
     RedirectImpl.TARGET_LINK,
     RedirectImpl.TARGET_LINK_NAME,
     RedirectImpl.DESCRIPTION,
     RedirectImpl.IMPORTED,
+    RedirectImpl.PRIORITY,
+    RedirectImpl.STATUS_CODE,
     RedirectImpl.SITE_ID,
     RedirectImpl.SOURCE_PARAMETERS,
     RedirectImpl.TARGET_PARAMETERS,
@@ -161,6 +172,22 @@ class RedirectImpl extends RemoteBeanImpl implements Redirect {
     return this.get(RedirectImpl.IMPORTED);
   }
 
+  getPriority(): number {
+    return this.get(RedirectImpl.PRIORITY);
+  }
+
+  setPriority(priority: number): void {
+    this.set(RedirectImpl.PRIORITY, priority);
+  }
+
+  getStatusCode(): number {
+    return this.get(RedirectImpl.STATUS_CODE);
+  }
+
+  setStatusCode(statusCode: number): void {
+    this.set(RedirectImpl.STATUS_CODE, statusCode);
+  }
+
   getSourceType(): string {
     return this.get(RedirectImpl.SOURCE_TYPE);
   }
@@ -25,6 +25,7 @@ import FieldContainer from "@jangaroo/ext-ts/form/FieldContainer";
 import Checkbox from "@jangaroo/ext-ts/form/field/Checkbox";
 import ComboBox from "@jangaroo/ext-ts/form/field/ComboBox";
 import DisplayField from "@jangaroo/ext-ts/form/field/Display";
+import NumberField from "@jangaroo/ext-ts/form/field/Number";
 import TextArea from "@jangaroo/ext-ts/form/field/TextArea";
 import FitLayout from "@jangaroo/ext-ts/layout/container/Fit";
 import Config from "@jangaroo/runtime/Config";
@@ -126,6 +127,35 @@ class RedirectEditPanel extends RedirectEditPanelBase {
 
             Config(FormSpacerElement, { height: "10px" }),
 
+            Config(ComboBox, {
+              itemId: "statusCodeField",
+              fieldLabel: RedirectManagerStudioPlugin_properties.redirectmanager_editor_field_statusCode,
+              forceSelection: true,
+              triggerAction: "all",
+              editable: false,
+              store: [
+                [301, RedirectManagerStudioPlugin_properties.redirectmanager_editor_field_statusCode_301],
+                [302, RedirectManagerStudioPlugin_properties.redirectmanager_editor_field_statusCode_302],
+                [307, RedirectManagerStudioPlugin_properties.redirectmanager_editor_field_statusCode_307],
+                [308, RedirectManagerStudioPlugin_properties.redirectmanager_editor_field_statusCode_308],
+              ],
+              ...ConfigUtils.append({
+                plugins: [
+                  Config(BindPropertyPlugin, {
+                    bidirectional: true,
+                    bindTo: RedirectEditPanelBase.getBindTo(config.localModel, RedirectImpl.STATUS_CODE),
+                  }),
+                ],
+              }),
+            }),
+
+            Config(ErrorFieldContainer, {
+              errorMessagesVE: config.errorMessagesVE,
+              propertyName: RedirectImpl.STATUS_CODE,
+            }),
+
+            Config(FormSpacerElement, { height: "10px" }),
+
             Config(RedirectSourceFieldContainer, {
               errorMessagesVE: config.errorMessagesVE,
               sourceUrlVE: RedirectEditPanelBase.getBindTo(config.localModel, RedirectImpl.SOURCE),
@@ -189,6 +219,7 @@ class RedirectEditPanel extends RedirectEditPanelBase {
               store: [
                 [RedirectImpl.SOURCE_TYPE_PLAIN, RedirectManagerStudioPlugin_properties.redirectmanager_editor_field_sourceType_plain],
                 [RedirectImpl.SOURCE_TYPE_REGEX, RedirectManagerStudioPlugin_properties.redirectmanager_editor_field_sourceType_regex],
+                [RedirectImpl.SOURCE_TYPE_PREFIX, RedirectManagerStudioPlugin_properties.redirectmanager_editor_field_sourceType_prefix],
               ],
               ...ConfigUtils.append({
                 plugins: [
@@ -285,6 +316,24 @@ class RedirectEditPanel extends RedirectEditPanelBase {
               }),
             }),
 
+            Config(NumberField, {
+              fieldLabel: RedirectManagerStudioPlugin_properties.redirectmanager_editor_field_priority,
+              allowDecimals: false,
+              ...ConfigUtils.append({
+                plugins: [
+                  Config(BindPropertyPlugin, {
+                    bidirectional: true,
+                    bindTo: RedirectEditPanelBase.getBindTo(config.localModel, RedirectImpl.PRIORITY),
+                  }),
+                ],
+              }),
+            }),
+
+            Config(ErrorFieldContainer, {
+              errorMessagesVE: config.errorMessagesVE,
+              propertyName: RedirectImpl.PRIORITY,
+            }),
+
           ],
         }),
       ],
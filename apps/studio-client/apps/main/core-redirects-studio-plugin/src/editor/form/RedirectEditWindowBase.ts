@@ -73,6 +73,7 @@ class RedirectEditWindowBase extends Window {
   #initValidationChangeListeners(): void {
     this.getLocalModel().addPropertyChangeListener(RedirectImpl.ACTIVE, bind(this, this.validateRedirect));
     this.getLocalModel().addPropertyChangeListener(RedirectImpl.SOURCE, bind(this, this.validateRedirect));
+    this.getLocalModel().addPropertyChangeListener(RedirectImpl.SOURCE_TYPE, bind(this, this.validateRedirect));
     this.getLocalModel().addPropertyChangeListener(RedirectImpl.TARGET_LINK, bind(this, this.validateRedirect));
     this.getLocalModel().addPropertyChangeListener(RedirectImpl.TARGET_URL, bind(this, this.validateRedirect));
     const lifecycleStatusVE = ValueExpressionFactory.create(RedirectImpl.TARGET_LINK, this.getLocalModel()).extendBy("0", "lifecycleStatus");
@@ -88,8 +89,9 @@ class RedirectEditWindowBase extends Window {
     const targetUrl: string = this.getLocalModel().get(RedirectImpl.TARGET_URL);
     const active: boolean = this.getLocalModel().get(RedirectImpl.ACTIVE);
     const sourceParameters: Array<any> = this.getLocalModel().get(RedirectImpl.SOURCE_PARAMETERS);
+    const sourceType: string = this.getLocalModel().get(RedirectImpl.SOURCE_TYPE);
     RedirectsUtil
-      .validateRedirect(siteId, redirectId, this.getLocalModel().get(RedirectImpl.SOURCE), targetId, targetUrl, active, sourceParameters)
+      .validateRedirect(siteId, redirectId, this.getLocalModel().get(RedirectImpl.SOURCE), targetId, targetUrl, active, sourceParameters, sourceType)
       .then(bind(this, this.#handleValidationResponse), RedirectEditWindowBase.#validationErrorHandler);
   }
 
@@ -111,6 +113,8 @@ class RedirectEditWindowBase extends Window {
       model.set(RedirectImpl.ACTIVE, this.#redirect.isActive());
       model.set(RedirectImpl.TARGET_LINK, this.#redirect.getTargetLink() ? [this.#redirect.getTargetLink()] : []);
       model.set(RedirectImpl.DESCRIPTION, this.#redirect.getDescription());
+      model.set(RedirectImpl.PRIORITY, this.#redirect.getPriority());
+      model.set(RedirectImpl.STATUS_CODE, this.#redirect.getStatusCode());
       model.set(RedirectImpl.SOURCE, this.#redirect.getSource());
       model.set(RedirectImpl.TARGET_URL, this.#redirect.getTargetUrl());
       model.set(RedirectImpl.SOURCE_TYPE, this.#redirect.getSourceType());
@@ -124,6 +128,8 @@ class RedirectEditWindowBase extends Window {
       model.set(RedirectImpl.SOURCE, "/");
       model.set(RedirectImpl.SOURCE_TYPE, RedirectEditWindowBase.#SOURCE_TYPE_DEFAULT);
       model.set(RedirectImpl.REDIRECT_TYPE, RedirectImpl.REDIRECT_TYPE_404);
+      model.set(RedirectImpl.PRIORITY, 0);
+      model.set(RedirectImpl.STATUS_CODE, RedirectImpl.STATUS_CODE_DEFAULT);
       model.set(RedirectImpl.CREATION_DATE, new Date());
       model.set(RedirectImpl.SOURCE_PARAMETERS, []);
       model.set(RedirectImpl.TARGET_PARAMETERS, []);
@@ -179,6 +185,8 @@ class RedirectEditWindowBase extends Window {
       this.#redirect.setTargetLink(model.get(RedirectImpl.TARGET_LINK)[0]);
       this.#redirect.setTargetUrl(model.get(RedirectImpl.TARGET_URL));
       this.#redirect.setDescription(model.get(RedirectImpl.DESCRIPTION));
+      this.#redirect.setPriority(model.get(RedirectImpl.PRIORITY));
+      this.#redirect.setStatusCode(model.get(RedirectImpl.STATUS_CODE));
       this.#redirect.setSource(model.get(RedirectImpl.SOURCE));
       this.#redirect.setSourceType(model.get(RedirectImpl.SOURCE_TYPE));
       this.#redirect.setRedirectType(model.get(RedirectImpl.REDIRECT_TYPE));
@@ -197,6 +205,8 @@ class RedirectEditWindowBase extends Window {
         //Default value, if the input field is hidden (because of missing permissions)
         sourceType ? sourceType : RedirectEditWindowBase.#SOURCE_TYPE_DEFAULT,
         model.get(RedirectImpl.REDIRECT_TYPE),
+        model.get(RedirectImpl.PRIORITY),
+        model.get(RedirectImpl.STATUS_CODE),
         model.get(RedirectImpl.SOURCE_PARAMETERS),
         model.get(RedirectImpl.TARGET_PARAMETERS),
       );
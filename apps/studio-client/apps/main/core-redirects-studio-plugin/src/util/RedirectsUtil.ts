@@ -78,8 +78,8 @@ class RedirectsUtil {
    * Creates a new {@link Redirect} with the given properties
    */
   static createRedirect(siteId: string, active: boolean, targetLink: Content, targetUrl: string,
-    description: string, source: string, sourceType: string, redirectType: string,
-    sourceParameters: Array<any>, targetParameters: Array<any>): void {
+    description: string, source: string, sourceType: string, redirectType: string, priority: number,
+    statusCode: number, sourceParameters: Array<any>, targetParameters: Array<any>): void {
     const rsm = new RemoteServiceMethod("redirects/" + siteId + "/" + RedirectsUtil.#CREATE_URI_SEGMENT, "POST", true);
     rsm.request({
       active: active,
@@ -89,6 +89,8 @@ class RedirectsUtil {
       source: source,
       sourceUrlType: sourceType,
       redirectType: redirectType,
+      priority: priority,
+      statusCode: statusCode,
       sourceParameters: sourceParameters,
       targetParameters: targetParameters,
     },
@@ -226,6 +228,7 @@ class RedirectsUtil {
    * @param targetUrl the targetUrl
    * @param active true, if the redirect is published
    * @param sourceParameters a list of SourceUrlParameters
+   * @param sourceUrlType the type of the source url
    *
    * @return The promise. Resolve method signature: <code>function(response:ValidationResponse):void</code>
    */
@@ -235,7 +238,8 @@ class RedirectsUtil {
     targetId: string,
     targetUrl: string,
     active: boolean,
-    sourceParameters: Array<any>): IPromise {
+    sourceParameters: Array<any>,
+    sourceUrlType: string): IPromise {
     const urlTemplate = "/{0}/validate";
 
     const joined = sourceParameters
@@ -254,6 +258,7 @@ class RedirectsUtil {
       targetUrl: targetUrl,
       active: active,
       sourceParameters: joined,
+      sourceUrlType: sourceUrlType,
     };
 
     const url = StringUtil.format(urlTemplate, siteId);
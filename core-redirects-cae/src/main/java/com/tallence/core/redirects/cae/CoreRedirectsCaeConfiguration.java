@@ -19,17 +19,25 @@ import com.coremedia.blueprint.base.multisite.BlueprintMultisiteConfiguration;
 import com.coremedia.cap.multisite.Site;
 import com.coremedia.cap.multisite.SitesService;
 import com.coremedia.objectserver.web.links.CaeLinkServicesConfiguration;
+import com.tallence.core.redirects.cae.filter.RedirectConfigurationException;
 import com.tallence.core.redirects.cae.filter.RedirectFilter;
 import com.tallence.core.redirects.cae.service.SiteRedirects;
+import com.tallence.core.redirects.cae.service.purge.FileRedirectPurgeSink;
+import com.tallence.core.redirects.cae.service.purge.InMemoryRedirectPurgeSink;
+import com.tallence.core.redirects.cae.service.purge.RedirectPurgeSink;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.Filter;
 import org.springframework.context.annotation.Import;
 
+import java.nio.file.Path;
+import java.util.Locale;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -55,6 +63,10 @@ public class CoreRedirectsCaeConfiguration {
     registration.setName(FILTER_NAME);
     // We want to redirect filter to run early in the chain in order to make it act faster.
     registration.setOrder(100);
+    if (redirectFilter.getNotFoundMode() == RedirectFilter.NotFoundMode.ERROR_DISPATCH) {
+      // Redirects after a 404 are sent from the error dispatch
+      registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ERROR);
+    }
     return registration;
   }
 
@@ -67,4 +79,27 @@ public class CoreRedirectsCaeConfiguration {
     return new ConcurrentHashMap<>(sitesService.getSites().size());
   }
 
+  /**
+   * The built-in sink of the purge events of changed redirects: {@code none} (default), {@code memory} or
+   * {@code file}. Further sinks can be added as beans implementing {@link RedirectPurgeSink}.
+   */
+  @Bean
+  public RedirectPurgeSink redirectPurgeSink(@Value("${core.redirects.purge.sink:none}") String sink,
+                                             @Value("${core.redirects.purge.memory.size:1000}") int memorySize,
+                                             @Value("${core.redirects.purge.file:}") String file) {
+    switch (sink.trim().toLowerCase(Locale.ROOT)) {
+      case "none":
+        return RedirectPurgeSink.NONE;
+      case "memory":
+        return new InMemoryRedirectPurgeSink(memorySize);
+      case "file":
+        if (file.isBlank()) {
+          throw new RedirectConfigurationException("The purge sink 'file' needs a file in core.redirects.purge.file");
+        }
+        return new FileRedirectPurgeSink(Path.of(file.trim()));
+      default:
+        throw new RedirectConfigurationException("Unknown purge sink [" + sink + "], use none, memory or file");
+    }
+  }
+
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.filter;
+
+import com.google.common.cache.CacheStats;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import com.tallence.core.redirects.cae.service.index.RequestPath;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded set of recently requested paths without any redirect, per site and version of the site's redirects.
+ *
+ * The set is direct mapped: the hash code of a path determines its only slot, a new path replaces the former path in
+ * this slot. This makes {@link #contains} lock and allocation free, at the price of a lower hit rate than a LRU cache.
+ *
+ * Like the {@link VersionedSiteCache}, the paths belong to exactly one version of the {@link SiteRedirects}: the first
+ * path added with a newer snapshot starts with an empty set, lookups with another version than the current one fail.
+ */
+public class MissedPaths {
+
+  private final int mask;
+  private final ConcurrentMap<String, Slots> sites = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * @param maximumSize the maximum number of paths per site (rounded up to a power of two), 0 disables the set
+   */
+  public MissedPaths(long maximumSize) {
+    this.mask = maximumSize <= 0 ? -1 : (int) Long.highestOneBit(Math.min(maximumSize * 2 - 1, 1 << 30)) - 1;
+  }
+
+  /**
+   * Returns true, if the path has been added for the version of the given snapshot.
+   */
+  public boolean contains(SiteRedirects redirects, RequestPath path) {
+    if (mask < 0 || redirects.getSiteId() == null) {
+      return false;
+    }
+    Slots slots = sites.get(redirects.getSiteId());
+    String missed = slots != null && slots.version == redirects.getVersion() ? slots.paths.get(index(path)) : null;
+    if (missed != null && path.equals(missed)) {
+      hits.increment();
+      return true;
+    }
+    misses.increment();
+    return false;
+  }
+
+  /**
+   * Adds the path, for which the given snapshot contains no redirect.
+   */
+  public void add(SiteRedirects redirects, RequestPath path) {
+    String siteId = redirects.getSiteId();
+    if (mask < 0 || siteId == null) {
+      return;
+    }
+    long version = redirects.getVersion();
+    Slots slots = sites.get(siteId);
+    if (slots == null || slots.version < version) {
+      slots = sites.compute(siteId, (id, s) -> s == null || s.version < version ? new Slots(version, mask + 1) : s);
+    }
+    if (slots.version == version) {
+      slots.paths.set(index(path), path.toString());
+    }
+  }
+
+  /**
+   * Returns the hit and miss counts of all lookups.
+   */
+  public CacheStats stats() {
+    return new CacheStats(hits.sum(), misses.sum(), 0, 0, 0, 0);
+  }
+
+  private int index(RequestPath path) {
+    int hash = path.hashCode();
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private static class Slots {
+
+    private final long version;
+    private final AtomicReferenceArray<String> paths;
+
+    Slots(long version, int size) {
+      this.version = version;
+      this.paths = new AtomicReferenceArray<>(size);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.filter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.tallence.core.redirects.cae.model.Redirect;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Remembers the requests, which have been rendered as a 404 and have been redirected by a redirect of type
+ * {@link com.tallence.core.redirects.model.RedirectType#AFTER_NOT_FOUND}. Repeated requests are redirected directly,
+ * without rendering the 404 again.
+ *
+ * An entry belongs to the path, the query string and the redirect instance: an updated redirect is a new instance in a
+ * new version of the site's redirects, for which the request is rendered again. As a new or changed page might make
+ * the path resolvable again, the {@link com.tallence.core.redirects.cae.service.RedirectContentListener} drops the
+ * entries of the page's site, see {@link #invalidateSite(String)}. Besides, the entries expire after the configured
+ * time, as the 404 might depend on other data than the pages of the site as well.
+ */
+@Service
+public class NotFoundMemo {
+
+  // Null if disabled
+  @Nullable
+  private final Cache<NotFoundKey, Boolean> notFound;
+
+  public NotFoundMemo(@Value("${core.redirects.filter.notFoundMemo.size:1000}") long maximumSize,
+                      @Value("${core.redirects.filter.notFoundMemo.ttlSeconds:60}") long ttlSeconds) {
+    this.notFound = maximumSize > 0
+            ? CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(Duration.ofSeconds(ttlSeconds)).recordStats().build()
+            : null;
+  }
+
+  /**
+   * Returns true, if the request has been rendered as a 404 before and has been redirected with the given redirect.
+   */
+  public boolean contains(Redirect redirect, HttpServletRequest request) {
+    return notFound != null
+            && notFound.getIfPresent(new NotFoundKey(redirect, request.getPathInfo(), request.getQueryString())) != null;
+  }
+
+  /**
+   * Remembers, that the request has been rendered as a 404 and has been redirected with the given redirect.
+   */
+  public void add(Redirect redirect, HttpServletRequest request) {
+    add(redirect, request.getPathInfo(), request.getQueryString());
+  }
+
+  /**
+   * Remembers, that the request with the given path info and query string has been rendered as a 404 and has been
+   * redirected with the given redirect.
+   */
+  public void add(Redirect redirect, String path, @Nullable String query) {
+    if (notFound != null) {
+      notFound.put(new NotFoundKey(redirect, path, query), Boolean.TRUE);
+    }
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public void invalidate() {
+    if (notFound != null) {
+      notFound.invalidateAll();
+    }
+  }
+
+  /**
+   * Removes the entries of the site with the given root segment, i.e. the requests with a path below
+   * {@code /<rootSegment>}. Costs O(number of entries), which are bounded by the configured size.
+   */
+  public void invalidateSite(String rootSegment) {
+    if (notFound != null) {
+      notFound.asMap().keySet().removeIf(key -> key.isBelow(rootSegment));
+    }
+  }
+
+  /**
+   * Returns the hit and miss counts of the memo.
+   */
+  public CacheStats stats() {
+    return notFound != null ? notFound.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+  }
+
+  /**
+   * Key of a request: the redirect instance, the path and the query string.
+   */
+  private static final class NotFoundKey {
+
+    private final Redirect redirect;
+    private final String path;
+    private final String query;
+
+    NotFoundKey(Redirect redirect, String path, @Nullable String query) {
+      this.redirect = redirect;
+      this.path = path;
+      this.query = query;
+    }
+
+    /**
+     * Returns true, if the path is the root segment or below it. Paths are matched case insensitive.
+     */
+    boolean isBelow(String rootSegment) {
+      int end = rootSegment.length() + 1;
+      return path != null && path.length() >= end && path.charAt(0) == '/'
+              && path.regionMatches(true, 1, rootSegment, 0, rootSegment.length())
+              && (path.length() == end || path.charAt(end) == '/');
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      NotFoundKey that = (NotFoundKey) o;
+      return redirect == that.redirect && Objects.equals(path, that.path) && Objects.equals(query, that.query);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * System.identityHashCode(redirect) + Objects.hashCode(path)) + Objects.hashCode(query);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.filter;
+
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.cae.service.purge.SurrogateKeys;
+import com.tallence.core.redirects.model.RedirectStatus;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The caching policy of the redirect responses, configured per {@link RedirectStatus}.
+ *
+ * A policy is a {@code Cache-Control} header value with the directives {@code max-age}, {@code s-maxage} and
+ * {@code stale-while-revalidate}, e.g. {@code max-age=3600, s-maxage=86400, stale-while-revalidate=60}. Browsers and
+ * edge caches serve repeated requests for the redirect without asking the CAE then, a changed redirect takes effect
+ * after the cached response expired.
+ *
+ * Cached redirect responses are tagged with the {@link SurrogateKeys} of the redirect in the {@code Surrogate-Key}
+ * and {@code Cache-Tag} header, edge caches can purge them with the
+ * {@link com.tallence.core.redirects.cae.service.purge.RedirectPurgeEvent}s.
+ *
+ * Redirects with a status without a policy must not be cached at all.
+ */
+@Service
+public class RedirectCacheControl {
+
+  static final String NO_CACHE = "no-cache, no-store, must-revalidate";
+
+  private static final Set<String> DIRECTIVES = Set.of("max-age", "s-maxage", "stale-while-revalidate");
+
+  private final Map<RedirectStatus, String> policies = new EnumMap<>(RedirectStatus.class);
+
+  public RedirectCacheControl(@Value("${core.redirects.filter.cacheControl.301:}") String movedPermanently,
+                              @Value("${core.redirects.filter.cacheControl.302:}") String found,
+                              @Value("${core.redirects.filter.cacheControl.307:}") String temporaryRedirect,
+                              @Value("${core.redirects.filter.cacheControl.308:}") String permanentRedirect) {
+    putPolicy(RedirectStatus.MOVED_PERMANENTLY, movedPermanently);
+    putPolicy(RedirectStatus.FOUND, found);
+    putPolicy(RedirectStatus.TEMPORARY_REDIRECT, temporaryRedirect);
+    putPolicy(RedirectStatus.PERMANENT_REDIRECT, permanentRedirect);
+  }
+
+  private void putPolicy(RedirectStatus status, String policy) {
+    if (policy != null && !policy.isBlank()) {
+      policies.put(status, toPolicy(status, policy));
+    }
+  }
+
+  /**
+   * Validates the directives of the policy and returns them in a normalized form.
+   */
+  private static String toPolicy(RedirectStatus status, String policy) {
+    List<String> directives = new ArrayList<>();
+    for (String directive : policy.split(",")) {
+      String[] nameAndValue = directive.trim().split("=", 2);
+      String name = nameAndValue[0].trim().toLowerCase(Locale.ROOT);
+      if (!DIRECTIVES.contains(name) || nameAndValue.length < 2 || !nameAndValue[1].trim().matches("\\d+")) {
+        throw new RedirectConfigurationException("Invalid cache control directive [" + directive.trim() + "] for status "
+                + status.getCode() + ", use max-age, s-maxage and stale-while-revalidate with a number of seconds");
+      }
+      directives.add(name + "=" + Long.parseLong(nameAndValue[1].trim()));
+    }
+    return String.join(", ", directives);
+  }
+
+  /**
+   * Returns the {@code Cache-Control} header value for redirects with the given status, or {@code null}, if they must
+   * not be cached.
+   */
+  @Nullable
+  public String getPolicy(RedirectStatus status) {
+    return policies.get(status);
+  }
+
+  /**
+   * Sets the caching headers for the redirect on the response.
+   */
+  public void apply(Redirect redirect, HttpServletResponse response) {
+    String policy = policies.get(redirect.getStatus());
+    if (policy != null) {
+      response.setHeader(HttpHeaders.CACHE_CONTROL, policy);
+      List<String> keys = SurrogateKeys.forResponse(redirect.getContentId(), redirect.getSource());
+      response.setHeader(SurrogateKeys.SURROGATE_KEY_HEADER, String.join(" ", keys));
+      response.setHeader(SurrogateKeys.CACHE_TAG_HEADER, String.join(",", keys));
+    } else {
+      response.setHeader(HttpHeaders.CACHE_CONTROL, NO_CACHE);
+      response.setHeader(HttpHeaders.PRAGMA, "no-cache");
+      response.setDateHeader(HttpHeaders.EXPIRES, 0);
+    }
+  }
+}
@@ -18,7 +18,9 @@ package com.tallence.core.redirects.cae.filter;
 import com.coremedia.blueprint.common.contentbeans.CMLinkable;
 import com.coremedia.objectserver.beans.ContentBeanFactory;
 import com.coremedia.objectserver.web.links.LinkFormatter;
+import com.google.common.cache.CacheStats;
 import com.tallence.core.redirects.cae.filter.RedirectMatchingService.Result;
+import com.tallence.core.redirects.cae.filter.RedirectLocationCache.Location;
 import com.tallence.core.redirects.cae.model.Redirect;
 import com.tallence.core.redirects.model.RedirectTargetParameter;
 import org.slf4j.Logger;
@@ -42,28 +44,91 @@ import static org.springframework.web.util.UriUtils.encodeQueryParam;
 
 /**
  * Filter for the handling of redirects.
+ *
+ * Redirects of type {@link com.tallence.core.redirects.model.RedirectType#AFTER_NOT_FOUND} are handled depending on
+ * the {@link NotFoundMode}: either the response is wrapped and a 404 is replaced by the redirect, or the redirect is
+ * sent from the error dispatch of the servlet container for a 404.
  */
 @Service
 public class RedirectFilter implements Filter {
 
   private static final Logger LOG = LoggerFactory.getLogger(RedirectFilter.class);
   private static final Charset UTF8 = StandardCharsets.UTF_8;
+  // The redirect to be sent from the error dispatch of a 404
+  private static final String PENDING_REDIRECT_ATTRIBUTE = RedirectFilter.class.getName() + ".pendingRedirect";
+
+  /**
+   * The ways to detect the 404 for redirects of type
+   * {@link com.tallence.core.redirects.model.RedirectType#AFTER_NOT_FOUND}.
+   *
+   * <ul>
+   *   <li>{@link #WRAP}: the response is wrapped, a 404 is held back and replaced by the redirect.</li>
+   *   <li>{@link #ERROR_DISPATCH}: the response is not wrapped. The redirect is sent, when the servlet container
+   *   dispatches the request to the error page for a 404. This requires the filter to be mapped to the error dispatch
+   *   and works only for 404 responses sent with {@link HttpServletResponse#sendError}.</li>
+   * </ul>
+   */
+  public enum NotFoundMode {
+    WRAP, ERROR_DISPATCH
+  }
 
   private final ContentBeanFactory contentBeanFactory;
   private final LinkFormatter linkFormatter;
   private final RedirectMatchingService redirectMatchingService;
   private final boolean keepSourceUrlParams;
+  private final RedirectLocationCache locationCache;
+  private final ResponseBufferPool responseBufferPool;
+  private final NotFoundMemo notFoundMemo;
+  private final RedirectCacheControl cacheControl;
+  private final NotFoundMode notFoundMode;
 
   @Autowired
   public RedirectFilter(ContentBeanFactory contentBeanFactory,
                         @Value("${core.redirects.filter.keepParams:false}")
                         boolean keepSourceUrlParams,
                         RedirectMatchingService redirectMatchingService,
-                        LinkFormatter linkFormatter) {
+                        LinkFormatter linkFormatter,
+                        NotFoundMemo notFoundMemo,
+                        RedirectCacheControl cacheControl,
+                        RedirectLocationCache locationCache,
+                        @Value("${core.redirects.filter.responseBuffer.size:8192}") int responseBufferSize,
+                        @Value("${core.redirects.filter.responseBuffer.budget:4194304}") long responseBufferBudget,
+                        @Value("${core.redirects.filter.notFoundMode:wrap}") String notFoundMode) {
     this.contentBeanFactory = contentBeanFactory;
     this.linkFormatter = linkFormatter;
+    this.notFoundMemo = notFoundMemo;
+    this.cacheControl = cacheControl;
     this.redirectMatchingService = redirectMatchingService;
     this.keepSourceUrlParams = keepSourceUrlParams;
+    this.locationCache = locationCache;
+    this.responseBufferPool = new ResponseBufferPool(responseBufferSize, responseBufferBudget);
+    this.notFoundMode = toNotFoundMode(notFoundMode);
+  }
+
+  private static NotFoundMode toNotFoundMode(String notFoundMode) {
+    try {
+      return NotFoundMode.valueOf(notFoundMode.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new RedirectConfigurationException("Unknown not found mode [" + notFoundMode + "], use 'wrap' or 'error-dispatch'");
+    }
+  }
+
+  public NotFoundMode getNotFoundMode() {
+    return notFoundMode;
+  }
+
+  /**
+   * Returns the hit and miss counts of the location cache.
+   */
+  public CacheStats getLocationCacheStats() {
+    return locationCache.getStats();
+  }
+
+  /**
+   * Returns the pool of the buffers for held back 404 responses, with its usage and spill counts.
+   */
+  public ResponseBufferPool getResponseBufferPool() {
+    return responseBufferPool;
   }
 
 
@@ -77,31 +142,75 @@ public class RedirectFilter implements Filter {
     HttpServletResponse response = (HttpServletResponse) sresponse;
     RedirectHttpServletResponseWrapper wrapper = null;
 
+    if (request.getDispatcherType() == DispatcherType.ERROR) {
+      handleErrorDispatch(request, response, chain);
+      return;
+    }
+
     // Pre-handle
     final Result result = redirectMatchingService.getMatchingRedirect(request);
     if (result.getAction() == Result.Action.SEND) {
-      sendPermanentRedirect(request, response, result.getRedirect());
+      sendRedirect(request, response, result.getRedirect());
       return;
     } else if (result.getAction() == Result.Action.WRAP) {
-      // Because we might have to modify the response, we need to wrap it in order to prevent tomcat from starting
-      // to write to the wire before we have inspected it.
-      wrapper = new RedirectHttpServletResponseWrapper(response, result.getRedirect());
+      if (notFoundMemo.contains(result.getRedirect(), request)) {
+        // Rendered as a 404 before, no need to do it again
+        sendRedirect(request, response, result.getRedirect());
+        return;
+      }
+      if (notFoundMode == NotFoundMode.ERROR_DISPATCH) {
+        // Nothing to wrap: a 404 is dispatched to the error page, the redirect is sent from there.
+        request.setAttribute(PENDING_REDIRECT_ATTRIBUTE, new PendingRedirect(result.getRedirect(), request));
+        chain.doFilter(request, response);
+        return;
+      }
+      // Because we might have to modify a 404 response, we need to wrap it in order to prevent tomcat from starting
+      // to write it to the wire before we have inspected it.
+      wrapper = new RedirectHttpServletResponseWrapper(response, result.getRedirect(), responseBufferPool);
     }
 
-    // Let the actual controller do its thing (with the wrapper, if one is set)
-    chain.doFilter(request, wrapper == null ? response : wrapper);
+    if (wrapper == null) {
+      chain.doFilter(request, response);
+      return;
+    }
 
-    // Posthandle only on 404
-    if (wrapper != null) {
-      if (wrapper.getStatus() == HttpServletResponse.SC_NOT_FOUND) {
+    try {
+      // Let the actual controller do its thing with the wrapper
+      chain.doFilter(request, wrapper);
+
+      // Posthandle only on 404, any other response has been passed through already
+      if (wrapper.isNotFound()) {
         // Ignore response and send redirect
         Redirect redirect = wrapper.getRedirect();
-        sendPermanentRedirect(request, response, redirect);
+        notFoundMemo.add(redirect, request);
+        sendRedirect(request, response, redirect);
       } else {
-        // Write cached status code to response
+        // Write held back status code and body to response
         wrapper.writeOnSuper();
       }
+    } finally {
+      wrapper.release();
+    }
+  }
+
+
+  /**
+   * Sends the pending redirect of the request, if the container dispatches a 404 to the error page.
+   */
+  private void handleErrorDispatch(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+          throws IOException, ServletException {
+    Object pending = request.getAttribute(PENDING_REDIRECT_ATTRIBUTE);
+    Object status = request.getAttribute(RequestDispatcher.ERROR_STATUS_CODE);
+    if (pending instanceof PendingRedirect && status instanceof Integer
+            && (Integer) status == HttpServletResponse.SC_NOT_FOUND && !response.isCommitted()) {
+      request.removeAttribute(PENDING_REDIRECT_ATTRIBUTE);
+      PendingRedirect pendingRedirect = (PendingRedirect) pending;
+      // The path and the query string of the error dispatch are the ones of the error page
+      notFoundMemo.add(pendingRedirect.redirect, pendingRedirect.path, pendingRedirect.query);
+      sendRedirect(request, response, pendingRedirect.redirect);
+      return;
     }
+    chain.doFilter(request, response);
   }
 
 
@@ -121,10 +230,10 @@ public class RedirectFilter implements Filter {
   // HELPER METHODS
 
   /**
-   * Executes the actual redirect.
-   * TODO Currently, this code always does a 301 with instant expiry. This should be made configurable.
+   * Executes the actual redirect, with the status of the redirect and the caching headers configured for it in the
+   * {@link RedirectCacheControl}.
    */
-  private void sendPermanentRedirect(HttpServletRequest request, HttpServletResponse response, Redirect target) {
+  private void sendRedirect(HttpServletRequest request, HttpServletResponse response, Redirect target) {
     if (target.hasNoTarget()) {
       LOG.error("Unable to redirect to empty string for redirect {}", target);
       return;
@@ -135,28 +244,51 @@ public class RedirectFilter implements Filter {
     // Reset content and headers
     response.reset();
 
-    response.setStatus(HttpServletResponse.SC_MOVED_PERMANENTLY);
-    response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
-    response.setHeader(HttpHeaders.PRAGMA, "no-cache");
-    response.setDateHeader(HttpHeaders.EXPIRES, 0);
+    response.setStatus(target.getStatus().getCode());
+    cacheControl.apply(target, response);
+
+    Location location = getLocation(request, response, target);
+    String targetLink = location.location;
+
+    // Only the request parameters have to be merged per request
+    Map<String, String[]> parameterMap = Optional.ofNullable(request.getParameterMap()).orElse(Collections.emptyMap());
+    if (keepSourceUrlParams && !parameterMap.isEmpty()) {
+      try {
+        targetLink = handleParameters(parameterMap, location.link, target.getTargetParameters());
+      } catch (RuntimeException e) {
+        LOG.warn("Error during handling query params [{}] of source url [{}]: [{}]. The query params will be ignored.",
+                Arrays.toString(parameterMap.entrySet().toArray()), request.getPathInfo(), e.getMessage());
+        targetLink = location.link;
+      }
+    }
+
+    response.setHeader(HttpHeaders.LOCATION, targetLink);
+  }
 
+  /**
+   * Returns the formatted location of the redirect for the scheme and host of the request, see
+   * {@link RedirectLocationCache}.
+   */
+  private Location getLocation(HttpServletRequest request, HttpServletResponse response, Redirect target) {
+    return locationCache.get(target, request, () -> formatLocation(request, response, target));
+  }
+
+  private Location formatLocation(HttpServletRequest request, HttpServletResponse response, Redirect target) {
     String targetLink = Optional.ofNullable(target.getTarget())
             .map(t -> contentBeanFactory.createBeanFor(t, CMLinkable.class))
             .map(t -> linkFormatter.formatLink(t, null, request, response, true))
             .orElse(target.getTargetUrl());
 
     try {
-      targetLink = handleParameters(request, targetLink, target.getTargetParameters());
+      return new Location(targetLink, handleParameters(Collections.emptyMap(), targetLink, target.getTargetParameters()));
     } catch (RuntimeException e) {
-      LOG.warn("Error during handling query params [{}] of source url [{}]: [{}]. The query params will be ignored.",
-              Arrays.toString(request.getParameterMap().entrySet().toArray()), request.getPathInfo(), e.getMessage());
+      LOG.warn("Error during handling target params of redirect [{}]: [{}]. The query params will be ignored.",
+              target, e.getMessage());
+      return new Location(targetLink, targetLink);
     }
-
-    response.setHeader(HttpHeaders.LOCATION, targetLink);
   }
 
-  private String handleParameters(HttpServletRequest request, String targetLink, List<RedirectTargetParameter> targetParameters) {
-    Map<String, String[]> parameterMap = Optional.ofNullable(request.getParameterMap()).orElse(Collections.emptyMap());
+  private String handleParameters(Map<String, String[]> parameterMap, String targetLink, List<RedirectTargetParameter> targetParameters) {
     UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString(targetLink);
 
     if (keepSourceUrlParams && !parameterMap.isEmpty()) {
@@ -175,4 +307,20 @@ public class RedirectFilter implements Filter {
             .map(v -> encodeQueryParam(v, UTF8))
             .forEach(v -> uriBuilder.queryParam(entry.getKey(), v));
   }
+
+  /**
+   * Redirect to be sent on a 404, with the path and query string of the original request.
+   */
+  private static final class PendingRedirect {
+
+    private final Redirect redirect;
+    private final String path;
+    private final String query;
+
+    PendingRedirect(Redirect redirect, HttpServletRequest request) {
+      this.redirect = redirect;
+      this.path = request.getPathInfo();
+      this.query = request.getQueryString();
+    }
+  }
 }
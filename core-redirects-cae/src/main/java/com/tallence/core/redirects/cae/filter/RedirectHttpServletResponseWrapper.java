@@ -17,24 +17,48 @@ package com.tallence.core.redirects.cae.filter;
 
 
 import com.tallence.core.redirects.cae.model.Redirect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpServletResponseWrapper;
-import java.io.CharArrayWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 
 /**
- * Internal wrapper class to prevent to response from being committed too early.
+ * Internal wrapper class to prevent a 404 response from being committed too early.
  *
- * This wrapper stores all written data in internal variables and prevents them
- * from being written on the wire, so that the final response code can be checked
- * (in this case for a 404) and rewritten.
- * Otherwise, changing the response code would not be possible anymore, once
- * control is returned to the redirect filter.
+ * The wrapper decides at the first commit of the response: the first write of the body, {@link #flushBuffer()},
+ * {@link #sendError} or {@link #sendRedirect}. If the status is not a 404 at this point, the wrapper passes the response
+ * through to the wrapped response and the body is streamed without any buffering.
+ *
+ * Only a 404 response is held back, so that the redirect filter can replace it with the redirect. Its body is kept in
+ * a buffer of the {@link ResponseBufferPool}, characters are encoded with the character encoding of the response.
+ * Output exceeding the buffer, or all output if the pool has no buffer left, is dropped: a 404 response is replaced
+ * anyway. Headers are always written to the wrapped response, they are reset with the redirect.
+ *
+ * The buffer has to be returned with {@link #release()} at the end of the request.
  */
 class RedirectHttpServletResponseWrapper extends HttpServletResponseWrapper {
-  private int tempStatus = 200;
+
+  private static final Logger LOG = LoggerFactory.getLogger(RedirectHttpServletResponseWrapper.class);
+
+  private enum Mode {
+    UNDECIDED, PASS_THROUGH, HOLD
+  }
+
+  private Mode mode = Mode.UNDECIDED;
+  private int tempStatus = SC_OK;
   private String tempMsg;
   private String tempLocation;
   private boolean isError;
@@ -43,20 +67,42 @@ class RedirectHttpServletResponseWrapper extends HttpServletResponseWrapper {
   // Reference to the redirect which this wrapper is used for
   private final Redirect redirect;
 
-  private CharArrayWriter writer = new CharArrayWriter();
+  private final ResponseBufferPool bufferPool;
+  private PrintWriter writer;
+  private ServletOutputStream outputStream;
 
-  public RedirectHttpServletResponseWrapper(HttpServletResponse response, Redirect redirect) {
+  // Body of a held back response, written either with the writer or with the output stream
+  private byte[] heldBody;
+  private int heldLength;
+  private boolean truncated;
+  private CharsetEncoder encoder;
+  // The characters of the last write, which the encoder has not consumed yet, e.g. the first half of a surrogate pair
+  private CharBuffer pendingChars;
+
+  public RedirectHttpServletResponseWrapper(HttpServletResponse response, Redirect redirect,
+                                            ResponseBufferPool bufferPool) {
     super(response);
     this.redirect = redirect;
+    this.bufferPool = bufferPool;
   }
 
   public Redirect getRedirect() {
     return redirect;
   }
 
+  /**
+   * Returns true, if the response is a 404, which has been held back and can still be replaced by the redirect.
+   */
+  public boolean isNotFound() {
+    return tempStatus == SC_NOT_FOUND && mode != Mode.PASS_THROUGH;
+  }
+
   @Override
   public void setStatus(int sc) {
     tempStatus = sc;
+    if (mode == Mode.PASS_THROUGH) {
+      super.setStatus(sc);
+    }
   }
 
   @Override
@@ -65,46 +111,217 @@ class RedirectHttpServletResponseWrapper extends HttpServletResponseWrapper {
   }
 
   @Override
-  public void sendError(int sc, String msg) {
-    tempStatus = sc;
-    tempMsg = msg;
-    isError = true;
+  public void sendError(int sc, String msg) throws IOException {
+    sendError(sc, msg, true);
   }
 
   @Override
-  public void sendError(int sc) {
+  public void sendError(int sc) throws IOException {
+    sendError(sc, null, false);
+  }
+
+  private void sendError(int sc, String msg, boolean hasMsg) throws IOException {
     tempStatus = sc;
-    isError = true;
+    if (decide() == Mode.PASS_THROUGH) {
+      if (hasMsg) {
+        super.sendError(sc, msg);
+      } else {
+        super.sendError(sc);
+      }
+    } else {
+      // Like the container, the error discards the body written so far
+      tempMsg = msg;
+      isError = true;
+      discardHeldBody();
+    }
   }
 
   @Override
-  public void sendRedirect(String location) {
-    tempLocation = location;
-    isRedirect = true;
+  public void sendRedirect(String location) throws IOException {
+    tempStatus = SC_FOUND;
+    if (decide() == Mode.PASS_THROUGH) {
+      super.sendRedirect(location);
+    } else {
+      tempLocation = location;
+      isRedirect = true;
+    }
   }
 
   @Override
-  public PrintWriter getWriter() {
-    return new PrintWriter(writer);
+  public PrintWriter getWriter() throws IOException {
+    if (outputStream != null) {
+      throw new IllegalStateException("getOutputStream() has already been called for this response");
+    }
+    if (writer == null) {
+      writer = mode == Mode.PASS_THROUGH ? super.getWriter() : new PrintWriter(new DecidingWriter());
+    }
+    return writer;
   }
 
-  public String toString() {
-    return writer.toString();
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    if (writer != null) {
+      throw new IllegalStateException("getWriter() has already been called for this response");
+    }
+    if (outputStream == null) {
+      outputStream = mode == Mode.PASS_THROUGH ? super.getOutputStream() : new DecidingOutputStream();
+    }
+    return outputStream;
   }
 
+  @Override
+  public void flushBuffer() throws IOException {
+    // This will be called for HEAD requests from the jakarta.servlet.http.HttpServlet.NoBodyResponse, too.
+    // It commits the response, which we must not do for a 404.
+    if (decide() == Mode.PASS_THROUGH) {
+      super.flushBuffer();
+    }
+  }
 
   @Override
-  public void flushBuffer() {
-    //Do nothing. This will be called for HEAD requests from the
-    //javax.servlet.http.HttpServlet.NoBodyResponse
-    //But it commits the response, which we do not want in the wrapper
+  public void resetBuffer() {
+    if (mode == Mode.PASS_THROUGH) {
+      super.resetBuffer();
+    } else {
+      discardHeldBody();
+    }
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    if (mode != Mode.PASS_THROUGH) {
+      // Nothing has been written to the wire, the response can be decided again
+      mode = Mode.UNDECIDED;
+      tempMsg = null;
+      tempLocation = null;
+      isError = false;
+      isRedirect = false;
+      discardHeldBody();
+    }
+    tempStatus = SC_OK;
+  }
+
+  public String toString() {
+    return heldBody != null ? new String(heldBody, 0, heldLength, charset()) : "";
+  }
+
+  /**
+   * Returns the buffer of the held back body to the pool. To be called at the end of the request.
+   */
+  public void release() {
+    if (heldBody != null) {
+      bufferPool.release(heldBody);
+      heldBody = null;
+      heldLength = 0;
+    }
+  }
+
+  /**
+   * Decides on the first commit, if the response is passed through or held back.
+   */
+  private Mode decide() {
+    if (mode == Mode.UNDECIDED) {
+      if (tempStatus == SC_NOT_FOUND) {
+        mode = Mode.HOLD;
+      } else {
+        mode = Mode.PASS_THROUGH;
+        super.setStatus(tempStatus);
+      }
+    }
+    return mode;
+  }
+
+  private void discardHeldBody() {
+    heldLength = 0;
+    truncated = false;
+    encoder = null;
+    pendingChars = null;
   }
 
   /**
-   * Writes the stored request on the wire (by writing the data on the super instance,
-   * which writes it to the original request to be sent).
+   * Returns false, if the body cannot be held back (completely): the pool has no buffer left or the buffer is full.
+   */
+  private boolean acquireHeldBody() {
+    if (heldBody == null && !truncated) {
+      heldBody = bufferPool.acquire();
+      truncated = heldBody == null;
+    }
+    return !truncated;
+  }
+
+  private void holdBytes(byte[] b, int off, int len) {
+    if (!acquireHeldBody()) {
+      return;
+    }
+    int held = Math.min(len, heldBody.length - heldLength);
+    System.arraycopy(b, off, heldBody, heldLength, held);
+    heldLength += held;
+    if (held < len) {
+      truncated = true;
+      bufferPool.spill();
+    }
+  }
+
+  private void holdChars(char[] cbuf, int off, int len) {
+    if (!acquireHeldBody()) {
+      return;
+    }
+    if (encoder == null) {
+      encoder = charset().newEncoder()
+              .onMalformedInput(CodingErrorAction.REPLACE)
+              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    CharBuffer in;
+    if (pendingChars != null) {
+      in = CharBuffer.allocate(pendingChars.remaining() + len).put(pendingChars).put(cbuf, off, len).flip();
+      pendingChars = null;
+    } else {
+      in = CharBuffer.wrap(cbuf, off, len);
+    }
+    ByteBuffer out = ByteBuffer.wrap(heldBody, heldLength, heldBody.length - heldLength);
+    if (encoder.encode(in, out, false).isOverflow()) {
+      truncated = true;
+      bufferPool.spill();
+    } else if (in.hasRemaining()) {
+      // Copied, as the caller may reuse its array
+      pendingChars = CharBuffer.allocate(in.remaining()).put(in).flip();
+    }
+    heldLength = out.position();
+  }
+
+  /**
+   * Encodes the pending characters as the end of the input and flushes the encoder, before the held body is written.
+   */
+  private void finishHeldChars() {
+    if (encoder == null || truncated) {
+      return;
+    }
+    ByteBuffer out = ByteBuffer.wrap(heldBody, heldLength, heldBody.length - heldLength);
+    CharBuffer in = pendingChars != null ? pendingChars : CharBuffer.allocate(0);
+    if (encoder.encode(in, out, true).isOverflow() || encoder.flush(out).isOverflow()) {
+      truncated = true;
+      bufferPool.spill();
+    }
+    heldLength = out.position();
+    encoder = null;
+    pendingChars = null;
+  }
+
+  private Charset charset() {
+    String encoding = getCharacterEncoding();
+    return encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+  }
+
+  /**
+   * Writes the held back response on the wire (by writing the data on the super instance, which writes it to the
+   * original response to be sent). A response passed through has been written already, only its status is set, if it
+   * has not been committed at all.
    */
   public void writeOnSuper() throws IOException {
+    if (decide() == Mode.PASS_THROUGH) {
+      return;
+    }
     if (isError) {
       if (tempMsg != null) {
         super.sendError(tempStatus, tempMsg);
@@ -115,10 +332,123 @@ class RedirectHttpServletResponseWrapper extends HttpServletResponseWrapper {
       super.sendRedirect(tempLocation);
     } else {
       super.setStatus(tempStatus);
-      String result = writer.toString();
-      super.getWriter().write(result);
+      finishHeldChars();
+      if (truncated) {
+        LOG.warn("The body of the response with status [{}] could not be held back completely and has been truncated",
+                tempStatus);
+      }
+      if (heldLength > 0) {
+        super.getOutputStream().write(heldBody, 0, heldLength);
+      }
+    }
+  }
+
+  /**
+   * Writer, which decides on the first write, if the characters are written to the wrapped response or held back.
+   */
+  private class DecidingWriter extends Writer {
+
+    private Writer target;
+
+    private Writer target() throws IOException {
+      if (target == null) {
+        target = decide() == Mode.PASS_THROUGH ? RedirectHttpServletResponseWrapper.super.getWriter() : null;
+      }
+      return target;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      Writer passThrough = target();
+      if (passThrough != null) {
+        passThrough.write(cbuf, off, len);
+        return;
+      }
+      holdChars(cbuf, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (target != null) {
+        target.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (target != null) {
+        target.close();
+      }
     }
   }
 
+  /**
+   * Output stream, which decides on the first write, if the bytes are written to the wrapped response or held back.
+   */
+  private class DecidingOutputStream extends ServletOutputStream {
+
+    private ServletOutputStream target;
+    private final byte[] singleByte = new byte[1];
+
+    private OutputStream target() throws IOException {
+      if (target == null) {
+        target = decide() == Mode.PASS_THROUGH ? RedirectHttpServletResponseWrapper.super.getOutputStream() : null;
+      }
+      return target;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      OutputStream passThrough = target();
+      if (passThrough != null) {
+        passThrough.write(b);
+      } else {
+        singleByte[0] = (byte) b;
+        holdBytes(singleByte, 0, 1);
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      OutputStream passThrough = target();
+      if (passThrough != null) {
+        passThrough.write(b, off, len);
+        return;
+      }
+      holdBytes(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (target != null) {
+        target.flush();
+      }
+    }
 
+    @Override
+    public void close() throws IOException {
+      if (target != null) {
+        target.close();
+      }
+    }
+
+    @Override
+    public boolean isReady() {
+      return target == null || target.isReady();
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      try {
+        if (target() != null) {
+          target.setWriteListener(writeListener);
+          return;
+        }
+        // A held back response never blocks
+        writeListener.onWritePossible();
+      } catch (IOException e) {
+        writeListener.onError(e);
+      }
+    }
+  }
 }
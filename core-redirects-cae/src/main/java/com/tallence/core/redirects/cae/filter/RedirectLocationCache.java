@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.filter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.tallence.core.redirects.cae.model.Redirect;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Caches the formatted locations of the redirects sent by the {@link RedirectFilter}, per redirect instance and the
+ * scheme and host of the request.
+ *
+ * An updated redirect is a new instance, its former entries are not found anymore. The link of a target might change
+ * without a change of the redirect, e.g. after a new segment: the entries of a target are dropped with
+ * {@link #invalidateTarget(String)}, when it has been checked in. Besides, the entries expire after one minute, as a
+ * link might depend on other contents as well, e.g. the segments of the navigation.
+ */
+@Service
+public class RedirectLocationCache {
+
+  private static final Duration TTL = Duration.ofMinutes(1);
+
+  // Null if disabled
+  @Nullable
+  private final Cache<LocationKey, Location> locations;
+
+  public RedirectLocationCache(@Value("${core.redirects.filter.locationCache.size:1000}") long maximumSize) {
+    this.locations = maximumSize > 0
+            ? CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(TTL).recordStats().build()
+            : null;
+  }
+
+  /**
+   * Returns the cached location of the redirect for the request or the one formatted by the given supplier.
+   */
+  Location get(Redirect redirect, HttpServletRequest request, Supplier<Location> format) {
+    if (locations == null) {
+      return format.get();
+    }
+    LocationKey key = new LocationKey(redirect, request);
+    Location location = locations.getIfPresent(key);
+    if (location == null) {
+      location = format.get();
+      locations.put(key, location);
+    }
+    return location;
+  }
+
+  /**
+   * Drops the locations of the redirects linking the content with the given id. Costs O(number of cached locations),
+   * which is limited by the configured size.
+   */
+  public void invalidateTarget(String targetId) {
+    if (locations != null) {
+      locations.asMap().keySet().removeIf(key -> targetId.equals(key.targetId));
+    }
+  }
+
+  /**
+   * Returns the hit and miss counts.
+   */
+  public CacheStats getStats() {
+    return locations != null ? locations.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+  }
+
+  /**
+   * The formatted target link and the complete location with the target parameters.
+   */
+  static final class Location {
+
+    final String link;
+    final String location;
+
+    Location(String link, String location) {
+      this.link = link;
+      this.location = location;
+    }
+  }
+
+  /**
+   * Key of a location: the redirect instance and the parts of the request used for absolute links.
+   */
+  private static final class LocationKey {
+
+    private final Redirect redirect;
+    // The id of the target content or null for redirects to an external url
+    @Nullable
+    private final String targetId;
+    private final String scheme;
+    private final String host;
+    private final int port;
+
+    LocationKey(Redirect redirect, HttpServletRequest request) {
+      this.redirect = redirect;
+      this.targetId = redirect.getTarget() != null ? redirect.getTarget().getId() : null;
+      this.scheme = request.getScheme();
+      this.host = request.getServerName();
+      this.port = request.getServerPort();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      LocationKey that = (LocationKey) o;
+      // Redirects are compared by identity: Redirect#equals only compares the content id
+      return redirect == that.redirect && port == that.port && Objects.equals(scheme, that.scheme)
+              && Objects.equals(host, that.host);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(redirect), scheme, host, port);
+    }
+  }
+}
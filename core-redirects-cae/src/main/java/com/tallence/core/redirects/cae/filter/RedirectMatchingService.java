@@ -34,6 +34,9 @@ public interface RedirectMatchingService {
       NONE, SEND, WRAP
     }
 
+    // Immutable, the same instance is used for all requests without redirect
+    private static final Result NONE = new Result(null, Action.NONE);
+
     private final Redirect redirect;
     private final Action action;
 
@@ -51,7 +54,7 @@ public interface RedirectMatchingService {
     }
 
     static Result none() {
-      return new Result(null, Action.NONE);
+      return NONE;
     }
 
     public Redirect getRedirect() {
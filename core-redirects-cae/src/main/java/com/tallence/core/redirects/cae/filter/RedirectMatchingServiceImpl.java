@@ -15,30 +15,30 @@
  */
 package com.tallence.core.redirects.cae.filter;
 
-import com.coremedia.blueprint.base.multisite.cae.SiteResolver;
-import com.coremedia.cap.content.Content;
 import com.coremedia.cap.multisite.Site;
 import com.coremedia.cap.multisite.SiteHelper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
 import com.tallence.core.redirects.cae.model.Redirect;
 import com.tallence.core.redirects.cae.service.RedirectService;
 import com.tallence.core.redirects.cae.service.SiteRedirects;
+import com.tallence.core.redirects.cae.service.SiteResolutionCache;
+import com.tallence.core.redirects.cae.service.index.PatternMatchPolicy;
+import com.tallence.core.redirects.cae.service.index.RequestPath;
 import com.tallence.core.redirects.model.RedirectSourceParameter;
 import com.tallence.core.redirects.model.RedirectType;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import jakarta.servlet.http.HttpServletRequest;
 import java.util.*;
-import java.util.function.Function;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import static com.coremedia.cap.common.IdHelper.parseContentId;
-import static java.util.Map.Entry.comparingByKey;
 
 /**
  * Default Strategy to select a redirect in the {@link SiteRedirects} which matches the given request.
@@ -49,6 +49,20 @@ import static java.util.Map.Entry.comparingByKey;
  *  <li>if the {@link HttpServletRequest#getParameterMap()} is matches by all {@link Redirect#getSourceParameters()}</li>
  * </ul>
  *
+ * Paths without any plain or pattern redirect are remembered per site in a bounded miss cache, which is dropped with
+ * every new version of the site's redirects. Most requests are no redirect at all and skip the lookups this way.
+ *
+ * Optionally, the results for paths matched by a pattern redirect are cached per site as well. The key is the path and
+ * the values of the request parameters used by any pattern redirect of the site. If you override
+ * {@link #checkUrlParams} with a strategy depending on other request properties, do not enable this cache.
+ *
+ * The pattern redirects are evaluated with the configured {@link PatternMatchPolicy}: either with
+ * {@link java.util.regex.Pattern} or with a linear time engine, and with a step budget against patterns with
+ * catastrophic backtracking.
+ *
+ * If the {@code SiteFilter} has not run yet, the site is resolved from the first path segment with the
+ * {@link SiteResolutionCache}. As long as no site has any redirects, the site is not resolved at all.
+ *
  * If you want to implement a custom strategy: Try to override {@link #determinePreAction} or {@link #checkUrlParams}.
  * If you need more methods to be "protected" feel free to create an issue in the gitHub repo.
  */
@@ -58,11 +72,29 @@ public class RedirectMatchingServiceImpl implements RedirectMatchingService {
   private static final Logger LOG = LoggerFactory.getLogger(RedirectMatchingServiceImpl.class);
 
   private final RedirectService redirectService;
-  private final SiteResolver siteResolver;
+  private final SiteResolutionCache siteResolutionCache;
+  private final MissedPaths missCache;
+  private final VersionedSiteCache<PatternResultKey, Result> patternResultCache;
+  private final PatternMatchPolicy patternMatchPolicy;
 
-  public RedirectMatchingServiceImpl(RedirectService redirectService, SiteResolver siteResolver) {
+  public RedirectMatchingServiceImpl(RedirectService redirectService, SiteResolutionCache siteResolutionCache,
+                                     @Value("${core.redirects.filter.missCache.size:10000}") long missCacheSize,
+                                     @Value("${core.redirects.filter.patternResultCache.size:0}") long patternResultCacheSize,
+                                     @Value("${core.redirects.filter.patternEngine:java}") String patternEngine,
+                                     @Value("${core.redirects.filter.patternStepBudget:1000000}") long patternStepBudget) {
     this.redirectService = redirectService;
-    this.siteResolver = siteResolver;
+    this.siteResolutionCache = siteResolutionCache;
+    this.missCache = new MissedPaths(missCacheSize);
+    this.patternResultCache = new VersionedSiteCache<>(patternResultCacheSize);
+    this.patternMatchPolicy = new PatternMatchPolicy(toEngine(patternEngine), patternStepBudget);
+  }
+
+  private static PatternMatchPolicy.Engine toEngine(String patternEngine) {
+    try {
+      return PatternMatchPolicy.Engine.valueOf(patternEngine.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new RedirectConfigurationException("Unknown pattern engine [" + patternEngine + "], use 'java' or 'linear'");
+    }
   }
 
   @Override
@@ -73,6 +105,34 @@ public class RedirectMatchingServiceImpl implements RedirectMatchingService {
     return determinePreAction(redirects, request);
   }
 
+  /**
+   * Returns the hit and miss counts of the cache for paths without any redirect.
+   */
+  public CacheStats getMissCacheStats() {
+    return missCache.stats();
+  }
+
+  /**
+   * Returns the hit and miss counts of the cache for paths matched by a pattern redirect.
+   */
+  public CacheStats getPatternResultCacheStats() {
+    return patternResultCache.stats();
+  }
+
+  /**
+   * Returns the hit and miss counts of the cache for the sites of the first path segments.
+   */
+  public CacheStats getSiteCacheStats() {
+    return siteResolutionCache.stats();
+  }
+
+  /**
+   * Returns the number of pattern evaluations, which have been aborted because of the step budget.
+   */
+  public long getAbortedPatternMatches() {
+    return patternMatchPolicy.getAbortedMatches();
+  }
+
   /**
    * Fetch redirects for the given site.
    *
@@ -81,6 +141,11 @@ public class RedirectMatchingServiceImpl implements RedirectMatchingService {
    */
   @NonNull
   private SiteRedirects getSiteRedirects(HttpServletRequest request) {
+    // Nothing to find, e.g. while the redirects are not yet loaded: skip the site resolution
+    if (!redirectService.hasRedirects()) {
+      return redirectService.getRedirectsForSite(null);
+    }
+
     // Determine site (in order to fetch the redirects for it)
     Site site = getSiteFromRequest(request);
 
@@ -105,7 +170,7 @@ public class RedirectMatchingServiceImpl implements RedirectMatchingService {
         if (!StringUtils.hasLength(pathInfo) || "/".equals(pathInfo)) {
           LOG.debug("Could not determine a site without a site name in the path info, request: {}", request);
         } else {
-          site = siteResolver.findSiteByPath(pathInfo);
+          site = siteResolutionCache.findSiteByPath(pathInfo);
         }
       } catch (Exception e) {
         LOG.warn("Could not determine the site for the request", e);
@@ -116,7 +181,7 @@ public class RedirectMatchingServiceImpl implements RedirectMatchingService {
   }
 
   /**
-   * Lookup the plain- and patternRedirects in the given redirects for the given request
+   * Lookup the plain-, prefix- and patternRedirects in the given redirects for the given request, in this order
    */
   protected Result determinePreAction(SiteRedirects redirects, HttpServletRequest request) {
 
@@ -124,25 +189,53 @@ public class RedirectMatchingServiceImpl implements RedirectMatchingService {
       return Result.none();
     }
 
-    var pathInfo = request.getPathInfo().toLowerCase();
-    if (pathInfo.endsWith("/")) {
-      pathInfo = pathInfo.substring(0, pathInfo.length() - 1);
+    // Lower case and without trailing slash, no copy is created for the lookups
+    var pathInfo = RequestPath.of(request.getPathInfo());
+
+    // Known miss for this version of the redirects: no plain, prefix or pattern redirect exists for the path.
+    if (missCache.contains(redirects, pathInfo)) {
+      return Result.none();
     }
 
-    var redirect = Optional.ofNullable(redirects.getPlainRedirects().get(pathInfo))
-            .map(list -> checkUrlParams(list, request)).orElse(null);
-    if (redirect == null) {
-      for (Map.Entry<Pattern, List<Redirect>> patternRedirect : redirects.getPatternRedirects().entrySet()) {
-        if (patternRedirect.getKey().matcher(pathInfo).matches()) {
-          redirect = checkUrlParams(patternRedirect.getValue(), request);
-          break;
-        }
-      }
+    var plainRedirects = redirects.findPlainRedirects(pathInfo);
+    var redirect = plainRedirects != null ? checkUrlParams(plainRedirects, request) : null;
+    if (redirect != null) {
+      return toResult(redirect);
     }
+
+    // The longest prefix wins, before the patterns are tried
+    var prefixRedirects = redirects.findPrefixRedirects(pathInfo);
+    redirect = prefixRedirects != null ? checkUrlParams(prefixRedirects, request) : null;
     if (redirect != null) {
-      return redirect.getRedirectType() == RedirectType.ALWAYS ? Result.send(redirect) : Result.wrap(redirect);
+      return toResult(redirect);
     }
-    return Result.none();
+
+    Cache<PatternResultKey, Result> patternResults = patternResultCache.forSnapshot(redirects);
+    var key = patternResults != null ? new PatternResultKey(pathInfo.toString(), redirects.getPatternParameterNames(), request) : null;
+    var result = patternResults != null ? patternResults.getIfPresent(key) : null;
+    if (result != null) {
+      return result;
+    }
+
+    var patternRedirects = redirects.findPatternRedirects(pathInfo, patternMatchPolicy);
+    if (patternRedirects == null) {
+      if (plainRedirects == null && prefixRedirects == null) {
+        missCache.add(redirects, pathInfo);
+      }
+      return Result.none();
+    }
+    result = toResult(checkUrlParams(patternRedirects, request));
+    if (patternResults != null) {
+      patternResults.put(key, result);
+    }
+    return result;
+  }
+
+  private static Result toResult(@Nullable Redirect redirect) {
+    if (redirect == null) {
+      return Result.none();
+    }
+    return redirect.getRedirectType() == RedirectType.ALWAYS ? Result.send(redirect) : Result.wrap(redirect);
   }
 
   /**
@@ -156,24 +249,37 @@ public class RedirectMatchingServiceImpl implements RedirectMatchingService {
    */
   protected Redirect checkUrlParams(@NonNull List<Redirect> potentialRedirects, HttpServletRequest request) {
 
-    final var requestParameterMap = request.getParameterMap();
-    List<Redirect> redirects = potentialRedirects.stream()
-            .filter(r -> r.getSourceParameters().stream().allMatch(s -> matchesSourceParam(s, requestParameterMap)))
-            .filter(r -> r.getTarget() == null || isTargetValid(r.getTarget()))
-            .collect(Collectors.toList());
-    if (redirects.size() <= 1) {
-      return redirects.size() == 1 ? redirects.get(0) : null;
-    }
-
-    //More than one potential redirect left: pick the one, with the highest amount of parameters.
-    //If more than one redirect has the same number of parameters: to be deterministic, pick the one with the lowest contentId
-    final var numberOfParams = redirects.stream()
-            .collect(Collectors.toMap(r -> r.getSourceParameters().size(), Function.identity(),
-                    (o, o2) -> parseContentId(o.getContentId()) < parseContentId(o2.getContentId()) ? o : o2));
-    return numberOfParams.entrySet()
-            .stream().max(comparingByKey())
-            .map(Map.Entry::getValue)
-            .orElse(null);
+    // Plain loops instead of streams: this runs for every request with a matching path.
+    Map<String, String[]> requestParameterMap = null;
+    Redirect result = null;
+    for (Redirect redirect : potentialRedirects) {
+      List<RedirectSourceParameter> sourceParameters = redirect.getSourceParameters();
+      if (!sourceParameters.isEmpty() && requestParameterMap == null) {
+        requestParameterMap = request.getParameterMap();
+      }
+      if (!matchesSourceParams(sourceParameters, requestParameterMap)
+              || !redirect.isTargetValid()) {
+        continue;
+      }
+
+      //More than one potential redirect left: pick the one, with the highest amount of parameters.
+      //If more than one redirect has the same number of parameters: to be deterministic, pick the one with the lowest contentId
+      if (result == null || sourceParameters.size() > result.getSourceParameters().size()
+              || sourceParameters.size() == result.getSourceParameters().size()
+              && parseContentId(redirect.getContentId()) < parseContentId(result.getContentId())) {
+        result = redirect;
+      }
+    }
+    return result;
+  }
+
+  private boolean matchesSourceParams(List<RedirectSourceParameter> sourceParameters, Map<String, String[]> requestParameterMap) {
+    for (RedirectSourceParameter sourceParameter : sourceParameters) {
+      if (!matchesSourceParam(sourceParameter, requestParameterMap)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   private boolean matchesSourceParam(RedirectSourceParameter sourceParameter, Map<String, String[]> requestParameterMap) {
@@ -183,24 +289,56 @@ public class RedirectMatchingServiceImpl implements RedirectMatchingService {
       return false;
     }
 
-    return Optional.ofNullable(requestParameterMap.get(sourceParameter.getName()))
-            .stream()
-            .flatMap(Arrays::stream)
-            .anyMatch(v -> v.equalsIgnoreCase(sourceParameter.getValue()));
+    String[] values = requestParameterMap.get(sourceParameter.getName());
+    if (values != null) {
+      for (String value : values) {
+        if (value.equalsIgnoreCase(sourceParameter.getValue())) {
+          return true;
+        }
+      }
+    }
+    return false;
   }
 
   /**
-   * Cannot use the {@link com.coremedia.blueprint.common.services.validation.ValidationService}
-   * because it does not work with content objects.
-   * @return true, if the target is valid
+   * Key of the pattern result cache: the path and the values of the request parameters, which are used as source
+   * parameter by a pattern redirect of the site. Values are compared case insensitive, like in
+   * {@link #matchesSourceParam}.
    */
-  private boolean isTargetValid(Content targetLink) {
-    Calendar now = Calendar.getInstance();
-    Calendar validFrom = targetLink.getDate("validFrom");
-    if (validFrom != null && validFrom.after(now)) {
-      return false;
+  private static final class PatternResultKey {
+
+    private final String path;
+    private final List<String> parameters;
+
+    PatternResultKey(String path, List<String> parameterNames, HttpServletRequest request) {
+      this.path = path;
+      if (parameterNames.isEmpty()) {
+        parameters = List.of();
+      } else {
+        parameters = new ArrayList<>();
+        Map<String, String[]> requestParameterMap = request.getParameterMap();
+        for (String name : parameterNames) {
+          String[] values = requestParameterMap.get(name);
+          // The number of values separates the values of the different parameters
+          parameters.add(values == null ? "-" : String.valueOf(values.length));
+          if (values != null) {
+            Arrays.stream(values).map(v -> v.toLowerCase(Locale.ROOT)).forEach(parameters::add);
+          }
+        }
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      PatternResultKey that = (PatternResultKey) o;
+      return path.equals(that.path) && parameters.equals(that.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * path.hashCode() + parameters.hashCode();
     }
-    Calendar validTo = targetLink.getDate("validTo");
-    return validTo == null || validTo.after(now);
   }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.filter;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of reusable byte buffers for the bodies of held back responses, see
+ * {@link RedirectHttpServletResponseWrapper}.
+ *
+ * All buffers have the same size, which is the maximum body size per request. Buffers are allocated on demand, until
+ * the memory budget is used up. A request, which needs a buffer when all buffers are in use, or whose body exceeds
+ * its buffer, spills: the body is not held back (completely).
+ */
+public class ResponseBufferPool {
+
+  private final int bufferSize;
+  private final int maximumBuffers;
+  private final ConcurrentLinkedQueue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger allocatedBuffers = new AtomicInteger();
+  private final AtomicInteger buffersInUse = new AtomicInteger();
+  private final LongAdder acquisitions = new LongAdder();
+  private final LongAdder spills = new LongAdder();
+
+  /**
+   * @param bufferSize the size of each buffer in bytes, 0 disables the pool
+   * @param budget the maximum number of bytes of all buffers
+   */
+  public ResponseBufferPool(int bufferSize, long budget) {
+    this.bufferSize = Math.max(bufferSize, 0);
+    this.maximumBuffers = bufferSize > 0 ? (int) Math.min(budget / bufferSize, Integer.MAX_VALUE) : 0;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Returns a buffer of {@link #getBufferSize()} bytes, or {@code null}, if the memory budget is used up. The buffer has
+   * to be {@link #release released} after the request.
+   */
+  @Nullable
+  byte[] acquire() {
+    byte[] buffer = freeBuffers.poll();
+    if (buffer == null) {
+      int allocated;
+      do {
+        allocated = allocatedBuffers.get();
+        if (allocated >= maximumBuffers) {
+          spill();
+          return null;
+        }
+      } while (!allocatedBuffers.compareAndSet(allocated, allocated + 1));
+      buffer = new byte[bufferSize];
+    }
+    acquisitions.increment();
+    buffersInUse.incrementAndGet();
+    return buffer;
+  }
+
+  /**
+   * Returns the buffer to the pool.
+   */
+  void release(byte[] buffer) {
+    buffersInUse.decrementAndGet();
+    freeBuffers.offer(buffer);
+  }
+
+  /**
+   * Counts a body, which could not be held back completely.
+   */
+  void spill() {
+    spills.increment();
+  }
+
+  /**
+   * Returns the number of buffers allocated so far. They are kept in the pool.
+   */
+  public int getAllocatedBuffers() {
+    return allocatedBuffers.get();
+  }
+
+  /**
+   * Returns the number of buffers currently used by requests.
+   */
+  public int getBuffersInUse() {
+    return buffersInUse.get();
+  }
+
+  /**
+   * Returns the number of buffers handed out to requests so far.
+   */
+  public long getAcquisitions() {
+    return acquisitions.sum();
+  }
+
+  /**
+   * Returns the number of bodies, which exceeded their buffer or got no buffer at all.
+   */
+  public long getSpills() {
+    return spills.sum();
+  }
+}
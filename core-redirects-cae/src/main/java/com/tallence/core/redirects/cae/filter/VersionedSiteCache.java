@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.filter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bounded per-site caches for results computed from a {@link SiteRedirects} snapshot.
+ *
+ * Each site has one cache, which belongs to exactly one version of the site's snapshot. The first lookup with a newer
+ * snapshot replaces the cache with an empty one, so a cached value never outlives the index it was computed from.
+ * Lookups with an outdated snapshot (a request which started before the update) get no cache at all.
+ *
+ * The {@link #stats() statistics} are summed up over all sites and versions.
+ */
+public class VersionedSiteCache<K, V> {
+
+  private final long maximumSize;
+  private final ConcurrentMap<String, VersionedCache<K, V>> caches = new ConcurrentHashMap<>();
+  // Statistics of the replaced caches
+  private final AtomicReference<CacheStats> replacedStats = new AtomicReference<>(new CacheStats(0, 0, 0, 0, 0, 0));
+
+  /**
+   * @param maximumSize the maximum number of entries per site, 0 disables the cache
+   */
+  public VersionedSiteCache(long maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Returns the cache for the given snapshot or {@code null}, if caching is disabled or the snapshot is outdated.
+   */
+  @Nullable
+  public Cache<K, V> forSnapshot(SiteRedirects redirects) {
+    String siteId = redirects.getSiteId();
+    if (maximumSize <= 0 || siteId == null) {
+      return null;
+    }
+    long version = redirects.getVersion();
+    VersionedCache<K, V> current = caches.get(siteId);
+    if (current == null || current.version < version) {
+      current = caches.compute(siteId, (id, c) -> {
+        if (c != null && c.version >= version) {
+          return c;
+        }
+        if (c != null) {
+          replacedStats.accumulateAndGet(c.cache.stats(), CacheStats::plus);
+        }
+        return new VersionedCache<>(version, CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build());
+      });
+    }
+    return current.version == version ? current.cache : null;
+  }
+
+  /**
+   * Returns the hit and miss counts of all caches, including the ones of former versions.
+   */
+  public CacheStats stats() {
+    CacheStats stats = replacedStats.get();
+    for (VersionedCache<K, V> cache : caches.values()) {
+      stats = stats.plus(cache.cache.stats());
+    }
+    return stats;
+  }
+
+  private static class VersionedCache<K, V> {
+
+    private final long version;
+    private final Cache<K, V> cache;
+
+    VersionedCache(long version, Cache<K, V> cache) {
+      this.version = version;
+      this.cache = cache;
+    }
+  }
+}
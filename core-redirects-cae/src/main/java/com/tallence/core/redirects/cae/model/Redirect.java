@@ -18,14 +18,17 @@ package com.tallence.core.redirects.cae.model;
 import com.coremedia.cap.content.Content;
 import com.tallence.core.redirects.helper.RedirectHelper;
 import com.tallence.core.redirects.model.RedirectSourceParameter;
+import com.tallence.core.redirects.model.RedirectStatus;
 import com.tallence.core.redirects.model.RedirectTargetParameter;
 import com.tallence.core.redirects.model.RedirectType;
 import com.tallence.core.redirects.model.SourceUrlType;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import org.springframework.util.StringUtils;
 
+import java.util.Calendar;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 
 /**
@@ -38,6 +41,10 @@ public class Redirect {
   public static final String TARGET_LINK = "targetLink";
   public static final String TARGET_URL = "targetUrl";
   public static final String SOURCE_URL = "source";
+  public static final String PRIORITY = "priority";
+  public static final String STATUS_CODE = "statusCode";
+  public static final String VALID_FROM = "validFrom";
+  public static final String VALID_TO = "validTo";
 
   private static final String SOURCE_URL_TYPE = "sourceUrlType";
   private static final String REDIRECT_TYPE = "redirectType";
@@ -50,6 +57,13 @@ public class Redirect {
   private final String targetUrl;
   private final List<RedirectSourceParameter> sourceParameters;
   private final List<RedirectTargetParameter> targetParameters;
+  private final int priority;
+  private final RedirectStatus status;
+  // Validity of the target in epoch millis, captured when the redirect is created
+  private final long targetValidFrom;
+  private final long targetValidTo;
+  private final boolean targetValid;
+  private final long nextValidityChange;
 
   public Redirect(Content redirect, String rootSegment) {
     contentId = redirect.getId();
@@ -66,6 +80,57 @@ public class Redirect {
 
     sourceParameters = RedirectHelper.getSourceParameters(redirect);
     targetParameters = RedirectHelper.getTargetParameters(redirect);
+    priority = redirect.getInt(PRIORITY);
+    status = Optional.ofNullable(RedirectStatus.asRedirectStatus(redirect.getInt(STATUS_CODE))).orElse(RedirectStatus.DEFAULT);
+
+    targetValidFrom = validFrom(target);
+    targetValidTo = validTo(target);
+    long now = System.currentTimeMillis();
+    targetValid = isValid(targetValidFrom, targetValidTo, now);
+    nextValidityChange = nextChange(targetValidFrom, targetValidTo, now);
+  }
+
+  private Redirect(Builder builder) {
+    this.contentId = builder.contentId;
+    this.sourceUrlType = builder.sourceUrlType;
+    this.source = builder.source;
+    this.redirectType = builder.redirectType;
+    this.target = builder.target;
+    this.targetUrl = builder.targetUrl;
+    this.sourceParameters = builder.sourceParameters;
+    this.targetParameters = builder.targetParameters;
+    this.priority = builder.priority;
+    this.status = builder.status;
+    this.targetValidFrom = builder.validitySet ? builder.targetValidFrom : validFrom(target);
+    this.targetValidTo = builder.validitySet ? builder.targetValidTo : validTo(target);
+    long now = System.currentTimeMillis();
+    this.targetValid = isValid(targetValidFrom, targetValidTo, now);
+    this.nextValidityChange = nextChange(targetValidFrom, targetValidTo, now);
+  }
+
+  private Redirect(Redirect redirect, long now) {
+    this.contentId = redirect.contentId;
+    this.sourceUrlType = redirect.sourceUrlType;
+    this.source = redirect.source;
+    this.redirectType = redirect.redirectType;
+    this.target = redirect.target;
+    this.targetUrl = redirect.targetUrl;
+    this.sourceParameters = redirect.sourceParameters;
+    this.targetParameters = redirect.targetParameters;
+    this.priority = redirect.priority;
+    this.status = redirect.status;
+    this.targetValidFrom = redirect.targetValidFrom;
+    this.targetValidTo = redirect.targetValidTo;
+    this.targetValid = isValid(targetValidFrom, targetValidTo, now);
+    this.nextValidityChange = nextChange(targetValidFrom, targetValidTo, now);
+  }
+
+  /**
+   * Returns a builder for a redirect from already resolved values, e.g. when the redirects are not read from the
+   * content repository. The source is taken as it is, it has to contain the root segment of the site already.
+   */
+  public static Builder builder(String contentId, SourceUrlType sourceUrlType, String source, RedirectType redirectType) {
+    return new Builder(contentId, sourceUrlType, source, redirectType);
   }
 
   /**
@@ -127,6 +192,106 @@ public class Redirect {
     return targetParameters;
   }
 
+  /**
+   * Returns the priority of the redirect, 0 if none is set. If the sources of several pattern redirects match a
+   * request, the pattern of the redirect with the highest priority wins. For the same priority, the redirect with
+   * the lowest content id wins.
+   */
+  public int getPriority() {
+    return priority;
+  }
+
+  /**
+   * Returns the http status of the redirect, {@link RedirectStatus#DEFAULT} if none is set.
+   */
+  public RedirectStatus getStatus() {
+    return status;
+  }
+
+  /**
+   * Returns false, if the target link is not valid at the moment, according to its validFrom and validTo dates.
+   * Redirects without a target link are always valid.
+   *
+   * The dates are read once, when the redirect is created. The state is switched by {@link #withTargetValidity} at
+   * the {@link #getNextValidityChange() next change}, so requests do not need to read the dates of the target.
+   */
+  public boolean isTargetValid() {
+    return targetValid;
+  }
+
+  /**
+   * Returns true, if the target link is valid at the given time in epoch millis.
+   */
+  public boolean isTargetValidAt(long time) {
+    return isValid(targetValidFrom, targetValidTo, time);
+  }
+
+  /**
+   * Returns the validFrom date of the target in epoch millis, {@link Long#MIN_VALUE} if it has none.
+   */
+  public long getTargetValidFrom() {
+    return targetValidFrom;
+  }
+
+  /**
+   * Returns the validTo date of the target in epoch millis, {@link Long#MAX_VALUE} if it has none.
+   */
+  public long getTargetValidTo() {
+    return targetValidTo;
+  }
+
+  /**
+   * Returns the time in epoch millis, at which {@link #isTargetValid()} has to be updated next, or
+   * {@link Long#MAX_VALUE}, if it never changes.
+   */
+  public long getNextValidityChange() {
+    return nextValidityChange;
+  }
+
+  /**
+   * Returns this redirect, if its validity is up to date at the given time in epoch millis, or a copy with the
+   * updated validity.
+   */
+  public Redirect withTargetValidity(long now) {
+    if (targetValid == isValid(targetValidFrom, targetValidTo, now)
+            && nextValidityChange == nextChange(targetValidFrom, targetValidTo, now)) {
+      return this;
+    }
+    return new Redirect(this, now);
+  }
+
+  /**
+   * Returns true, if the validFrom and validTo dates of the given target are the ones captured by this redirect.
+   */
+  public boolean hasValidityOf(Content target) {
+    return targetValidFrom == validFrom(target) && targetValidTo == validTo(target);
+  }
+
+  private static boolean isValid(long validFrom, long validTo, long time) {
+    return validFrom <= time && time < validTo;
+  }
+
+  private static long nextChange(long validFrom, long validTo, long now) {
+    if (validFrom > now) {
+      return validFrom;
+    }
+    return validTo > now ? validTo : Long.MAX_VALUE;
+  }
+
+  /**
+   * Cannot use the {@link com.coremedia.blueprint.common.services.validation.ValidationService}
+   * because it does not work with content objects.
+   */
+  private static long validFrom(@Nullable Content target) {
+    Calendar validFrom = target != null ? target.getDate(VALID_FROM) : null;
+    return validFrom != null ? validFrom.getTimeInMillis() : Long.MIN_VALUE;
+  }
+
+  private static long validTo(@Nullable Content target) {
+    Calendar validTo = target != null ? target.getDate(VALID_TO) : null;
+    return validTo != null ? validTo.getTimeInMillis() : Long.MAX_VALUE;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -146,4 +311,84 @@ public class Redirect {
             "contentId='" + contentId + '\'' +
             '}';
   }
+
+  /**
+   * Collects the values of a redirect. Unless they are set, the redirect has no target, no parameters, the priority 0
+   * and the status {@link RedirectStatus#DEFAULT}.
+   */
+  public static class Builder {
+
+    private final String contentId;
+    private final SourceUrlType sourceUrlType;
+    private final String source;
+    private final RedirectType redirectType;
+    private Content target;
+    private String targetUrl;
+    private List<RedirectSourceParameter> sourceParameters = List.of();
+    private List<RedirectTargetParameter> targetParameters = List.of();
+    private int priority = 0;
+    private RedirectStatus status = RedirectStatus.DEFAULT;
+    // False, if the validity dates have to be read from the target
+    private boolean validitySet = false;
+    private long targetValidFrom;
+    private long targetValidTo;
+
+    private Builder(String contentId, SourceUrlType sourceUrlType, String source, RedirectType redirectType) {
+      this.contentId = contentId;
+      this.sourceUrlType = sourceUrlType;
+      this.source = source;
+      this.redirectType = redirectType;
+    }
+
+    public Builder target(@Nullable Content target) {
+      this.target = target;
+      return this;
+    }
+
+    public Builder targetUrl(@Nullable String targetUrl) {
+      this.targetUrl = targetUrl;
+      return this;
+    }
+
+    public Builder sourceParameters(List<RedirectSourceParameter> sourceParameters) {
+      this.sourceParameters = sourceParameters;
+      return this;
+    }
+
+    public Builder targetParameters(List<RedirectTargetParameter> targetParameters) {
+      this.targetParameters = targetParameters;
+      return this;
+    }
+
+    /**
+     * See {@link Redirect#getPriority()}.
+     */
+    public Builder priority(int priority) {
+      this.priority = priority;
+      return this;
+    }
+
+    /**
+     * See {@link Redirect#getStatus()}.
+     */
+    public Builder status(RedirectStatus status) {
+      this.status = status;
+      return this;
+    }
+
+    /**
+     * Sets the validity dates of the target in epoch millis, e.g. when the redirect is restored from a snapshot. The
+     * target is not read then. See {@link Redirect#getTargetValidFrom()} and {@link Redirect#getTargetValidTo()}.
+     */
+    public Builder targetValidity(long validFrom, long validTo) {
+      this.targetValidFrom = validFrom;
+      this.targetValidTo = validTo;
+      this.validitySet = true;
+      return this;
+    }
+
+    public Redirect build() {
+      return new Redirect(this);
+    }
+  }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the position in the content repository's event timeline, up to which all changes have been applied to the
+ * redirects cache. A snapshot of the redirects records it, so a starting CAE has to replay only the later events.
+ *
+ * The {@link RedirectContentListener} sets the timestamp after it has handled an event, the
+ * {@link RedirectUpdateTaskScheduler} counts the tasks submitted for the events and not completed yet. The position
+ * is only known, while no task is pending. Replaying an event twice is harmless: the tasks read the current state of
+ * the redirect.
+ */
+@Service
+public class RedirectCheckpoint {
+
+  private volatile String timestamp;
+  private final AtomicInteger pendingTasks = new AtomicInteger();
+
+  /**
+   * Sets the timestamp, from which on the events are received.
+   */
+  void reset(@Nullable String timestamp) {
+    this.timestamp = timestamp;
+  }
+
+  /**
+   * Sets the timestamp of an event, after the tasks for it have been submitted.
+   */
+  void eventHandled(@Nullable String timestamp) {
+    if (timestamp != null) {
+      this.timestamp = timestamp;
+    }
+  }
+
+  void taskSubmitted() {
+    pendingTasks.incrementAndGet();
+  }
+
+  void taskCompleted() {
+    pendingTasks.decrementAndGet();
+  }
+
+  /**
+   * Returns the timestamp of the last event, whose changes have been applied completely, or {@code null}, if tasks
+   * are still pending or no timestamp is known.
+   */
+  @Nullable
+  public String get() {
+    // Read before the pending tasks: the tasks of the event have been counted before the timestamp was set.
+    String result = timestamp;
+    return pendingTasks.get() == 0 ? result : null;
+  }
+
+  /**
+   * Compares two timestamps of the event timeline. They are opaque to the repository's clients, but consist of numbers
+   * separated by colons, which grow with the timeline, e.g. {@code "1234:5678"}.
+   *
+   * @throws IllegalArgumentException if the timestamps do not have this format
+   */
+  static int compare(String timestamp, String other) {
+    String[] parts = timestamp.split(":");
+    String[] otherParts = other.split(":");
+    if (parts.length != otherParts.length) {
+      throw new IllegalArgumentException("Timestamps " + timestamp + " and " + other + " are not comparable");
+    }
+    try {
+      for (int i = 0; i < parts.length; i++) {
+        int result = Long.compare(Long.parseLong(parts[i]), Long.parseLong(otherParts[i]));
+        if (result != 0) {
+          return result;
+        }
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Timestamps " + timestamp + " and " + other + " are not comparable", e);
+    }
+    return 0;
+  }
+}
@@ -31,14 +31,28 @@ public class RedirectContentListener extends ContentRepositoryListenerBase {
 
   private static final Logger LOG = LoggerFactory.getLogger(RedirectContentListener.class);
 
+  // The type of the target links of the redirects
+  private static final String TARGET_TYPE = "CMLinkable";
+
   private final RedirectUpdateTaskScheduler redirectUpdateTaskScheduler;
+  private final SiteResolutionCache siteResolutionCache;
+  private final RedirectCheckpoint checkpoint;
 
-  public RedirectContentListener(RedirectUpdateTaskScheduler redirectUpdateTaskScheduler) {
+  public RedirectContentListener(RedirectUpdateTaskScheduler redirectUpdateTaskScheduler,
+                                 SiteResolutionCache siteResolutionCache, RedirectCheckpoint checkpoint) {
     this.redirectUpdateTaskScheduler = redirectUpdateTaskScheduler;
+    this.siteResolutionCache = siteResolutionCache;
+    this.checkpoint = checkpoint;
   }
 
   @Override
   protected void handleContentEvent(ContentEvent event) {
+    handleEvent(event);
+    // The tasks for the event have been submitted, the event is covered by the checkpoint from now on
+    checkpoint.eventHandled(event.getTimestamp());
+  }
+
+  private void handleEvent(ContentEvent event) {
     Content content = event.getContent();
 
     if (event instanceof ContentDestroyedEvent) {
@@ -46,6 +60,8 @@ public class RedirectContentListener extends ContentRepositoryListenerBase {
       ContentDestroyedEvent destroyedEvent = (ContentDestroyedEvent) event;
       if (destroyedEvent.getContentType().isSubtypeOf("Redirect")) {
         redirectUpdateTaskScheduler.runDestroy(content.getId(), destroyedEvent.getFolder());
+      } else if (destroyedEvent.getContentType().isSubtypeOf(SiteResolutionCache.SITE_TYPE)) {
+        siteResolutionCache.invalidate();
       }
       //content.getType will throw an exception for destroyed contents.
       return;
@@ -71,6 +87,26 @@ public class RedirectContentListener extends ContentRepositoryListenerBase {
           // FIXME What to do here??
           break;
       }
+    } else if (!content.isDestroyed() && content.getType().isSubtypeOf(TARGET_TYPE)) {
+      switch (event.getType()) {
+        case ContentRepositoryEventConstants.CONTENT_CHECKED_IN:
+        case ContentRepositoryEventConstants.CONTENT_REVERTED:
+          // The validity dates or the link of a redirect target might have been changed
+          redirectUpdateTaskScheduler.runTargetUpdate(content);
+          // falls through: the page might resolve another path now
+        case ContentRepositoryEventConstants.CONTENT_CREATED:
+        case ContentRepositoryEventConstants.CONTENT_UNDELETED:
+        case ContentRepositoryEventConstants.CONTENT_MOVED:
+        case ContentRepositoryEventConstants.CONTENT_RENAMED:
+          redirectUpdateTaskScheduler.runPageUpdate(content);
+          break;
+      }
+    }
+
+    // A changed site indicator or root document might change the site of a path segment
+    if (!content.isDestroyed() && siteResolutionCache.isAffectedBy(content)) {
+      LOG.debug("Received new event of type [{}] for site content with id [{}]", event.getType(), content.getId());
+      siteResolutionCache.invalidate();
     }
   }
 
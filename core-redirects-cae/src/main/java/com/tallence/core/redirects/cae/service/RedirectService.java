@@ -33,4 +33,13 @@ public interface RedirectService {
   @NonNull
   SiteRedirects getRedirectsForSite(@Nullable Site site);
 
+  /**
+   * Returns true, if any site might have redirects. If not, requests do not need to be resolved to a site at all.
+   *
+   * @return false, if {@link #getRedirectsForSite} returns no redirects for every site.
+   */
+  default boolean hasRedirects() {
+    return true;
+  }
+
 }
@@ -18,18 +18,28 @@ package com.tallence.core.redirects.cae.service;
 import com.coremedia.cap.content.ContentRepository;
 import com.coremedia.cap.multisite.Site;
 import com.coremedia.cap.multisite.SitesService;
+import com.tallence.core.redirects.cae.service.snapshot.RedirectSnapshot;
+import com.tallence.core.redirects.cae.service.snapshot.RedirectSnapshotStore;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for handling redirects.
+ *
+ * At startup, the redirects of every site are read from the content repository. If the {@link RedirectSnapshotStore}
+ * has a recent snapshot with a checkpoint for a site, the snapshot is used instead and only the events since its
+ * checkpoint are replayed through the {@link RedirectContentListener}.
  */
 @Service
 public class RedirectServiceImpl implements RedirectService {
@@ -40,24 +50,106 @@ public class RedirectServiceImpl implements RedirectService {
   private final ConcurrentMap<Site, SiteRedirects> redirectsCache;
   private final RedirectUpdateTaskScheduler redirectUpdateTaskScheduler;
   private final SitesService sitesService;
+  private final SiteResolutionCache siteResolutionCache;
+  private final RedirectSnapshotStore snapshotStore;
+  private final RedirectCheckpoint checkpoint;
+  private final long catchUpMaxAgeMillis;
 
   @Autowired
   public RedirectServiceImpl(ContentRepository contentRepository, ConcurrentMap<Site, SiteRedirects> redirectsCache,
                              RedirectUpdateTaskScheduler redirectUpdateTaskScheduler,
-                             SitesService sitesService) {
+                             SitesService sitesService, SiteResolutionCache siteResolutionCache,
+                             RedirectSnapshotStore snapshotStore, RedirectCheckpoint checkpoint,
+                             @Value("${core.redirects.snapshot.catchUpMaxAgeMinutes:1440}") long catchUpMaxAgeMinutes) {
     this.contentRepository = contentRepository;
     this.redirectsCache = redirectsCache;
     this.redirectUpdateTaskScheduler = redirectUpdateTaskScheduler;
     this.sitesService = sitesService;
+    this.siteResolutionCache = siteResolutionCache;
+    this.snapshotStore = snapshotStore;
+    this.checkpoint = checkpoint;
+    this.catchUpMaxAgeMillis = TimeUnit.MINUTES.toMillis(catchUpMaxAgeMinutes);
   }
 
   @PostConstruct
   public void init() {
+    // All redirects read from now on contain the changes up to this timestamp at least
+    String start = contentRepository.getTimestamp();
+
     // Prewarm redirect cache to prevent longer initial requests.
-    sitesService.getSites().stream().filter(Site::isReadable).forEach(this::initiateRedirects);
+    List<Site> caughtUpSites = new ArrayList<>();
+    RedirectSnapshot oldestSnapshot = null;
+    for (Site site : sitesService.getSites()) {
+      if (!site.isReadable()) {
+        continue;
+      }
+      RedirectSnapshot snapshot = loadSnapshot(site);
+      if (snapshot != null && isCatchUpPossible(snapshot)) {
+        caughtUpSites.add(site);
+        // The events since the oldest checkpoint cover all sites
+        if (oldestSnapshot == null || isOlder(snapshot, oldestSnapshot)) {
+          oldestSnapshot = snapshot;
+        }
+      } else {
+        initiateRedirects(site);
+      }
+    }
 
     // Attach the content listener
-    contentRepository.addContentRepositoryListener(new RedirectContentListener(redirectUpdateTaskScheduler));
+    RedirectContentListener listener = new RedirectContentListener(redirectUpdateTaskScheduler, siteResolutionCache, checkpoint);
+    if (oldestSnapshot != null && catchUp(listener, oldestSnapshot.getCheckpoint(), caughtUpSites)) {
+      return;
+    }
+    checkpoint.reset(start);
+    if (start != null) {
+      contentRepository.addContentRepositoryListener(listener, start);
+    } else {
+      contentRepository.addContentRepositoryListener(listener);
+    }
+  }
+
+  /**
+   * Attaches the listener to replay the events since the given checkpoint for the sites restored from their snapshots.
+   * If the repository cannot replay them, the sites are read again.
+   */
+  private boolean catchUp(RedirectContentListener listener, String from, List<Site> sites) {
+    try {
+      checkpoint.reset(from);
+      contentRepository.addContentRepositoryListener(listener, from);
+    } catch (RuntimeException e) {
+      LOG.warn("Unable to replay the events since {}, reading all redirects of the sites {} again", from, sites, e);
+      sites.forEach(this::initiateRedirects);
+      return false;
+    }
+    LOG.info("Catching up the redirects of the sites {} with the events since {}", sites, from);
+    sites.forEach(redirectUpdateTaskScheduler::scheduleValidityUpdate);
+    return true;
+  }
+
+  private static boolean isOlder(RedirectSnapshot snapshot, RedirectSnapshot other) {
+    try {
+      return RedirectCheckpoint.compare(snapshot.getCheckpoint(), other.getCheckpoint()) < 0;
+    } catch (IllegalArgumentException e) {
+      // Unknown format of the timestamps, the checkpoints grow with the time of the snapshots at least
+      LOG.debug("Comparing the snapshots of the sites {} and {} by their creation time", snapshot.getSiteId(),
+              other.getSiteId(), e);
+      return snapshot.getCreated() < other.getCreated();
+    }
+  }
+
+  private boolean isCatchUpPossible(RedirectSnapshot snapshot) {
+    if (catchUpMaxAgeMillis <= 0) {
+      return false;
+    }
+    if (snapshot.getCheckpoint() == null) {
+      LOG.info("Snapshot of site {} has no checkpoint, reading its redirects again", snapshot.getSiteId());
+      return false;
+    }
+    if (System.currentTimeMillis() - snapshot.getCreated() > catchUpMaxAgeMillis) {
+      LOG.info("Snapshot of site {} is too old to catch up, reading its redirects again", snapshot.getSiteId());
+      return false;
+    }
+    return true;
   }
 
   /**
@@ -84,12 +176,41 @@ public class RedirectServiceImpl implements RedirectService {
 
   }
 
+  /**
+   * Returns true, if any site has redirects.
+   * @see RedirectService
+   */
+  @Override
+  public boolean hasRedirects() {
+    for (SiteRedirects redirects : redirectsCache.values()) {
+      if (redirects.size() > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Serves the redirects of the last snapshot of the site, until they have been caught up or read again.
+   */
+  @Nullable
+  private RedirectSnapshot loadSnapshot(Site site) {
+    try {
+      RedirectSnapshot snapshot = snapshotStore.load(site.getId());
+      if (snapshot != null) {
+        redirectsCache.putIfAbsent(site, snapshot.toSiteRedirects());
+      }
+      return snapshot;
+    } catch (RuntimeException e) {
+      LOG.error("Error during loading the redirects snapshot of site [{}]", site.getId(), e);
+      return null;
+    }
+  }
+
   private void initiateRedirects(Site site) {
     try {
-      // Calc site (or fetch from drive)
-      LOG.debug("Missing site {} in cache, queueing fetch", site);
+      LOG.debug("Missing site {} in cache, queueing fetch", site);
       redirectUpdateTaskScheduler.runUpdate(site);
-      // FIXME Possible add fetch from disk here (or another speed-fix)
     } catch (Exception e) {
       LOG.error("Error during fetching redirects for site [{}]", site.getId(), e);
     }
@@ -20,12 +20,19 @@ import com.coremedia.cap.content.ContentRepository;
 import com.coremedia.cap.multisite.Site;
 import com.coremedia.cap.multisite.SitesService;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.tallence.core.redirects.cae.filter.NotFoundMemo;
+import com.tallence.core.redirects.cae.filter.RedirectLocationCache;
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.cae.service.purge.RedirectPurgeEvent;
+import com.tallence.core.redirects.cae.service.purge.RedirectPurgeSink;
+import com.tallence.core.redirects.cae.service.tasks.BatchUpdateTask;
 import com.tallence.core.redirects.cae.service.tasks.DestroyDocumentTask;
+import com.tallence.core.redirects.cae.service.tasks.DocumentTask;
 import com.tallence.core.redirects.cae.service.tasks.RemoveDocumentTask;
 import com.tallence.core.redirects.cae.service.tasks.UpdateDocumentTask;
 import com.tallence.core.redirects.cae.service.tasks.UpdateSiteTask;
-import com.tallence.core.redirects.cae.service.util.ControllingThreadPoolExecutorService;
-import com.tallence.core.redirects.cae.service.util.PausableThreadPoolExecutorService;
+import com.tallence.core.redirects.cae.service.util.KeyedBatchExecutor;
+import com.tallence.core.redirects.cae.service.util.KeyedTaskExecutor;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,8 +41,14 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class RedirectUpdateTaskScheduler {
@@ -47,9 +60,25 @@ public class RedirectUpdateTaskScheduler {
   private final ConcurrentMap<Site, SiteRedirects> redirectsCache;
   private final String redirectsPath;
 
-  // A pool of single thread executors, one per site, so updates are queued per site.
-  private final PausableThreadPoolExecutorService itemUpdateExecutor;
-  private final ControllingThreadPoolExecutorService siteUpdateExecutor;
+  private final ThreadPoolExecutor itemUpdateExecutor;
+  private final ThreadPoolExecutor siteUpdateExecutor;
+  // Collects the redirect updates into batches per site, a burst of events of a redirect results in one update. The
+  // updates of a site are paused, while the site is re-indexed.
+  private final ScheduledExecutorService batchExecutor;
+  private final KeyedBatchExecutor<Site, ItemUpdate> itemUpdates;
+  // Runs the tasks of a site (by site id) in order, a burst of events results in one task
+  private final KeyedTaskExecutor<String> siteTasks;
+  // Switches the target validity of the redirects at the next change of each site
+  private final ScheduledExecutorService validityExecutor;
+  private final ConcurrentMap<Site, ValidityUpdate> validityUpdates = new ConcurrentHashMap<>();
+  // Receive a purge event after each applied change, so edge caches can drop the cached redirect responses
+  private final List<RedirectPurgeSink> purgeSinks;
+  // Counts the tasks, which have not been applied yet
+  private final RedirectCheckpoint checkpoint;
+  // The formatted locations of the redirects, dropped for a changed target
+  private final RedirectLocationCache locationCache;
+
+  private final NotFoundMemo notFoundMemo;
 
   // Test mode disables the multithreading here
   private boolean testMode = false;
@@ -60,13 +89,30 @@ public class RedirectUpdateTaskScheduler {
                                      @Qualifier("redirectsCache") ConcurrentMap<Site, SiteRedirects> redirectsCache,
                                      @Value("${core.redirects.path}") String redirectsPath,
                                      @Value("${core.redirects.cache.parallel.site.recompute.threads:}") Integer parallelSiteThreads,
-                                     @Value("${core.redirects.cache.parallel.item.recompute.threads:4}") int parallelItemThreads) {
+                                     @Value("${core.redirects.cache.parallel.item.recompute.threads:4}") int parallelItemThreads,
+                                     @Value("${core.redirects.cache.batch.maxSize:500}") int batchMaxSize,
+                                     @Value("${core.redirects.cache.batch.delayMillis:100}") long batchDelayMillis,
+                                     List<RedirectPurgeSink> purgeSinks,
+                                     RedirectCheckpoint checkpoint,
+                                     RedirectLocationCache locationCache,
+                                     NotFoundMemo notFoundMemo) {
     this.sitesService = sitesService;
     this.contentRepository = contentRepository;
     this.redirectsCache = redirectsCache;
     this.redirectsPath = redirectsPath;
-    itemUpdateExecutor = newPausableItemUpdateExecutor(parallelItemThreads);
-    siteUpdateExecutor = newControllingThreadPoolExecutorService(sitesService, parallelSiteThreads, itemUpdateExecutor);
+    this.purgeSinks = purgeSinks.stream().filter(sink -> sink != RedirectPurgeSink.NONE).collect(Collectors.toList());
+    this.checkpoint = checkpoint;
+    this.locationCache = locationCache;
+    this.notFoundMemo = notFoundMemo;
+    itemUpdateExecutor = newItemUpdateExecutor(parallelItemThreads);
+    siteUpdateExecutor = newSiteUpdateExecutor(sitesService, parallelSiteThreads);
+    batchExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("redirect-update-batches-%d").setDaemon(true).build());
+    itemUpdates = new KeyedBatchExecutor<>(itemUpdateExecutor, batchExecutor, batchMaxSize, batchDelayMillis,
+            update -> update.task.getContentId(), this::applyItemUpdates);
+    siteTasks = new KeyedTaskExecutor<>(siteUpdateExecutor);
+    validityExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("redirect-validity-updates-%d").setDaemon(true).build());
   }
 
   /**
@@ -76,10 +122,13 @@ public class RedirectUpdateTaskScheduler {
     Site site = getSite(redirect);
     if (site != null) {
       if (redirectsCache.containsKey(site)) {
+        DocumentTask task = new UpdateDocumentTask(redirectsCache, site, redirect);
+        Supplier<RedirectPurgeEvent> event =
+                () -> RedirectPurgeEvent.forRedirect(RedirectPurgeEvent.Type.UPDATED, site.getId(), redirect.getId());
         if (testMode) {
-          new UpdateDocumentTask(redirectsCache, site, redirect).run();
+          withPurge(task, event).run();
         } else {
-          itemUpdateExecutor.submit(new UpdateDocumentTask(redirectsCache, site, redirect));
+          submitItemUpdate(site, task, event);
         }
       } else {
         // If the site of this redirect is not in the cache yet, we have to build an index for it
@@ -93,31 +142,67 @@ public class RedirectUpdateTaskScheduler {
    */
   public void runUpdate(Site site) {
     if (site != null) {
-      // Before a site update, we can cancel all running jobs, as they will be overwritten anyway
+      // The waiting item updates of the site are discarded after the site update, as they are read again anyway
       submitSiteUpdate(site);
     }
   }
 
   private void submitSiteUpdate(Site site) {
-    itemUpdateExecutor.pause();
-    LOG.info("Re-indexing site {}, paused item update queue", site);
+    Runnable task = withSitePurge(site, new UpdateSiteTask(redirectsCache, contentRepository, redirectsPath, site));
     if (testMode) {
-      new UpdateSiteTask(redirectsCache, contentRepository, redirectsPath, site, itemUpdateExecutor).run();
+      task.run();
     } else {
-      siteUpdateExecutor.submit(new UpdateSiteTask(redirectsCache, contentRepository, redirectsPath, site, itemUpdateExecutor));
+      // The updates of the other sites are applied meanwhile
+      itemUpdates.pause(site);
+      LOG.info("Re-indexing site {}, paused its item updates", site);
+      try {
+        submit(siteTasks, site.getId(), withValidityUpdate(site, withItemUpdatesPaused(site, task)));
+      } catch (RejectedExecutionException e) {
+        // The task will never resume the updates
+        itemUpdates.resume(site);
+        throw e;
+      }
     }
   }
 
+  /**
+   * Buffers the item updates of the site while the task re-indexes it. Afterwards, the updates submitted before the
+   * task started are discarded, as the task has read their changes already. The later ones are applied.
+   */
+  private Runnable withItemUpdatesPaused(Site site, Runnable task) {
+    return () -> {
+      // Paused on submit already, but a former task of the site might have resumed the updates meanwhile
+      itemUpdates.pause(site);
+      long start = System.nanoTime();
+      boolean completed = false;
+      try {
+        task.run();
+        completed = true;
+      } finally {
+        if (completed) {
+          List<ItemUpdate> discarded = itemUpdates.resume(site, start);
+          discarded.forEach(update -> checkpoint.taskCompleted());
+          LOG.info("Re-indexed site {}, discarded {} and resumed its remaining item updates", site, discarded.size());
+        } else {
+          itemUpdates.resume(site);
+        }
+      }
+    };
+  }
+
   /**
    * Update the redirect cache and remove the given redirect.
    */
   public void runRemove(Content redirect) {
     Site site = getSiteOfDeletedContent(redirect);
     if (site != null && redirectsCache.containsKey(site)) {
+      DocumentTask task = new RemoveDocumentTask(redirectsCache, site, redirect);
+      Supplier<RedirectPurgeEvent> event =
+              () -> RedirectPurgeEvent.forRedirect(RedirectPurgeEvent.Type.REMOVED, site.getId(), redirect.getId());
       if (testMode) {
-        new RemoveDocumentTask(redirectsCache, site, redirect).run();
+        withPurge(task, event).run();
       } else {
-        itemUpdateExecutor.submit(new RemoveDocumentTask(redirectsCache, site, redirect));
+        submitItemUpdate(site, task, event);
       }
     }
   }
@@ -129,25 +214,229 @@ public class RedirectUpdateTaskScheduler {
 
     Site site = getSite(folder);
     if (site != null && redirectsCache.containsKey(site)) {
+      DocumentTask task = new DestroyDocumentTask(redirectsCache, site, redirectId);
+      Supplier<RedirectPurgeEvent> event =
+              () -> RedirectPurgeEvent.forRedirect(RedirectPurgeEvent.Type.DESTROYED, site.getId(), redirectId);
       if (testMode) {
-        new DestroyDocumentTask(redirectsCache, site, redirectId).run();
+        withPurge(task, event).run();
       } else {
-        itemUpdateExecutor.submit(new DestroyDocumentTask(redirectsCache, site, redirectId));
+        submitItemUpdate(site, task, event);
+      }
+    }
+  }
+
+
+  /**
+   * Handles a change of the given content for the redirects linking it. The redirects are only updated, if the
+   * validFrom or validTo dates of the content have been changed. Otherwise, only its link might have been changed:
+   * the cached locations of the content are dropped and the redirects are purged from the edge caches.
+   */
+  public void runTargetUpdate(Content target) {
+    locationCache.invalidateTarget(target.getId());
+    for (Map.Entry<Site, SiteRedirects> entry : redirectsCache.entrySet()) {
+      List<Redirect> redirects = entry.getValue().findRedirectsWithTarget(target.getId());
+      for (Redirect redirect : redirects) {
+        if (!redirect.hasValidityOf(target)) {
+          LOG.debug("Validity of target {} changed, updating redirect {}", target.getId(), redirect.getContentId());
+          Content redirectContent = contentRepository.getContent(redirect.getContentId());
+          if (redirectContent != null) {
+            runUpdate(redirectContent);
+          }
+        } else {
+          publish(RedirectPurgeEvent.forRedirect(RedirectPurgeEvent.Type.UPDATED, entry.getKey().getId(),
+                  redirect.getContentId()));
+        }
       }
     }
   }
 
+  /**
+   * Drops the remembered 404s of the site of a new or changed page: the page might make their paths resolvable. Pages
+   * outside of a site are left to the expiry of the remembered 404s.
+   */
+  public void runPageUpdate(Content page) {
+    Site site = sitesService.getContentSiteAspect(page).getSite();
+    Content root = site != null ? site.getSiteRootDocument() : null;
+    if (root != null) {
+      notFoundMemo.invalidateSite(root.getString("segment"));
+    }
+  }
+
+  /**
+   * Switches the target validity of the redirects of the given site, which have reached their next validity change.
+   */
+  void runValidityUpdate(Site site) {
+    long now = System.currentTimeMillis();
+    validityUpdates.computeIfPresent(site, (s, update) -> update.time <= now ? null : update);
+    SiteRedirects before = redirectsCache.get(site);
+    SiteRedirects after = redirectsCache.computeIfPresent(site, (s, redirects) ->
+            redirects.getNextValidityChange() <= now ? redirects.withTargetValidity(now) : redirects);
+    if (after != before) {
+      // Redirects might have been switched on or off: the cached responses of the whole site are outdated
+      publish(sitePurgeEvent(site));
+    }
+    scheduleValidityUpdate(site);
+  }
+
+  /**
+   * Schedules the validity update for the next validity change of the site, if it is earlier than the one already
+   * scheduled. One update per site is pending at most. Called after each task and for redirects loaded from a snapshot.
+   */
+  void scheduleValidityUpdate(Site site) {
+    SiteRedirects redirects = redirectsCache.get(site);
+    if (redirects == null || redirects.getNextValidityChange() == Long.MAX_VALUE) {
+      return;
+    }
+    long time = redirects.getNextValidityChange();
+    validityUpdates.compute(site, (s, pending) -> {
+      if (pending != null && pending.time <= time && !pending.future.isDone()) {
+        return pending;
+      }
+      if (pending != null) {
+        pending.future.cancel(false);
+      }
+      long delay = Math.max(0, time - System.currentTimeMillis());
+      return new ValidityUpdate(time, validityExecutor.schedule(() -> runValidityUpdate(site), delay, TimeUnit.MILLISECONDS));
+    });
+  }
+
+  private Runnable withSitePurge(Site site, Runnable task) {
+    return withPurge(task, () -> sitePurgeEvent(site));
+  }
+
+  @Nullable
+  private RedirectPurgeEvent sitePurgeEvent(Site site) {
+    return Optional.ofNullable(site.getSiteRootDocument())
+            .map(root -> RedirectPurgeEvent.forSite(site.getId(), root.getString("segment")))
+            .orElse(null);
+  }
+
+  /**
+   * Publishes the purge event after the task has been applied to the redirects cache. Edge caches requesting the
+   * purged redirects again receive the changed redirects then.
+   */
+  private Runnable withPurge(Runnable task, Supplier<RedirectPurgeEvent> event) {
+    if (purgeSinks.isEmpty()) {
+      return task;
+    }
+    return () -> {
+      task.run();
+      publish(event.get());
+    };
+  }
+
+  private void publish(@Nullable RedirectPurgeEvent event) {
+    if (event == null || purgeSinks.isEmpty()) {
+      return;
+    }
+    for (RedirectPurgeSink sink : purgeSinks) {
+      try {
+        sink.publish(event);
+      } catch (RuntimeException e) {
+        LOG.warn("Unable to publish {} to {}", event, sink, e);
+      }
+    }
+  }
+
+  /**
+   * Adds the task to the batch of the site. It is counted as pending in the {@link RedirectCheckpoint} until its batch
+   * has been applied or it has been replaced by a later task of the redirect.
+   */
+  private void submitItemUpdate(Site site, DocumentTask task, Supplier<RedirectPurgeEvent> event) {
+    checkpoint.taskSubmitted();
+    if (!itemUpdates.submit(site, new ItemUpdate(task, event))) {
+      checkpoint.taskCompleted();
+      LOG.debug("Coalesced pending update of {}", task.getContentId());
+    }
+  }
+
+  /**
+   * Applies a batch of redirect updates of the site in one step.
+   */
+  private void applyItemUpdates(Site site, List<ItemUpdate> updates) {
+    try {
+      List<DocumentTask> tasks = updates.stream().map(update -> update.task).collect(Collectors.toList());
+      BatchUpdateTask batch = new BatchUpdateTask(redirectsCache, contentRepository, site, tasks);
+      batch.run();
+      // Only the applied changes are purged
+      Set<DocumentTask> applied = new HashSet<>(batch.getAppliedTasks());
+      updates.stream().filter(update -> applied.contains(update.task)).forEach(update -> publish(update.event.get()));
+      scheduleValidityUpdate(site);
+    } finally {
+      updates.forEach(update -> checkpoint.taskCompleted());
+    }
+  }
+
+  /**
+   * Submits the task for the key. It is counted as pending in the {@link RedirectCheckpoint} until it has been run or
+   * replaced by a later task of the key.
+   */
+  private void submit(KeyedTaskExecutor<String> tasks, String key, Runnable task) {
+    checkpoint.taskSubmitted();
+    boolean queued;
+    try {
+      queued = tasks.execute(key, () -> {
+        try {
+          task.run();
+        } finally {
+          checkpoint.taskCompleted();
+        }
+      });
+    } catch (RuntimeException e) {
+      // Rejected, the task will never complete
+      checkpoint.taskCompleted();
+      throw e;
+    }
+    if (!queued) {
+      // Replaced a pending task, which will never complete
+      checkpoint.taskCompleted();
+      LOG.debug("Coalesced pending update of {}", key);
+    }
+  }
+
+  private Runnable withValidityUpdate(Site site, Runnable task) {
+    return () -> {
+      task.run();
+      scheduleValidityUpdate(site);
+    };
+  }
+
+  /**
+   * A redirect update waiting for its batch, with the purge event to be published after it has been applied.
+   */
+  private static final class ItemUpdate {
+
+    private final DocumentTask task;
+    private final Supplier<RedirectPurgeEvent> event;
+
+    ItemUpdate(DocumentTask task, Supplier<RedirectPurgeEvent> event) {
+      this.task = task;
+      this.event = event;
+    }
+  }
+
+  /**
+   * A scheduled validity update of a site.
+   */
+  private static final class ValidityUpdate {
+
+    private final long time;
+    private final ScheduledFuture<?> future;
+
+    ValidityUpdate(long time, ScheduledFuture<?> future) {
+      this.time = time;
+      this.future = future;
+    }
+  }
 
   // HELPER METHODS
 
-  private PausableThreadPoolExecutorService newPausableItemUpdateExecutor(int maxThreadCount) {
+  private ThreadPoolExecutor newItemUpdateExecutor(int maxThreadCount) {
     ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNameFormat("redirect-item-updates-%d").build();
-    return new PausableThreadPoolExecutorService(2, maxThreadCount, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), namedThreadFactory);
+    return new ThreadPoolExecutor(2, maxThreadCount, 1L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), namedThreadFactory);
   }
 
-  private ControllingThreadPoolExecutorService newControllingThreadPoolExecutorService(SitesService sitesService,
-                                                                                       @Nullable Integer parallelSiteThreads,
-                                                                                       PausableThreadPoolExecutorService pausableThreadPoolExecutorService) {
+  private ThreadPoolExecutor newSiteUpdateExecutor(SitesService sitesService, @Nullable Integer parallelSiteThreads) {
     ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNameFormat("redirect-site-updates-%d").build();
 
     //If the number of threads has not been configured: try to run all threads at once, to fill the cache as fast as
@@ -155,16 +444,14 @@ public class RedirectUpdateTaskScheduler {
     // of all sites.
     if (parallelSiteThreads == null) {
       int maximumPoolSize = sitesService.getSites().isEmpty() ? 1 : sitesService.getSites().size();
-      return new ControllingThreadPoolExecutorService(1, maximumPoolSize, 1L,
-              TimeUnit.SECONDS, new SynchronousQueue<>(),
-              namedThreadFactory, pausableThreadPoolExecutorService);
+      return new ThreadPoolExecutor(1, maximumPoolSize, 1L,
+              TimeUnit.SECONDS, new SynchronousQueue<>(), namedThreadFactory);
     } else {
       //If the number of threads has been configured: use it as the core pool size and as the number of max threads,
       //combined with a LinkedBlockingDeque (which is unbounded). The configured number of threads are availble (core pool)
       // and potential new threads will be parked in the queue
-      return new ControllingThreadPoolExecutorService(parallelSiteThreads, parallelSiteThreads, 1L,
-              TimeUnit.SECONDS, new LinkedBlockingDeque<>(),
-              namedThreadFactory, pausableThreadPoolExecutorService);
+      return new ThreadPoolExecutor(parallelSiteThreads, parallelSiteThreads, 1L,
+              TimeUnit.SECONDS, new LinkedBlockingDeque<>(), namedThreadFactory);
     }
 
   }
@@ -189,6 +476,43 @@ public class RedirectUpdateTaskScheduler {
     });
   }
 
+  /**
+   * Returns the number of redirect updates waiting to be run.
+   */
+  public int getItemQueueDepth() {
+    return itemUpdates.getQueueDepth();
+  }
+
+  /**
+   * Returns the number of redirect updates, which have been replaced by a later update of the same redirect.
+   */
+  public long getCoalescedItemUpdates() {
+    return itemUpdates.getCoalescedItems();
+  }
+
+  /**
+   * Returns the number of site updates waiting to be run.
+   */
+  public int getSiteQueueDepth() {
+    return siteTasks.getQueueDepth();
+  }
+
+  /**
+   * Returns the number of site updates, which have been replaced by a later update of the same site.
+   */
+  public long getCoalescedSiteUpdates() {
+    return siteTasks.getCoalescedTasks();
+  }
+
+  /**
+   * Returns the time in milliseconds, for which the oldest waiting redirect update of each site is waiting, by site id.
+   * Sites without waiting updates are missing. Updates of a site being re-indexed are waiting, until it is done.
+   */
+  public Map<String, Long> getUpdateLagMillis() {
+    return itemUpdates.getLagMillis().entrySet().stream()
+            .collect(Collectors.toMap(entry -> entry.getKey().getId(), Map.Entry::getValue));
+  }
+
   void setTestMode(boolean testMode) {
     this.testMode = testMode;
   }
@@ -15,18 +15,33 @@
  */
 package com.tallence.core.redirects.cae.service;
 
+import com.coremedia.cap.common.IdHelper;
 import com.tallence.core.redirects.cae.filter.RedirectFilter;
 import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.cae.service.index.PathBloomFilter;
+import com.tallence.core.redirects.cae.service.index.PatternMatchPolicy;
+import com.tallence.core.redirects.cae.service.index.PatternRedirectsMatcher;
+import com.tallence.core.redirects.cae.service.index.PersistentHashMap;
+import com.tallence.core.redirects.cae.service.index.PrefixTree;
+import com.tallence.core.redirects.model.RedirectSourceParameter;
 import com.tallence.core.redirects.model.SourceUrlType;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -34,26 +49,119 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Holder class for the redirects of a specific site.
- * Keeps maps of the paths or patterns to their redirects.
+ * Keeps maps of the paths, prefixes or patterns to their redirects.
+ *
+ * Instances are immutable snapshots of the index: changes like {@link #withRedirect} return a new instance, which
+ * replaces the old one in the redirects cache in one atomic step. Request threads read a snapshot without locks and
+ * always see a consistent state, while updates are applied to the next version.
  */
 public class SiteRedirects {
 
   private static final Logger LOG = LoggerFactory.getLogger(SiteRedirects.class);
 
-  private String siteId;
-  private final ConcurrentHashMap<String, List<Redirect>> plainRedirects = new ConcurrentHashMap<>();
-  private final Object plainRedirectsMonitor = new Object();
-  private final ConcurrentHashMap<Pattern, List<Redirect>> patternRedirects = new ConcurrentHashMap<>();
-  private final Object patternRedirectsMonitor = new Object();
+  private static final AtomicLong VERSIONS = new AtomicLong();
+
+  private static final double PLAIN_KEY_FPP = 0.01;
+  private static final int MIN_PLAIN_KEY_CAPACITY = 1024;
+  private static final int MIN_PENDING_PLAIN_KEYS = 256;
 
-  private final Map<SourceUrlType, Object> monitors = Map.of(SourceUrlType.PLAIN, plainRedirectsMonitor, SourceUrlType.REGEX, patternRedirectsMonitor);
-  private final Map<SourceUrlType, Map<?, List<Redirect>>> maps = Map.of(SourceUrlType.PLAIN, plainRedirects, SourceUrlType.REGEX, patternRedirects);
+  // The order in which the patterns are tried: highest priority first, then the lowest content id
+  private static final Comparator<PatternRedirects> PATTERN_ORDER =
+          Comparator.<PatternRedirects>comparingInt(e -> maxPriority(e.redirects)).reversed()
+                  .thenComparingInt(e -> minContentId(e.redirects));
+
+  private final String siteId;
+  private final long version;
+  private final PersistentHashMap<String, List<Redirect>> plainRedirects;
+  private final PersistentHashMap<String, List<Redirect>> prefixRedirects;
+  // Built from the keys of the prefixRedirects on the first lookup, for the longest prefix match of a path. Taken over
+  // by the next snapshot, if its prefixes are the same.
+  private volatile PrefixTree<String> prefixTree;
+  // The pattern redirects by their regex
+  private final PersistentHashMap<String, PatternRedirects> patternRedirects;
+  // Compiled from the patternRedirects on the first lookup. Taken over by the next snapshot, if its patterns are the
+  // same.
+  private volatile CompiledPatterns compiledPatterns;
+  // Reverse index: contentId -> key of the redirect in the plainRedirects (a String), prefixRedirects (a Prefix) or
+  // patternRedirects (a Regex)
+  private final PersistentHashMap<String, Object> keysById;
+  // Reverse index: id of the target content -> contentIds of the redirects linking it
+  private final PersistentHashMap<String, List<String>> idsByTarget;
+  // Negative lookup for plain redirects, null if there are none. Not changed after publication: the keys added later
+  // are kept in the pendingPlainKeys, until the filter is rebuilt. Keys of removed redirects cause false positives, a
+  // contained key is never missing.
+  @Nullable
+  private final PathBloomFilter plainKeyFilter;
+  private final PersistentHashMap<String, Boolean> pendingPlainKeys;
+  // Time in epoch millis, when the target validity of a redirect changes next. Might be earlier after a removal.
+  private final long nextValidityChange;
 
   public SiteRedirects() {
+    this(null);
   }
 
   public SiteRedirects(String siteId) {
+    this(siteId, PersistentHashMap.empty(), PersistentHashMap.empty(), null, PersistentHashMap.empty(), null,
+            PersistentHashMap.empty(), PersistentHashMap.empty(), null, PersistentHashMap.empty(), Long.MAX_VALUE);
+  }
+
+  private SiteRedirects(String siteId, PersistentHashMap<String, List<Redirect>> plainRedirects,
+                        PersistentHashMap<String, List<Redirect>> prefixRedirects,
+                        @Nullable PrefixTree<String> prefixTree,
+                        PersistentHashMap<String, PatternRedirects> patternRedirects,
+                        @Nullable CompiledPatterns compiledPatterns,
+                        PersistentHashMap<String, Object> keysById,
+                        PersistentHashMap<String, List<String>> idsByTarget, @Nullable PathBloomFilter plainKeyFilter,
+                        PersistentHashMap<String, Boolean> pendingPlainKeys, long nextValidityChange) {
     this.siteId = siteId;
+    this.version = VERSIONS.incrementAndGet();
+    this.plainRedirects = plainRedirects;
+    this.prefixRedirects = prefixRedirects;
+    this.prefixTree = prefixTree;
+    this.patternRedirects = patternRedirects;
+    this.compiledPatterns = compiledPatterns;
+    this.keysById = keysById;
+    this.idsByTarget = idsByTarget;
+    this.plainKeyFilter = plainKeyFilter;
+    this.pendingPlainKeys = pendingPlainKeys;
+    this.nextValidityChange = nextValidityChange;
+  }
+
+  /**
+   * Returns a builder for the complete index of a site.
+   */
+  public static Builder builder(String siteId) {
+    return new Builder(siteId);
+  }
+
+  /**
+   * Returns the id of the site or {@code null} for an empty placeholder.
+   */
+  @Nullable
+  public String getSiteId() {
+    return siteId;
+  }
+
+  /**
+   * Returns the version of this snapshot. Every change of the index results in a new, higher version.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns the number of redirects in this snapshot.
+   */
+  public int size() {
+    return keysById.size();
+  }
+
+  /**
+   * Returns the time in epoch millis, at which the {@link Redirect#isTargetValid() target validity} of a redirect
+   * changes next, or {@link Long#MAX_VALUE}. At this time, {@link #withTargetValidity} has to be applied.
+   */
+  public long getNextValidityChange() {
+    return nextValidityChange;
   }
 
   /**
@@ -64,75 +172,275 @@ public class SiteRedirects {
   }
 
   /**
-   * Returns the list of redirects with pattern source urls.
+   * Returns the redirects with prefix source urls, by their decoded prefix without a trailing slash.
+   */
+  public Map<String, List<Redirect>> getPrefixRedirects() {
+    return prefixRedirects;
+  }
+
+  /**
+   * Returns the list of redirects with pattern source urls. The iteration order is the order in which the patterns
+   * are tried: by the {@link Redirect#getPriority() priority} of their redirects, then by the lowest content id. This
+   * order does not depend on the order of the updates, all CAEs choose the same redirect.
+   *
+   * The map is created on each call, for O(number of patterns).
    */
   public Map<Pattern, List<Redirect>> getPatternRedirects() {
-    return patternRedirects;
+    Map<Pattern, List<Redirect>> result = new LinkedHashMap<>();
+    compiledPatterns().ordered.forEach(pattern -> result.put(pattern, patternRedirects.get(pattern.pattern()).redirects));
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * Returns the sorted names of all source parameters of the pattern redirects. Only these request parameters can
+   * influence, which pattern redirect is chosen for a path.
+   */
+  public List<String> getPatternParameterNames() {
+    return compiledPatterns().parameterNames;
+  }
+
+  /**
+   * Returns false, if there is no plain redirect for the given (decoded) path. Allows to skip the lookup in the
+   * {@link #getPlainRedirects() plain redirects} for most of the requests, which are no redirect at all.
+   *
+   * @return true, if there might be a plain redirect, false if there definitely is none.
+   */
+  public boolean mightHavePlainRedirects(CharSequence path) {
+    if (plainRedirects.isEmpty()) {
+      return false;
+    }
+    return plainKeyFilter != null && plainKeyFilter.mightContain(path)
+            || !pendingPlainKeys.isEmpty() && pendingPlainKeys.containsKey(path);
+  }
+
+  /**
+   * Returns the plain redirects for the given (decoded) path. Other than a lookup in {@link #getPlainRedirects()},
+   * this does not allocate, if the path is a {@link com.tallence.core.redirects.cae.service.index.RequestPath}.
+   *
+   * @return the redirects or {@code null}, if there are no plain redirects for the path.
+   */
+  @Nullable
+  public List<Redirect> findPlainRedirects(CharSequence path) {
+    return mightHavePlainRedirects(path) ? plainRedirects.get(path) : null;
+  }
+
+  /**
+   * Returns the redirects of the longest prefix of the given (decoded) path. A prefix matches the path itself and
+   * the paths below it, only at segment boundaries: "/old-section" matches "/old-section/page", but not
+   * "/old-section-2". The lookup in the prefix tree costs O(length of the path) and does not allocate.
+   *
+   * @return the redirects of the longest matching prefix or {@code null}, if no prefix matches.
+   */
+  @Nullable
+  public List<Redirect> findPrefixRedirects(CharSequence path) {
+    String prefix = prefixRedirects.isEmpty() ? null : prefixTree().longestPrefixOf(path, '/');
+    return prefix != null ? prefixRedirects.get(prefix) : null;
+  }
+
+  /**
+   * Returns the redirects of the first pattern, which matches the complete given path.
+   * Only patterns whose literal prefix matches the path are evaluated, see {@link PatternRedirectsMatcher}. The
+   * matcher is compiled on the first lookup of a snapshot with changed patterns.
+   *
+   * @return the redirects of the matching pattern or {@code null}, if no pattern matches.
+   */
+  @Nullable
+  public List<Redirect> findPatternRedirects(CharSequence path) {
+    return patternRedirects.isEmpty() ? null : patternRedirectsOf(compiledPatterns().matcher.match(path));
+  }
+
+  /**
+   * Returns the redirects of the first pattern, which matches the complete given path, evaluated with the engine and
+   * step budget of the given policy. See {@link #findPatternRedirects(CharSequence)}.
+   *
+   * @return the redirects of the matching pattern or {@code null}, if no pattern matches or the evaluation has been
+   * aborted.
+   */
+  @Nullable
+  public List<Redirect> findPatternRedirects(CharSequence path, PatternMatchPolicy policy) {
+    return patternRedirects.isEmpty() ? null : patternRedirectsOf(compiledPatterns().matcher.match(path, policy));
+  }
+
+  @Nullable
+  private List<Redirect> patternRedirectsOf(@Nullable Pattern pattern) {
+    return pattern != null ? patternRedirects.get(pattern.pattern()).redirects : null;
   }
 
   /**
-   * Adds the given redirect to the cache, if it is valid.
+   * Returns the matcher of the patterns, see {@link #findPatternRedirects(CharSequence)}.
+   */
+  PatternRedirectsMatcher getPatternMatcher() {
+    return compiledPatterns().matcher;
+  }
+
+  /**
+   * Returns a new snapshot with the given redirect added, if it is valid. A former version of the redirect is
+   * removed, its type might have been changed in the latest version of the redirect.
    *
-   * The url will be decoded because {@link javax.servlet.http.HttpServletRequest#getPathInfo} will
+   * The url will be decoded because {@link jakarta.servlet.http.HttpServletRequest#getPathInfo} will
    * return a decoded pathInfo too. The decoding must not handle params, schemes, ports etc. because the lookup
    * in the {@link RedirectFilter} matches the source with the Request-PathInfo only
+   *
+   * The former version is found with the reverse index of the content ids, the removal and the addition result in
+   * one new snapshot. Changing a plain redirect costs O(1) amortized expected time, independent of the number of
+   * redirects of the site: the negative lookup filter is only rebuilt after a share of the plain redirects has been
+   * added since its last build. After a change of a prefix or a pattern redirect, the prefix tree or the pattern matcher of the site is
+   * rebuilt once, on the first lookup in the new snapshot: O(number of prefixes) or O(number of patterns).
    */
-  public void addRedirect(Redirect redirect) {
-    if (redirect.getSourceUrlType() == SourceUrlType.PLAIN) {
-
-      final String key = URLDecoder.decode(redirect.getSource(), UTF_8);
-      updateMaps(SourceUrlType.PLAIN, key, redirect);
+  public SiteRedirects withRedirect(Redirect redirect) {
+    Editor editor = edit();
+    editor.add(redirect);
+    return editor.build();
+  }
 
-    } else if (redirect.getSourceUrlType() == SourceUrlType.REGEX) {
-      try {
-        final Pattern key = Pattern.compile(redirect.getSource());
-        updateMaps(SourceUrlType.REGEX, key, redirect);
-      } catch (PatternSyntaxException e) {
-        LOG.error("Unable to compile pattern on redirect {}, ignoring redirect", redirect);
-        //The invalid pattern should already be handled by the validator. In case something went wrong: Make sure,
-        //the old redirect is removed
-        removeRedirect(redirect.getContentId());
-      }
+  /**
+   * Returns a new snapshot without the given redirect.
+   */
+  public SiteRedirects withoutRedirect(Redirect redirect) {
+    return withoutRedirect(redirect.getContentId());
+  }
 
-    } else {
-      LOG.error("Illegal source type {} on redirect {}, ignoring redirect", redirect.getSourceUrlType(), redirect);
-    }
+  /**
+   * Returns a new snapshot without the redirect, identified by the given id, or this snapshot, if it does not
+   * contain the redirect.
+   */
+  public SiteRedirects withoutRedirect(String id) {
+    Editor editor = edit();
+    editor.remove(id);
+    return editor.build();
   }
 
-  private <T> void updateMaps(SourceUrlType sourceUrlType, T key, Redirect redirect) {
+  /**
+   * Returns an editor to apply many changes to this snapshot, which result in one new snapshot.
+   */
+  public Editor edit() {
+    return new Editor();
+  }
 
-    //Remove it from all maps, the type might have been changed in the latest version of the redirect
-    removeRedirect(redirect.getContentId());
+  /**
+   * Returns a new snapshot, in which the {@link Redirect#isTargetValid() target validity} of all redirects is
+   * updated to the given time in epoch millis. Costs O(number of redirects), it is only applied, when the validity
+   * of a redirect changes. All changed redirects are replaced in one new snapshot. Neither their keys nor their order
+   * change, so the prefix tree, the pattern matcher and the filter of the plain keys are kept.
+   */
+  public SiteRedirects withTargetValidity(long now) {
+    Editor editor = edit();
+    // Recompute the next change: removed redirects might have left an earlier one
+    long[] nextChange = {Long.MAX_VALUE};
+    forEachRedirect(redirect -> {
+      Redirect updated = redirect.withTargetValidity(now);
+      if (updated != redirect) {
+        editor.replace(updated);
+      }
+      nextChange[0] = Math.min(nextChange[0], updated.getNextValidityChange());
+    });
+    editor.nextChange = nextChange[0];
+    return editor.build();
+  }
 
-    synchronized (monitors.get(sourceUrlType)) {
-      final Map<T, List<Redirect>> redirects = getRedirects(sourceUrlType);
-      redirects.putIfAbsent(key, new ArrayList<>());
-      redirects.get(key).add(redirect);
+  /**
+   * Returns the redirects linking the content with the given id. Costs O(number of these redirects), independent of
+   * the number of redirects of the site.
+   */
+  public List<Redirect> findRedirectsWithTarget(String targetId) {
+    List<String> ids = idsByTarget.get(targetId);
+    if (ids == null) {
+      return List.of();
+    }
+    List<Redirect> result = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      Redirect redirect = find(redirectsOf(keysById.get(id)), id);
+      if (redirect != null) {
+        result.add(redirect);
+      }
     }
+    return result;
   }
 
   /**
-   * Removes the given redirect from the correct list.
+   * Passes every redirect of this snapshot to the consumer: the plain, the prefix and the pattern redirects.
    */
-  public void removeRedirect(Redirect redirect) {
+  public void forEachRedirect(Consumer<Redirect> consumer) {
+    plainRedirects.values().forEach(redirects -> redirects.forEach(consumer));
+    prefixRedirects.values().forEach(redirects -> redirects.forEach(consumer));
+    patternRedirects.values().forEach(patterns -> patterns.redirects.forEach(consumer));
+  }
 
-    // Removes the whole map entry afterwards, if the list is empty as a result of the operation.
-    synchronized (monitors.get(redirect.getSourceUrlType())) {
-      maps.get(redirect.getSourceUrlType()).entrySet().removeIf(entry -> entry.getValue().remove(redirect) && entry.getValue().isEmpty());
+  /**
+   * Returns the redirects with the given key of the reverse index.
+   */
+  private List<Redirect> redirectsOf(Object key) {
+    List<Redirect> redirects = null;
+    if (key instanceof String) {
+      redirects = plainRedirects.get(key);
+    } else if (key instanceof Prefix) {
+      redirects = prefixRedirects.get(((Prefix) key).path);
+    } else if (key instanceof Regex) {
+      PatternRedirects patterns = patternRedirects.get(((Regex) key).regex);
+      redirects = patterns != null ? patterns.redirects : null;
     }
+    return redirects != null ? redirects : List.of();
   }
 
   /**
-   * Remove the redirect, identified by the given id.
-   * The type is not known -> try both lists.
+   * Returns the prefix tree, which is built on the first call. This costs O(number of prefixes), which are expected
+   * to be few compared to the plain redirects.
    */
-  public void removeRedirect(String id) {
+  private PrefixTree<String> prefixTree() {
+    PrefixTree<String> result = prefixTree;
+    if (result == null) {
+      synchronized (this) {
+        result = prefixTree;
+        if (result == null) {
+          result = new PrefixTree<>();
+          for (String prefix : prefixRedirects.keySet()) {
+            result.put(prefix, prefix);
+          }
+          prefixTree = result;
+        }
+      }
+    }
+    return result;
+  }
 
-    for (Map.Entry<SourceUrlType, Object> entry : monitors.entrySet()) {
-      synchronized (entry.getValue()) {
-        maps.get(entry.getKey()).entrySet().removeIf(e -> e.getValue().removeIf(r -> id.equals(r.getContentId())) && e.getValue().isEmpty());
+  /**
+   * Returns the patterns in the order, in which they are tried, and their matcher. They are compiled on the first
+   * call, for O(number of patterns).
+   */
+  private CompiledPatterns compiledPatterns() {
+    CompiledPatterns result = compiledPatterns;
+    if (result == null) {
+      synchronized (this) {
+        result = compiledPatterns;
+        if (result == null) {
+          result = new CompiledPatterns(patternRedirects);
+          compiledPatterns = result;
+        }
       }
     }
+    return result;
+  }
+
+  private static int maxPriority(List<Redirect> redirects) {
+    int priority = Integer.MIN_VALUE;
+    for (Redirect redirect : redirects) {
+      priority = Math.max(priority, redirect.getPriority());
+    }
+    return priority;
+  }
+
+  private static int minContentId(List<Redirect> redirects) {
+    int id = Integer.MAX_VALUE;
+    for (Redirect redirect : redirects) {
+      id = Math.min(id, IdHelper.parseContentId(redirect.getContentId()));
+    }
+    return id;
+  }
+
+  private static PathBloomFilter plainKeyFilter(Collection<String> paths) {
+    PathBloomFilter filter = PathBloomFilter.create(Math.max(2 * paths.size(), MIN_PLAIN_KEY_CAPACITY), PLAIN_KEY_FPP);
+    paths.forEach(filter::put);
+    return filter;
   }
 
   @Override
@@ -141,25 +449,410 @@ public class SiteRedirects {
     if (o == null || getClass() != o.getClass()) return false;
     SiteRedirects that = (SiteRedirects) o;
     return Objects.equals(plainRedirects, that.plainRedirects) &&
+            Objects.equals(prefixRedirects, that.prefixRedirects) &&
             Objects.equals(patternRedirects, that.patternRedirects);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(plainRedirects, patternRedirects);
+    return Objects.hash(plainRedirects, prefixRedirects, patternRedirects);
   }
 
   @Override
   public String toString() {
     return "SiteRedirects{" +
             "siteId='" + siteId + '\'' +
+            ", version=" + version +
             ", plainRedirects.size=" + plainRedirects.size() +
+            ", prefixRedirects.size=" + prefixRedirects.size() +
             ", patternRedirects.size=" + patternRedirects.size() +
             '}';
   }
 
-  @SuppressWarnings("unchecked")
-  private <T> Map<T, List<Redirect>> getRedirects(SourceUrlType sourceUrlType) {
-    return (Map<T, List<Redirect>>) maps.get(sourceUrlType);
+  /**
+   * Returns the key of the redirect in its map: the decoded path for plain redirects, the decoded path without a
+   * trailing slash for prefix redirects, the regex for pattern redirects or {@code null}, if the redirect cannot be
+   * added.
+   */
+  @Nullable
+  private static Object keyOf(Redirect redirect) {
+    if (redirect.getSourceUrlType() == SourceUrlType.PLAIN) {
+      return URLDecoder.decode(redirect.getSource(), UTF_8);
+    } else if (redirect.getSourceUrlType() == SourceUrlType.PREFIX) {
+      String prefix = URLDecoder.decode(redirect.getSource(), UTF_8);
+      return new Prefix(prefix.endsWith("/") ? prefix.substring(0, prefix.length() - 1) : prefix);
+    } else if (redirect.getSourceUrlType() == SourceUrlType.REGEX) {
+      return new Regex(redirect.getSource());
+    }
+    LOG.error("Illegal source type {} on redirect {}, ignoring redirect", redirect.getSourceUrlType(), redirect);
+    return null;
+  }
+
+  /**
+   * Returns the compiled pattern of the redirect or {@code null}, if it is invalid.
+   */
+  @Nullable
+  private static Pattern compile(Redirect redirect) {
+    try {
+      return Pattern.compile(redirect.getSource());
+    } catch (PatternSyntaxException e) {
+      //The invalid pattern should already be handled by the validator.
+      LOG.error("Unable to compile pattern on redirect {}, ignoring redirect", redirect);
+      return null;
+    }
+  }
+
+  private static <T> List<T> append(@Nullable List<T> list, T element) {
+    if (list == null) {
+      return List.of(element);
+    }
+    List<T> result = new ArrayList<>(list.size() + 1);
+    result.addAll(list);
+    result.add(element);
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * Returns the redirect with the given id from the list or {@code null}.
+   */
+  @Nullable
+  private static Redirect find(List<Redirect> redirects, String id) {
+    for (Redirect redirect : redirects) {
+      if (id.equals(redirect.getContentId())) {
+        return redirect;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private static String targetIdOf(@Nullable Redirect redirect) {
+    return redirect != null && redirect.getTarget() != null ? redirect.getTarget().getId() : null;
+  }
+
+  /**
+   * Returns the list with the redirect of the same id replaced by the given one.
+   */
+  private static List<Redirect> replaced(List<Redirect> redirects, Redirect redirect) {
+    List<Redirect> result = new ArrayList<>(redirects);
+    result.replaceAll(r -> r.getContentId().equals(redirect.getContentId()) ? redirect : r);
+    return Collections.unmodifiableList(result);
+  }
+
+  /**
+   * Returns the list without the redirect with the given id.
+   */
+  private static List<Redirect> without(List<Redirect> redirects, String id) {
+    for (int i = 0; i < redirects.size(); i++) {
+      if (id.equals(redirects.get(i).getContentId())) {
+        List<Redirect> result = new ArrayList<>(redirects);
+        result.remove(i);
+        return Collections.unmodifiableList(result);
+      }
+    }
+    return redirects;
+  }
+
+  /**
+   * Applies changes to this snapshot and builds the next one. The maps are persistent: each change costs O(1)
+   * expected time, the derived indexes of the next snapshot are only rebuilt, if their redirects have been changed.
+   * The filter of the plain keys is rebuilt, once the keys added since its last build exceed an eighth of the plain
+   * redirects, so this costs O(1) amortized per added key.
+   * An editor is not thread safe, the edited snapshot is not changed.
+   */
+  public final class Editor {
+
+    private PersistentHashMap<String, List<Redirect>> plain = plainRedirects;
+    private PersistentHashMap<String, List<Redirect>> prefixes = prefixRedirects;
+    private PersistentHashMap<String, PatternRedirects> patterns = patternRedirects;
+    private PersistentHashMap<String, Object> keys = keysById;
+    private PersistentHashMap<String, List<String>> targets = idsByTarget;
+    private PersistentHashMap<String, Boolean> pending = pendingPlainKeys;
+    private long nextChange = nextValidityChange;
+    private boolean changed = false;
+    private boolean prefixesChanged = false;
+    private boolean patternsChanged = false;
+
+    private Editor() {
+    }
+
+    /**
+     * Adds the redirect, if it is valid. A former version of the redirect is removed.
+     */
+    public void add(Redirect redirect) {
+      //In case something went wrong: Make sure, the old redirect is removed
+      remove(redirect.getContentId());
+      Object key = keyOf(redirect);
+      if (key instanceof String) {
+        String path = (String) key;
+        plain = plain.plus(path, append(plain.get(path), redirect));
+        if (plainKeyFilter == null || !plainKeyFilter.mightContain(path)) {
+          pending = pending.plus(path, Boolean.TRUE);
+        }
+      } else if (key instanceof Prefix) {
+        String prefix = ((Prefix) key).path;
+        prefixes = prefixes.plus(prefix, append(prefixes.get(prefix), redirect));
+        prefixesChanged = true;
+      } else if (key instanceof Regex) {
+        String regex = ((Regex) key).regex;
+        PatternRedirects existing = patterns.get(regex);
+        // The compiled pattern of an equal regex is reused
+        Pattern pattern = existing != null ? existing.pattern : compile(redirect);
+        if (pattern == null) {
+          return;
+        }
+        patterns = patterns.plus(regex, new PatternRedirects(pattern, append(existing != null ? existing.redirects : null, redirect)));
+        patternsChanged = true;
+      } else {
+        return;
+      }
+      keys = keys.plus(redirect.getContentId(), key);
+      String targetId = targetIdOf(redirect);
+      if (targetId != null) {
+        targets = targets.plus(targetId, append(targets.get(targetId), redirect.getContentId()));
+      }
+      nextChange = Math.min(nextChange, redirect.getNextValidityChange());
+      changed = true;
+    }
+
+    /**
+     * Removes the redirect with the given id, if it is contained.
+     */
+    public void remove(String id) {
+      Object key = keys.get(id);
+      if (key instanceof String) {
+        String path = (String) key;
+        List<Redirect> redirects = plain.get(path);
+        removeTarget(find(redirects, id));
+        List<Redirect> remaining = without(redirects, id);
+        if (remaining.isEmpty()) {
+          plain = plain.minus(path);
+          pending = pending.minus(path);
+        } else {
+          plain = plain.plus(path, remaining);
+        }
+      } else if (key instanceof Prefix) {
+        String prefix = ((Prefix) key).path;
+        List<Redirect> redirects = prefixes.get(prefix);
+        removeTarget(find(redirects, id));
+        List<Redirect> remaining = without(redirects, id);
+        prefixes = remaining.isEmpty() ? prefixes.minus(prefix) : prefixes.plus(prefix, remaining);
+        prefixesChanged = true;
+      } else if (key instanceof Regex) {
+        String regex = ((Regex) key).regex;
+        PatternRedirects existing = patterns.get(regex);
+        removeTarget(find(existing.redirects, id));
+        List<Redirect> remaining = without(existing.redirects, id);
+        patterns = remaining.isEmpty() ? patterns.minus(regex) : patterns.plus(regex, new PatternRedirects(existing.pattern, remaining));
+        patternsChanged = true;
+      } else {
+        return;
+      }
+      keys = keys.minus(id);
+      changed = true;
+    }
+
+    /**
+     * Replaces the redirect with another version, which has the same source, priority and target. Unlike
+     * {@link #add}, the derived indexes of the edited snapshot are kept.
+     */
+    private void replace(Redirect redirect) {
+      Object key = keys.get(redirect.getContentId());
+      if (key instanceof String) {
+        plain = plain.plus((String) key, replaced(plain.get(key), redirect));
+      } else if (key instanceof Prefix) {
+        String prefix = ((Prefix) key).path;
+        prefixes = prefixes.plus(prefix, replaced(prefixes.get(prefix), redirect));
+      } else if (key instanceof Regex) {
+        String regex = ((Regex) key).regex;
+        PatternRedirects existing = patterns.get(regex);
+        patterns = patterns.plus(regex, new PatternRedirects(existing.pattern, replaced(existing.redirects, redirect)));
+      } else {
+        return;
+      }
+      changed = true;
+    }
+
+    private void removeTarget(@Nullable Redirect redirect) {
+      String targetId = targetIdOf(redirect);
+      List<String> ids = targetId != null ? targets.get(targetId) : null;
+      if (ids != null) {
+        List<String> remaining = new ArrayList<>(ids);
+        remaining.remove(redirect.getContentId());
+        targets = remaining.isEmpty() ? targets.minus(targetId) : targets.plus(targetId, Collections.unmodifiableList(remaining));
+      }
+    }
+
+    /**
+     * Returns the next snapshot or the edited one, if nothing has been changed.
+     */
+    public SiteRedirects build() {
+      if (!changed && nextChange == nextValidityChange) {
+        return SiteRedirects.this;
+      }
+      PathBloomFilter filter = plainKeyFilter;
+      if (pending.size() > Math.max(MIN_PENDING_PLAIN_KEYS, plain.size() / 8)) {
+        filter = plainKeyFilter(plain.keySet());
+        pending = PersistentHashMap.empty();
+      }
+      return new SiteRedirects(siteId, plain, prefixes, prefixesChanged ? null : prefixTree, patterns,
+              patternsChanged ? null : compiledPatterns, keys, targets, filter, pending, nextChange);
+    }
+  }
+
+  /**
+   * The redirects of a regex and its compiled pattern.
+   */
+  private static final class PatternRedirects {
+
+    private final Pattern pattern;
+    private final List<Redirect> redirects;
+
+    PatternRedirects(Pattern pattern, List<Redirect> redirects) {
+      this.pattern = pattern;
+      this.redirects = redirects;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof PatternRedirects && pattern.pattern().equals(((PatternRedirects) o).pattern.pattern())
+              && redirects.equals(((PatternRedirects) o).redirects);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(pattern.pattern(), redirects);
+    }
+  }
+
+  /**
+   * The patterns of a snapshot in the order, in which they are tried (see {@link #PATTERN_ORDER}), with their matcher
+   * and the names of their source parameters. The redirects of the patterns are looked up in the snapshot: replacing
+   * a redirect with the same source, priority and parameters keeps the compiled patterns.
+   */
+  private static final class CompiledPatterns {
+
+    private final List<Pattern> ordered;
+    private final PatternRedirectsMatcher matcher;
+    private final List<String> parameterNames;
+
+    CompiledPatterns(Map<String, PatternRedirects> patternRedirects) {
+      List<PatternRedirects> entries = new ArrayList<>(patternRedirects.values());
+      entries.sort(PATTERN_ORDER);
+      List<Pattern> result = new ArrayList<>(entries.size());
+      entries.forEach(e -> result.add(e.pattern));
+      this.ordered = Collections.unmodifiableList(result);
+      this.matcher = PatternRedirectsMatcher.compile(ordered);
+      this.parameterNames = parameterNames(entries);
+    }
+
+    private static List<String> parameterNames(List<PatternRedirects> patternRedirects) {
+      if (patternRedirects.isEmpty()) {
+        return List.of();
+      }
+      TreeSet<String> names = new TreeSet<>();
+      patternRedirects.forEach(patterns -> patterns.redirects.forEach(redirect ->
+              redirect.getSourceParameters().stream().map(RedirectSourceParameter::getName).forEach(names::add)));
+      return List.copyOf(names);
+    }
+  }
+
+  /**
+   * Key of a prefix redirect in the reverse index, to distinguish it from the key of a plain redirect.
+   */
+  private static final class Prefix {
+
+    private final String path;
+
+    Prefix(String path) {
+      this.path = path;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Prefix && path.equals(((Prefix) o).path);
+    }
+
+    @Override
+    public int hashCode() {
+      return path.hashCode();
+    }
+  }
+
+  /**
+   * Key of a pattern redirect in the reverse index, to distinguish it from the key of a plain redirect.
+   */
+  private static final class Regex {
+
+    private final String regex;
+
+    Regex(String regex) {
+      this.regex = regex;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Regex && regex.equals(((Regex) o).regex);
+    }
+
+    @Override
+    public int hashCode() {
+      return regex.hashCode();
+    }
+  }
+
+  /**
+   * Collects all redirects of a site and builds the snapshot in one step.
+   */
+  public static class Builder {
+
+    private final String siteId;
+    private final Map<String, List<Redirect>> plainRedirects = new HashMap<>();
+    private final Map<String, List<Redirect>> prefixRedirects = new HashMap<>();
+    private final Map<String, PatternRedirects> patternRedirects = new HashMap<>();
+    private final Map<String, Object> keysById = new HashMap<>();
+    private final Map<String, List<String>> idsByTarget = new HashMap<>();
+    private long nextValidityChange = Long.MAX_VALUE;
+
+    private Builder(String siteId) {
+      this.siteId = siteId;
+    }
+
+    /**
+     * Adds the given redirect, if it is valid. See {@link SiteRedirects#withRedirect}.
+     * Each redirect must be added only once.
+     */
+    public Builder add(Redirect redirect) {
+      Object key = keyOf(redirect);
+      if (key instanceof String) {
+        plainRedirects.merge((String) key, List.of(redirect), (a, b) -> append(a, redirect));
+      } else if (key instanceof Prefix) {
+        prefixRedirects.merge(((Prefix) key).path, List.of(redirect), (a, b) -> append(a, redirect));
+      } else if (key instanceof Regex) {
+        PatternRedirects existing = patternRedirects.get(((Regex) key).regex);
+        Pattern pattern = existing != null ? existing.pattern : compile(redirect);
+        if (pattern == null) {
+          return this;
+        }
+        patternRedirects.put(((Regex) key).regex,
+                new PatternRedirects(pattern, append(existing != null ? existing.redirects : null, redirect)));
+      } else {
+        return this;
+      }
+      keysById.put(redirect.getContentId(), key);
+      String targetId = targetIdOf(redirect);
+      if (targetId != null) {
+        idsByTarget.put(targetId, append(idsByTarget.get(targetId), redirect.getContentId()));
+      }
+      nextValidityChange = Math.min(nextValidityChange, redirect.getNextValidityChange());
+      return this;
+    }
+
+    public SiteRedirects build() {
+      return new SiteRedirects(siteId, PersistentHashMap.copyOf(plainRedirects), PersistentHashMap.copyOf(prefixRedirects),
+              null, PersistentHashMap.copyOf(patternRedirects), null, PersistentHashMap.copyOf(keysById),
+              PersistentHashMap.copyOf(idsByTarget), plainKeyFilter(plainRedirects.keySet()), PersistentHashMap.empty(),
+              nextValidityChange);
+    }
   }
 }
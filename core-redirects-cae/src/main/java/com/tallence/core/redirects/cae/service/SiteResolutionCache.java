@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service;
+
+import com.coremedia.blueprint.base.multisite.cae.SiteResolver;
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.multisite.Site;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the sites resolved by the {@link SiteResolver} for the first segment of a request path, including the
+ * segments without any site. The redirect filter runs before the {@code SiteFilter} and has to resolve the site of
+ * nearly every request itself, this way the resolution is done once per segment.
+ *
+ * The cache is cleared by the {@link RedirectContentListener} with every change of a site indicator or of the root
+ * document of a cached site. As the site of a segment might change in other ways, e.g. by moving a site folder, the
+ * entries expire nevertheless. A site resolved before an invalidation is not cached afterwards, see
+ * {@link #findSiteByPath(String)}.
+ */
+@Service
+public class SiteResolutionCache {
+
+  static final String SITE_TYPE = "CMSite";
+
+  private static final Duration TTL = Duration.ofMinutes(10);
+
+  private final SiteResolver siteResolver;
+  private final Cache<String, Optional<Site>> sitesBySegment;
+  // Incremented with every invalidation, before the entries are removed
+  private final AtomicLong generation = new AtomicLong();
+
+  public SiteResolutionCache(SiteResolver siteResolver,
+                             @Value("${core.redirects.filter.siteCache.size:1000}") long maximumSize) {
+    this.siteResolver = siteResolver;
+    this.sitesBySegment = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(TTL).recordStats().build();
+  }
+
+  /**
+   * Returns the site for the first segment of the given path info, like {@link SiteResolver#findSiteByPath}.
+   *
+   * @param pathInfo the path info of the request, starting with a slash
+   * @return the site or {@code null}, if no site exists for the segment
+   */
+  @Nullable
+  public Site findSiteByPath(String pathInfo) {
+    int end = pathInfo.indexOf('/', 1);
+    Segment lookup = new Segment(pathInfo, end < 0 ? pathInfo.length() : end);
+    Optional<Site> site = sitesBySegment.getIfPresent(lookup);
+    if (site == null) {
+      // Not computed in the cache: the resolver must not block other segments, a concurrent lookup does no harm.
+      long resolvedGeneration = generation.get();
+      String segment = lookup.toString();
+      site = Optional.ofNullable(siteResolver.findSiteByPath("/" + segment));
+      sitesBySegment.put(segment, site);
+      if (generation.get() != resolvedGeneration) {
+        // Invalidated meanwhile, the site might be resolved from outdated contents
+        sitesBySegment.asMap().remove(segment, site);
+      }
+    }
+    return site.orElse(null);
+  }
+
+  /**
+   * Returns true, if a change of the given content might change the site of a segment: it is a site indicator or the
+   * root document of a cached site.
+   */
+  public boolean isAffectedBy(Content content) {
+    if (content.getType().isSubtypeOf(SITE_TYPE)) {
+      return true;
+    }
+    for (Optional<Site> site : sitesBySegment.asMap().values()) {
+      if (site.isPresent() && content.equals(site.get().getSiteRootDocument())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Removes all resolved segments.
+   */
+  public void invalidate() {
+    generation.incrementAndGet();
+    sitesBySegment.invalidateAll();
+  }
+
+  /**
+   * Returns the hit and miss counts of the cache.
+   */
+  public CacheStats stats() {
+    return sitesBySegment.stats();
+  }
+
+  /**
+   * View of the first segment of a path info, to look up the cached segments without a copy of the segment. Like
+   * {@link com.tallence.core.redirects.cae.service.index.RequestPath}, the hash code is the hash code of the segment as
+   * {@link String} and {@link #equals} accepts every {@link CharSequence} with the same characters. The cache compares
+   * the looked up key with the stored keys, see {@code testOncePerSegment}. Never store instances as keys.
+   */
+  private static final class Segment implements CharSequence {
+
+    private final String pathInfo;
+    private final int end;
+    private final int hash;
+
+    Segment(String pathInfo, int end) {
+      this.pathInfo = pathInfo;
+      this.end = end;
+      int h = 0;
+      for (int i = 1; i < end; i++) {
+        h = 31 * h + pathInfo.charAt(i);
+      }
+      this.hash = h;
+    }
+
+    @Override
+    public int length() {
+      return end - 1;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return pathInfo.charAt(index + 1);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CharSequence)) {
+        return false;
+      }
+      CharSequence other = (CharSequence) o;
+      if (other.length() != length() || other.hashCode() != hash && o instanceof String) {
+        return false;
+      }
+      if (o instanceof String) {
+        return pathInfo.regionMatches(1, (String) o, 0, length());
+      }
+      for (int i = 0; i < length(); i++) {
+        if (charAt(i) != other.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return pathInfo.substring(1, end);
+    }
+  }
+}
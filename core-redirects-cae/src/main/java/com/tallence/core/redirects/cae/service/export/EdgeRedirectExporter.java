@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.export;
+
+import com.coremedia.cap.multisite.Site;
+import com.tallence.core.redirects.cae.filter.RedirectConfigurationException;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import com.tallence.core.redirects.cae.service.purge.RedirectPurgeEvent;
+import com.tallence.core.redirects.cae.service.purge.RedirectPurgeSink;
+import com.tallence.core.redirects.cae.service.util.SiteFileWriter;
+import com.tallence.core.redirects.cae.service.util.SiteTaskDebouncer;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Exports the {@link EdgeRedirectMap} of every site into a configured directory, to answer these redirects in the
+ * edge tier without the CAE. Disabled, if no directory is configured.
+ *
+ * The export runs incrementally: it receives the {@link RedirectPurgeEvent}s of the changed sites and exports only
+ * these, after a short delay to coalesce bursts of changes. All files of a site are rendered from the same
+ * {@link SiteRedirects} snapshot and each of them is replaced atomically.
+ *
+ * Files per site, named by the site id:
+ * <ul>
+ *   <li>{@code nginx}: {@code <site>.location.map} and {@code <site>.status.map}</li>
+ *   <li>{@code varnish}: {@code <site>.vcl}</li>
+ *   <li>{@code json}: {@code <site>.json}</li>
+ *   <li>{@code csv}: {@code <site>.csv}</li>
+ *   <li>always: {@code <site>.report.csv} with the redirects left to the CAE</li>
+ * </ul>
+ */
+@Service
+public class EdgeRedirectExporter implements RedirectPurgeSink {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EdgeRedirectExporter.class);
+
+  /**
+   * The edge-native formats.
+   */
+  public enum Format {
+    NGINX, VARNISH, JSON, CSV
+  }
+
+  @Nullable
+  private final SiteFileWriter files;
+  private final Set<Format> formats;
+  @Nullable
+  private final SiteTaskDebouncer debouncer;
+
+  public EdgeRedirectExporter(@Qualifier("redirectsCache") ConcurrentMap<Site, SiteRedirects> redirectsCache,
+                              @Value("${core.redirects.export.directory:}") String directory,
+                              @Value("${core.redirects.export.formats:nginx,varnish,json,csv}") String formats,
+                              @Value("${core.redirects.export.delayMillis:1000}") long delayMillis) {
+    this.files = directory.isBlank() ? null : new SiteFileWriter(redirectsCache, Path.of(directory.trim()));
+    this.formats = toFormats(formats);
+    this.debouncer = this.files == null ? null
+            : new SiteTaskDebouncer("redirect-edge-export-%d", delayMillis, this::export);
+  }
+
+  private static Set<Format> toFormats(String formats) {
+    Set<Format> result = EnumSet.noneOf(Format.class);
+    for (String format : formats.split(",")) {
+      if (!format.isBlank()) {
+        try {
+          result.add(Format.valueOf(format.trim().toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+          throw new RedirectConfigurationException("Unknown export format [" + format.trim()
+                  + "], use nginx, varnish, json or csv");
+        }
+      }
+    }
+    return result;
+  }
+
+  public boolean isEnabled() {
+    return files != null;
+  }
+
+  /**
+   * Schedules the export of the site of the event. Several events within the delay result in one export.
+   */
+  @Override
+  public void publish(RedirectPurgeEvent event) {
+    if (debouncer != null) {
+      debouncer.schedule(event.getSiteId());
+    }
+  }
+
+  /**
+   * Exports the current snapshot of the site's redirects, if it has not been exported yet.
+   *
+   * @return true, if the files have been written
+   */
+  public boolean export(String siteId) {
+    if (files == null) {
+      return false;
+    }
+    SiteRedirects redirects = files.findUnwritten(siteId);
+    if (redirects == null) {
+      return false;
+    }
+    EdgeRedirectMap map = EdgeRedirectMap.of(redirects);
+    try {
+      if (formats.contains(Format.NGINX)) {
+        write(siteId, ".location.map", map.toNginxLocationMap());
+        write(siteId, ".status.map", map.toNginxStatusMap());
+      }
+      if (formats.contains(Format.VARNISH)) {
+        write(siteId, ".vcl", map.toVcl());
+      }
+      if (formats.contains(Format.JSON)) {
+        write(siteId, ".json", map.toJson());
+      }
+      if (formats.contains(Format.CSV)) {
+        write(siteId, ".csv", map.toCsv());
+      }
+      write(siteId, ".report.csv", map.toReport());
+    } catch (IOException e) {
+      LOG.error("Unable to export the redirects of site {} to {}", siteId, files.getDirectory(), e);
+      return false;
+    }
+    files.written(siteId, map.getVersion());
+    LOG.info("Exported {} redirects of site {} to {}, {} redirects are left to the CAE", map.getEntries().size(),
+            siteId, files.getDirectory(), map.getExclusions().size());
+    return true;
+  }
+
+  private void write(String siteId, String suffix, String content) throws IOException {
+    files.write(files.getFile(siteId, suffix), out -> out.write(content.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (debouncer != null) {
+      debouncer.shutdown();
+    }
+  }
+}
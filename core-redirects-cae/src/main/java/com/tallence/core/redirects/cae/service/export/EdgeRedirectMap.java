@@ -0,0 +1,316 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.export;
+
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import com.tallence.core.redirects.cae.service.util.SiteFileWriter;
+import com.tallence.core.redirects.model.RedirectType;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The redirects of a {@link SiteRedirects} snapshot, which can be answered by an edge tier (nginx, Varnish, a CDN)
+ * without the CAE, rendered in the edge-native formats.
+ *
+ * Only plain redirects of type {@link RedirectType#ALWAYS} with a target url and without source or target parameters
+ * are included. All other redirects need logic of the CAE and are listed as {@link Exclusion}s with the reason.
+ *
+ * The sources are the decoded paths, as the CAE stores them. The CAE and the edge formats compare them with the lower
+ * case request path without a trailing slash, so sources with upper case letters are excluded: they never match.
+ */
+public final class EdgeRedirectMap {
+
+  private static final String LOCATION_HEADER = "X-Core-Redirect-Location";
+  private static final String PATH_HEADER = "X-Core-Redirect-Path";
+
+  private final String siteId;
+  private final long version;
+  private final List<Entry> entries;
+  private final List<Exclusion> exclusions;
+
+  private EdgeRedirectMap(String siteId, long version, List<Entry> entries, List<Exclusion> exclusions) {
+    this.siteId = siteId;
+    this.version = version;
+    this.entries = entries;
+    this.exclusions = exclusions;
+  }
+
+  /**
+   * Creates the map of the given snapshot, the entries are sorted by their source.
+   */
+  public static EdgeRedirectMap of(SiteRedirects redirects) {
+    List<Entry> entries = new ArrayList<>();
+    List<Exclusion> exclusions = new ArrayList<>();
+    Map<String, List<Redirect>> plainRedirects = new TreeMap<>(redirects.getPlainRedirects());
+    for (Map.Entry<String, List<Redirect>> plain : plainRedirects.entrySet()) {
+      List<Redirect> sourceRedirects = plain.getValue();
+      if (sourceRedirects.size() > 1) {
+        sourceRedirects.forEach(r -> exclusions.add(new Exclusion(r, "source shared by " + sourceRedirects.size()
+                + " redirects, chosen by the request parameters")));
+        continue;
+      }
+      Redirect redirect = sourceRedirects.get(0);
+      String reason = getExclusionReason(plain.getKey(), redirect);
+      if (reason != null) {
+        exclusions.add(new Exclusion(redirect, reason));
+      } else {
+        entries.add(new Entry(plain.getKey(), redirect));
+      }
+    }
+    redirects.getPrefixRedirects().values()
+            .forEach(list -> list.forEach(r -> exclusions.add(new Exclusion(r, "prefix source"))));
+    redirects.getPatternRedirects().values()
+            .forEach(list -> list.forEach(r -> exclusions.add(new Exclusion(r, "regular expression source"))));
+    exclusions.sort(Comparator.comparing(Exclusion::getSource).thenComparing(Exclusion::getRedirectId));
+    return new EdgeRedirectMap(redirects.getSiteId(), redirects.getVersion(), entries, exclusions);
+  }
+
+  @Nullable
+  private static String getExclusionReason(String source, Redirect redirect) {
+    if (redirect.getRedirectType() != RedirectType.ALWAYS) {
+      return "redirect after not found, needs the response of the CAE";
+    } else if (!redirect.getSourceParameters().isEmpty()) {
+      return "source parameters";
+    } else if (redirect.getTarget() != null) {
+      return "content target, the link is built by the CAE";
+    } else if (!redirect.getTargetParameters().isEmpty()) {
+      return "target parameters";
+    } else if (redirect.hasNoTarget() || !redirect.isTargetValid()) {
+      return "no valid target";
+    } else if (!source.equals(source.toLowerCase(Locale.ROOT))) {
+      return "upper case letters in the source, never matched by the CAE";
+    } else if (!isEdgeSafe(source) || !isEdgeSafe(redirect.getTargetUrl())) {
+      return "unsupported characters in the source or target";
+    }
+    return null;
+  }
+
+  /**
+   * Returns true, if the value can be written into all formats without escaping: printable ASCII without quotes,
+   * backslashes and braces.
+   */
+  private static boolean isEdgeSafe(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c <= ' ' || c >= 0x7f || c == '"' || c == '\\' || c == '{' || c == '}' || c == ';') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public String getSiteId() {
+    return siteId;
+  }
+
+  /**
+   * Returns the version of the {@link SiteRedirects} snapshot, see {@link SiteRedirects#getVersion()}.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  public List<Exclusion> getExclusions() {
+    return exclusions;
+  }
+
+  // FORMATS
+
+  /**
+   * Returns the entries for an nginx {@code map} from the path to the location, to be included into a map block like
+   * {@code map $uri_lowercase $core_redirect_location { include <dir>/*.location.map; }}.
+   */
+  public String toNginxLocationMap() {
+    StringBuilder map = header("#");
+    entries.forEach(e -> map.append('"').append(e.source).append("\" \"").append(e.target).append("\";\n"));
+    return map.toString();
+  }
+
+  /**
+   * Returns the entries for an nginx {@code map} from the path to the status code, to be included like the
+   * {@link #toNginxLocationMap() location map}.
+   */
+  public String toNginxStatusMap() {
+    StringBuilder map = header("#");
+    entries.forEach(e -> map.append('"').append(e.source).append("\" ").append(e.status).append(";\n"));
+    return map.toString();
+  }
+
+  /**
+   * Returns a VCL subroutine {@code core_redirects_<site>} to be called in {@code vcl_recv}. It needs
+   * {@code import std;}. A matching request is answered by {@code synth(<status>)} with the location in the request
+   * header {@code X-Core-Redirect-Location}, which {@code vcl_synth} has to copy into the {@code Location} header.
+   */
+  public String toVcl() {
+    StringBuilder vcl = header("#");
+    vcl.append("sub core_redirects_").append(SiteFileWriter.toFileName(siteId)).append(" {\n");
+    if (!entries.isEmpty()) {
+      vcl.append("  set req.http.").append(PATH_HEADER)
+              .append(" = std.tolower(regsub(regsub(req.url, \"[?#].*$\", \"\"), \"(.)/$\", \"\\1\"));\n");
+      String keyword = "if";
+      for (Entry e : entries) {
+        vcl.append("  ").append(keyword).append(" (req.http.").append(PATH_HEADER).append(" == \"").append(e.source)
+                .append("\") {\n    set req.http.").append(LOCATION_HEADER).append(" = \"").append(e.target)
+                .append("\";\n    return (synth(").append(e.status).append("));\n  }");
+        keyword = " elsif";
+      }
+      vcl.append("\n  unset req.http.").append(PATH_HEADER).append(";\n");
+    }
+    return vcl.append("}\n").toString();
+  }
+
+  /**
+   * Returns the manifest with all entries and exclusions as JSON.
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder("{\n  \"siteId\": ").append(json(siteId))
+            .append(",\n  \"version\": ").append(version).append(",\n  \"redirects\": [");
+    for (int i = 0; i < entries.size(); i++) {
+      Entry e = entries.get(i);
+      json.append(i > 0 ? ",\n    " : "\n    ").append("{\"id\": ").append(json(e.redirectId))
+              .append(", \"source\": ").append(json(e.source)).append(", \"target\": ").append(json(e.target))
+              .append(", \"status\": ").append(e.status).append('}');
+    }
+    json.append(entries.isEmpty() ? "],\n  \"excluded\": [" : "\n  ],\n  \"excluded\": [");
+    for (int i = 0; i < exclusions.size(); i++) {
+      Exclusion e = exclusions.get(i);
+      json.append(i > 0 ? ",\n    " : "\n    ").append("{\"id\": ").append(json(e.redirectId))
+              .append(", \"source\": ").append(json(e.source)).append(", \"reason\": ").append(json(e.reason))
+              .append('}');
+    }
+    return json.append(exclusions.isEmpty() ? "]\n}\n" : "\n  ]\n}\n").toString();
+  }
+
+  /**
+   * Returns the entries as CSV with the columns source, target, status and id.
+   */
+  public String toCsv() {
+    StringBuilder csv = new StringBuilder("source,target,status,id\n");
+    entries.forEach(e -> csv.append(csv(e.source)).append(',').append(csv(e.target)).append(',').append(e.status)
+            .append(',').append(csv(e.redirectId)).append('\n'));
+    return csv.toString();
+  }
+
+  /**
+   * Returns the report of the excluded redirects as CSV with the columns id, source and reason.
+   */
+  public String toReport() {
+    StringBuilder csv = new StringBuilder("id,source,reason\n");
+    exclusions.forEach(e -> csv.append(csv(e.redirectId)).append(',').append(csv(e.source)).append(',')
+            .append(csv(e.reason)).append('\n'));
+    return csv.toString();
+  }
+
+  private StringBuilder header(String comment) {
+    return new StringBuilder(comment).append(" Generated by core-redirects for site ").append(siteId)
+            .append(", version ").append(version).append(". Do not edit.\n");
+  }
+
+  private static String json(String value) {
+    StringBuilder json = new StringBuilder("\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < ' ') {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    return json.append('"').toString();
+  }
+
+  private static String csv(String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  /**
+   * A redirect answered by the edge.
+   */
+  public static final class Entry {
+
+    private final String source;
+    private final String target;
+    private final int status;
+    private final String redirectId;
+
+    private Entry(String source, Redirect redirect) {
+      this.source = source;
+      this.target = redirect.getTargetUrl();
+      this.status = redirect.getStatus().getCode();
+      this.redirectId = redirect.getContentId();
+    }
+
+    public String getSource() {
+      return source;
+    }
+
+    public String getTarget() {
+      return target;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    public String getRedirectId() {
+      return redirectId;
+    }
+  }
+
+  /**
+   * A redirect left to the CAE.
+   */
+  public static final class Exclusion {
+
+    private final String redirectId;
+    private final String source;
+    private final String reason;
+
+    private Exclusion(Redirect redirect, String reason) {
+      this.redirectId = redirect.getContentId();
+      this.source = redirect.getSource();
+      this.reason = reason;
+    }
+
+    public String getRedirectId() {
+      return redirectId;
+    }
+
+    public String getSource() {
+      return source;
+    }
+
+    public String getReason() {
+      return reason;
+    }
+  }
+}
@@ -0,0 +1,717 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Automaton for a list of regular expressions, which tests a complete input in time linear in its length.
+ *
+ * The expressions are compiled into one nondeterministic automaton (Thompson's construction), which is simulated on
+ * the input: all states reached after each character are tracked in parallel, instead of trying the alternatives one
+ * after the other like {@link java.util.regex.Pattern} does. This costs O(length of the input * number of states) in
+ * the worst case, no pattern can cause catastrophic backtracking.
+ *
+ * Only the subset of the {@link java.util.regex.Pattern} syntax without backtracking semantics is supported:
+ * literals, escapes, {@code .}, character classes without unions and intersections, the predefined classes
+ * {@code \d \s \w} (and their negations), groups (capturing, non-capturing and named), alternations, the quantifiers
+ * {@code * + ? {n,m}} (greedy or reluctant) and {@code ^ $}. Back references, look-arounds, possessive quantifiers,
+ * boundaries, inline flags and the like are not supported, see {@link #isSupported}. For the supported syntax, the
+ * result is the same as {@link java.util.regex.Matcher#matches()}.
+ */
+public final class LinearPattern {
+
+  // Upper limit for the number of states per expression, counted repetitions like {1000} are expanded.
+  static final int MAX_STATES = 10000;
+
+  private static final int CHARS = 0;
+  private static final int SPLIT = 1;
+  private static final int BEGIN = 2;
+  private static final int END = 3;
+  private static final int ACCEPT = 4;
+
+  private final int[] ops;
+  private final int[] outs;
+  private final int[] alternatives;
+  private final CharSet[] sets;
+  private final int start;
+
+  private LinearPattern(Program program, int start) {
+    this.ops = Arrays.copyOf(program.ops, program.size);
+    this.outs = Arrays.copyOf(program.outs, program.size);
+    this.alternatives = Arrays.copyOf(program.alternatives, program.size);
+    this.sets = Arrays.copyOf(program.sets, program.size);
+    this.start = start;
+  }
+
+  /**
+   * Returns true, if the given regular expression can be compiled into a {@link LinearPattern}.
+   */
+  public static boolean isSupported(String regex) {
+    try {
+      new Parser(regex).parse().compile(new Program(), -1);
+      return true;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Compiles an automaton for the given regular expressions.
+   *
+   * @throws IllegalArgumentException if one of the expressions is not {@link #isSupported supported}
+   */
+  public static LinearPattern compile(List<String> regexes) {
+    Program program = new Program();
+    int start = -1;
+    for (int i = regexes.size() - 1; i >= 0; i--) {
+      int accept = program.add(ACCEPT, i, -1, null);
+      int entry = new Parser(regexes.get(i)).parse().compile(program, accept);
+      start = start < 0 ? entry : program.add(SPLIT, entry, start, null);
+    }
+    if (start < 0) {
+      throw new IllegalArgumentException("No regular expression given");
+    }
+    return new LinearPattern(program, start);
+  }
+
+  /**
+   * Returns the index of the first expression, which matches the complete input, or -1, if none matches.
+   */
+  public int match(CharSequence input) {
+    int size = ops.length;
+    int[] current = new int[size];
+    int[] next = new int[size];
+    int[] marks = new int[size];
+    int[] stack = new int[size];
+    int generation = 1;
+    int count = closure(start, input, 0, current, 0, marks, generation, stack);
+
+    int pos = 0;
+    int length = input.length();
+    while (pos < length && count > 0) {
+      int codePoint = Character.codePointAt(input, pos);
+      int nextPos = pos + Character.charCount(codePoint);
+      generation++;
+      int nextCount = 0;
+      for (int i = 0; i < count; i++) {
+        int state = current[i];
+        if (ops[state] == CHARS && sets[state].contains(codePoint)) {
+          nextCount = closure(outs[state], input, nextPos, next, nextCount, marks, generation, stack);
+        }
+      }
+      int[] swap = current;
+      current = next;
+      next = swap;
+      count = nextCount;
+      pos = nextPos;
+    }
+
+    int result = -1;
+    for (int i = 0; i < count; i++) {
+      int state = current[i];
+      if (ops[state] == ACCEPT && (result < 0 || outs[state] < result)) {
+        result = outs[state];
+      }
+    }
+    return pos == length ? result : -1;
+  }
+
+  /**
+   * Adds the given state and all states reachable without consuming a character to the list.
+   */
+  private int closure(int state, CharSequence input, int pos, int[] list, int count, int[] marks, int generation, int[] stack) {
+    int top = push(state, stack, 0, marks, generation);
+    while (top > 0) {
+      int s = stack[--top];
+      switch (ops[s]) {
+        case SPLIT:
+          top = push(alternatives[s], stack, top, marks, generation);
+          top = push(outs[s], stack, top, marks, generation);
+          break;
+        case BEGIN:
+          if (pos == 0) {
+            top = push(outs[s], stack, top, marks, generation);
+          }
+          break;
+        case END:
+          if (isEnd(input, pos)) {
+            top = push(outs[s], stack, top, marks, generation);
+          }
+          break;
+        default:
+          list[count++] = s;
+      }
+    }
+    return count;
+  }
+
+  private static int push(int state, int[] stack, int top, int[] marks, int generation) {
+    if (marks[state] != generation) {
+      marks[state] = generation;
+      stack[top++] = state;
+    }
+    return top;
+  }
+
+  /**
+   * The semantics of {@code $} without the MULTILINE flag: the end of the input or a final line terminator.
+   */
+  private static boolean isEnd(CharSequence input, int pos) {
+    int length = input.length();
+    if (pos == length) {
+      return true;
+    } else if (pos == length - 2) {
+      return input.charAt(pos) == '\r' && input.charAt(pos + 1) == '\n';
+    } else if (pos == length - 1) {
+      char c = input.charAt(pos);
+      return isLineTerminator(c) && !(c == '\n' && pos > 0 && input.charAt(pos - 1) == '\r');
+    }
+    return false;
+  }
+
+  private static boolean isLineTerminator(int c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  /**
+   * The states of the automaton, stored in parallel arrays.
+   */
+  private static class Program {
+
+    private int[] ops = new int[16];
+    private int[] outs = new int[16];
+    private int[] alternatives = new int[16];
+    private CharSet[] sets = new CharSet[16];
+    private int size;
+
+    int add(int op, int out, int alternative, CharSet set) {
+      if (size == ops.length) {
+        ops = Arrays.copyOf(ops, size * 2);
+        outs = Arrays.copyOf(outs, size * 2);
+        alternatives = Arrays.copyOf(alternatives, size * 2);
+        sets = Arrays.copyOf(sets, size * 2);
+      }
+      ops[size] = op;
+      outs[size] = out;
+      alternatives[size] = alternative;
+      sets[size] = set;
+      return size++;
+    }
+  }
+
+  /**
+   * Node of the parsed expression. The automaton is built backwards: each node is compiled with the state to
+   * continue with after it has matched and returns its entry state.
+   */
+  private interface Node {
+
+    int compile(Program program, int next);
+
+    /**
+     * Returns an upper bound for the number of states.
+     */
+    default long states() {
+      return 1;
+    }
+
+    /**
+     * Returns true, if the node contains a {@code ^} or {@code $}.
+     */
+    default boolean hasAssertion() {
+      return false;
+    }
+  }
+
+  private static class CharsNode implements Node {
+
+    private final CharSet set;
+
+    CharsNode(CharSet set) {
+      this.set = set;
+    }
+
+    @Override
+    public int compile(Program program, int next) {
+      return program.add(CHARS, next, -1, set);
+    }
+  }
+
+  private static class AssertionNode implements Node {
+
+    private final int op;
+
+    AssertionNode(int op) {
+      this.op = op;
+    }
+
+    @Override
+    public int compile(Program program, int next) {
+      return program.add(op, next, -1, null);
+    }
+
+    @Override
+    public boolean hasAssertion() {
+      return true;
+    }
+  }
+
+  private static class ConcatNode implements Node {
+
+    private final List<Node> nodes;
+
+    ConcatNode(List<Node> nodes) {
+      this.nodes = nodes;
+    }
+
+    @Override
+    public int compile(Program program, int next) {
+      int entry = next;
+      for (int i = nodes.size() - 1; i >= 0; i--) {
+        entry = nodes.get(i).compile(program, entry);
+      }
+      return entry;
+    }
+
+    @Override
+    public long states() {
+      return nodes.stream().mapToLong(Node::states).sum();
+    }
+
+    @Override
+    public boolean hasAssertion() {
+      return nodes.stream().anyMatch(Node::hasAssertion);
+    }
+  }
+
+  private static class AlternationNode implements Node {
+
+    private final List<Node> nodes;
+
+    AlternationNode(List<Node> nodes) {
+      this.nodes = nodes;
+    }
+
+    @Override
+    public int compile(Program program, int next) {
+      int entry = nodes.get(nodes.size() - 1).compile(program, next);
+      for (int i = nodes.size() - 2; i >= 0; i--) {
+        entry = program.add(SPLIT, nodes.get(i).compile(program, next), entry, null);
+      }
+      return entry;
+    }
+
+    @Override
+    public long states() {
+      return nodes.stream().mapToLong(Node::states).sum() + nodes.size();
+    }
+
+    @Override
+    public boolean hasAssertion() {
+      return nodes.stream().anyMatch(Node::hasAssertion);
+    }
+  }
+
+  private static class RepeatNode implements Node {
+
+    private final Node node;
+    private final int min;
+    // -1 for an unbounded repetition
+    private final int max;
+
+    RepeatNode(Node node, int min, int max) {
+      this.node = node;
+      this.min = min;
+      this.max = max;
+    }
+
+    @Override
+    public int compile(Program program, int next) {
+      int entry;
+      if (max < 0) {
+        // Loop: the split either enters the node, which returns to the split, or leaves
+        int loop = program.add(SPLIT, -1, next, null);
+        int body = node.compile(program, loop);
+        // Not inlined: compiling the node might replace the array
+        program.outs[loop] = body;
+        entry = loop;
+      } else {
+        // Nested optional copies: (x(x(x)?)?)?
+        entry = next;
+        for (int i = min; i < max; i++) {
+          entry = program.add(SPLIT, node.compile(program, entry), next, null);
+        }
+      }
+      for (int i = 0; i < min; i++) {
+        entry = node.compile(program, entry);
+      }
+      return entry;
+    }
+
+    @Override
+    public long states() {
+      return Math.min((node.states() + 1) * Math.max(max, min + 1), Integer.MAX_VALUE);
+    }
+  }
+
+  /**
+   * Recursive descent parser for the supported subset of the {@link java.util.regex.Pattern} syntax. Throws an
+   * {@link IllegalArgumentException} for everything else.
+   */
+  private static class Parser {
+
+    private static final CharSet DIGITS = CharSet.of('0', '9');
+    private static final CharSet SPACES = CharSet.of(' ', ' ', '\t', '\r');
+    private static final CharSet WORD_CHARS = CharSet.of('a', 'z', 'A', 'Z', '_', '_', '0', '9');
+    private static final CharSet DOT = CharSet.of('\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029').negate();
+
+    private final String regex;
+    private int pos;
+
+    Parser(String regex) {
+      this.regex = regex;
+    }
+
+    Node parse() {
+      Node node = alternation();
+      if (pos < regex.length()) {
+        throw unsupported();
+      }
+      if (node.states() > MAX_STATES) {
+        throw new IllegalArgumentException("Too many states for " + regex);
+      }
+      return node;
+    }
+
+    private Node alternation() {
+      List<Node> alternatives = new ArrayList<>();
+      alternatives.add(concatenation());
+      while (pos < regex.length() && regex.charAt(pos) == '|') {
+        pos++;
+        alternatives.add(concatenation());
+      }
+      return alternatives.size() == 1 ? alternatives.get(0) : new AlternationNode(alternatives);
+    }
+
+    private Node concatenation() {
+      List<Node> nodes = new ArrayList<>();
+      while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+        nodes.add(quantified());
+      }
+      return nodes.size() == 1 ? nodes.get(0) : new ConcatNode(nodes);
+    }
+
+    private Node quantified() {
+      Node atom = atom();
+      while (pos < regex.length()) {
+        int min;
+        int max;
+        char c = regex.charAt(pos);
+        if (c == '*') {
+          min = 0;
+          max = -1;
+          pos++;
+        } else if (c == '+') {
+          min = 1;
+          max = -1;
+          pos++;
+        } else if (c == '?') {
+          min = 0;
+          max = 1;
+          pos++;
+        } else if (c == '{') {
+          pos++;
+          min = number();
+          max = min;
+          if (pos < regex.length() && regex.charAt(pos) == ',') {
+            pos++;
+            max = pos < regex.length() && regex.charAt(pos) == '}' ? -1 : number();
+          }
+          expect('}');
+          if (max >= 0 && max < min) {
+            throw unsupported();
+          }
+        } else {
+          return atom;
+        }
+        if (atom.hasAssertion()) {
+          // Repeated zero-width matches have special semantics in java.util.regex
+          throw unsupported();
+        }
+        if (pos < regex.length() && regex.charAt(pos) == '?') {
+          // Reluctant: the same result for a complete match
+          pos++;
+        } else if (pos < regex.length() && regex.charAt(pos) == '+') {
+          // Possessive quantifiers do backtrack differently
+          throw unsupported();
+        }
+        atom = new RepeatNode(atom, min, max);
+      }
+      return atom;
+    }
+
+    private Node atom() {
+      char c = regex.charAt(pos);
+      switch (c) {
+        case '(':
+          pos++;
+          if (regex.startsWith("?:", pos)) {
+            pos += 2;
+          } else if (regex.startsWith("?<", pos) && pos + 2 < regex.length() && Character.isLetter(regex.charAt(pos + 2))) {
+            // Named group, the name is irrelevant without back references
+            pos = regex.indexOf('>', pos) + 1;
+            if (pos == 0) {
+              throw unsupported();
+            }
+          } else if (regex.startsWith("?", pos)) {
+            throw unsupported();
+          }
+          Node group = alternation();
+          expect(')');
+          return group;
+        case '[':
+          pos++;
+          return new CharsNode(charClass());
+        case '.':
+          pos++;
+          return new CharsNode(DOT);
+        case '^':
+          pos++;
+          return new AssertionNode(BEGIN);
+        case '$':
+          pos++;
+          return new AssertionNode(END);
+        case '\\':
+          return new CharsNode(escape());
+        case '*':
+        case '+':
+        case '?':
+        case '{':
+        case ')':
+          throw unsupported();
+        default:
+          int codePoint = regex.codePointAt(pos);
+          pos += Character.charCount(codePoint);
+          return new CharsNode(CharSet.of(codePoint, codePoint));
+      }
+    }
+
+    private CharSet charClass() {
+      boolean negated = false;
+      if (pos < regex.length() && regex.charAt(pos) == '^') {
+        negated = true;
+        pos++;
+      }
+      if (pos < regex.length() && regex.charAt(pos) == ']') {
+        throw unsupported();
+      }
+      CharSet set = CharSet.EMPTY;
+      while (pos < regex.length() && regex.charAt(pos) != ']') {
+        char c = regex.charAt(pos);
+        if (c == '[' || regex.startsWith("&&", pos)) {
+          throw unsupported();
+        }
+        CharSet single = c == '\\' ? escape() : literal();
+        int from = single.singleCodePoint();
+        boolean range = regex.startsWith("-", pos) && pos + 1 < regex.length() && regex.charAt(pos + 1) != ']';
+        if (range && from < 0) {
+          throw unsupported();
+        } else if (range) {
+          pos++;
+          int to = (regex.charAt(pos) == '\\' ? escape() : literal()).singleCodePoint();
+          if (to < from) {
+            throw unsupported();
+          }
+          single = CharSet.of(from, to);
+        }
+        set = set.union(single);
+      }
+      expect(']');
+      return negated ? set.negate() : set;
+    }
+
+    private CharSet literal() {
+      int codePoint = regex.codePointAt(pos);
+      pos += Character.charCount(codePoint);
+      return CharSet.of(codePoint, codePoint);
+    }
+
+    private CharSet escape() {
+      pos++;
+      if (pos >= regex.length()) {
+        throw unsupported();
+      }
+      char c = regex.charAt(pos++);
+      switch (c) {
+        case 'd':
+          return DIGITS;
+        case 'D':
+          return DIGITS.negate();
+        case 's':
+          return SPACES;
+        case 'S':
+          return SPACES.negate();
+        case 'w':
+          return WORD_CHARS;
+        case 'W':
+          return WORD_CHARS.negate();
+        case 't':
+          return CharSet.of('\t', '\t');
+        case 'n':
+          return CharSet.of('\n', '\n');
+        case 'r':
+          return CharSet.of('\r', '\r');
+        case 'f':
+          return CharSet.of('\f', '\f');
+        case 'a':
+          return CharSet.of(0x07, 0x07);
+        case 'e':
+          return CharSet.of(0x1B, 0x1B);
+        case 'x':
+          return hex(2);
+        case 'u':
+          return hex(4);
+        default:
+          if (Character.isLetterOrDigit(c) || Character.isHighSurrogate(c)) {
+            // Back references, boundaries, quoting, unicode classes ...
+            throw unsupported();
+          }
+          return CharSet.of(c, c);
+      }
+    }
+
+    private CharSet hex(int digits) {
+      if (pos + digits > regex.length()) {
+        throw unsupported();
+      }
+      try {
+        int codePoint = Integer.parseInt(regex.substring(pos, pos + digits), 16);
+        pos += digits;
+        return CharSet.of(codePoint, codePoint);
+      } catch (NumberFormatException e) {
+        throw unsupported();
+      }
+    }
+
+    private int number() {
+      int begin = pos;
+      while (pos < regex.length() && Character.isDigit(regex.charAt(pos)) && pos - begin < 5) {
+        pos++;
+      }
+      if (pos == begin) {
+        throw unsupported();
+      }
+      return Integer.parseInt(regex.substring(begin, pos));
+    }
+
+    private void expect(char c) {
+      if (pos >= regex.length() || regex.charAt(pos) != c) {
+        throw unsupported();
+      }
+      pos++;
+    }
+
+    private IllegalArgumentException unsupported() {
+      return new IllegalArgumentException("Unsupported construct at index " + pos + " in " + regex);
+    }
+  }
+
+  /**
+   * Set of code points, stored as sorted, disjoint ranges.
+   */
+  private static final class CharSet {
+
+    private static final CharSet EMPTY = new CharSet(new int[0]);
+
+    // Pairs of the first and last code point of each range
+    private final int[] ranges;
+
+    private CharSet(int[] ranges) {
+      this.ranges = ranges;
+    }
+
+    /**
+     * Returns the set of the given ranges, given as pairs of the first and last code point.
+     */
+    static CharSet of(int... ranges) {
+      CharSet set = EMPTY;
+      for (int i = 0; i < ranges.length; i += 2) {
+        set = set.union(new CharSet(new int[]{ranges[i], ranges[i + 1]}));
+      }
+      return set;
+    }
+
+    boolean contains(int codePoint) {
+      for (int i = 0; i < ranges.length && ranges[i] <= codePoint; i += 2) {
+        if (codePoint <= ranges[i + 1]) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Returns the code point, if the set consists of exactly one, or -1.
+     */
+    int singleCodePoint() {
+      return ranges.length == 2 && ranges[0] == ranges[1] ? ranges[0] : -1;
+    }
+
+    CharSet union(CharSet other) {
+      int[] all = Arrays.copyOf(ranges, ranges.length + other.ranges.length);
+      System.arraycopy(other.ranges, 0, all, ranges.length, other.ranges.length);
+      Integer[] starts = new Integer[all.length / 2];
+      for (int i = 0; i < starts.length; i++) {
+        starts[i] = i;
+      }
+      Arrays.sort(starts, (a, b) -> Integer.compare(all[2 * a], all[2 * b]));
+
+      int[] merged = new int[all.length];
+      int size = 0;
+      for (int index : starts) {
+        int from = all[2 * index];
+        int to = all[2 * index + 1];
+        if (size > 0 && from <= merged[size - 1] + 1) {
+          merged[size - 1] = Math.max(merged[size - 1], to);
+        } else {
+          merged[size++] = from;
+          merged[size++] = to;
+        }
+      }
+      return new CharSet(Arrays.copyOf(merged, size));
+    }
+
+    CharSet negate() {
+      int[] result = new int[ranges.length + 2];
+      int size = 0;
+      int next = 0;
+      for (int i = 0; i < ranges.length; i += 2) {
+        if (ranges[i] > next) {
+          result[size++] = next;
+          result[size++] = ranges[i] - 1;
+        }
+        next = ranges[i + 1] + 1;
+      }
+      if (next <= Character.MAX_CODE_POINT) {
+        result[size++] = next;
+        result[size++] = Character.MAX_CODE_POINT;
+      }
+      return new CharSet(Arrays.copyOf(result, size));
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.index;
+
+/**
+ * Bloom filter for paths, based on their {@link String#hashCode() string hash code}.
+ *
+ * Unlike a general purpose filter, a lookup does not allocate: the bit positions are derived from the hash code of the
+ * {@link CharSequence}, which is cached for strings and computed while normalizing a {@link RequestPath}. Paths with
+ * the same hash code cannot be distinguished, the additional false positive rate of 2^-32 does not matter here.
+ *
+ * A filter is not thread safe: it is filled before it is published and not changed afterwards. A filter is created for
+ * an expected number of paths; once more paths have been added, {@link #isFull()} returns true.
+ */
+public final class PathBloomFilter {
+
+  private static final double LN2 = Math.log(2);
+
+  private final long[] bits;
+  private final long bitSize;
+  private final int hashFunctions;
+  private final int capacity;
+  private int size;
+
+  private PathBloomFilter(long[] bits, int hashFunctions, int capacity) {
+    this.bits = bits;
+    this.bitSize = bits.length * 64L;
+    this.hashFunctions = hashFunctions;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Returns an empty filter for the given number of paths and false positive probability.
+   */
+  public static PathBloomFilter create(int expectedPaths, double fpp) {
+    int capacity = Math.max(expectedPaths, 1);
+    long bitSize = Math.max(64, (long) (-capacity * Math.log(fpp) / (LN2 * LN2)));
+    int hashFunctions = Math.max(1, (int) Math.round((double) bitSize / capacity * LN2));
+    return new PathBloomFilter(new long[(int) ((bitSize + 63) / 64)], hashFunctions, capacity);
+  }
+
+  /**
+   * Adds the given path.
+   */
+  public void put(CharSequence path) {
+    long hash = mix(path.hashCode());
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    for (int i = 1; i <= hashFunctions; i++) {
+      long bit = bitIndex(hash1 + i * hash2);
+      bits[(int) (bit >>> 6)] |= 1L << bit;
+    }
+    size++;
+  }
+
+  /**
+   * Returns false, if the path has definitely not been added.
+   */
+  public boolean mightContain(CharSequence path) {
+    long hash = mix(path.hashCode());
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    for (int i = 1; i <= hashFunctions; i++) {
+      long bit = bitIndex(hash1 + i * hash2);
+      if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true, if more paths have been added than the filter was created for.
+   */
+  public boolean isFull() {
+    return size > capacity;
+  }
+
+  private long bitIndex(int combinedHash) {
+    return (combinedHash & 0x7fffffffL) % bitSize;
+  }
+
+  /**
+   * Spreads the 32 bit hash code to 64 bits (the finalizer of MurmurHash3).
+   */
+  private static long mix(int hashCode) {
+    long h = hashCode;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.index;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Defines, how the {@link PatternRedirectsMatcher} evaluates the redirect patterns for a request path.
+ *
+ * <ul>
+ *   <li>{@link Engine#JAVA}: all patterns are evaluated with {@link java.util.regex.Pattern}.</li>
+ *   <li>{@link Engine#LINEAR}: the patterns are evaluated with a {@link LinearPattern} in linear time. Only patterns
+ *   using constructs, which are not supported by it, are evaluated with {@link java.util.regex.Pattern}.</li>
+ * </ul>
+ *
+ * Evaluations with {@link java.util.regex.Pattern} can be limited by a step budget: the number of characters read
+ * from the path per request. A badly written pattern like {@code (.*)*x} needs exponentially many steps for some
+ * paths; once the budget is exhausted, the evaluation is aborted and the path is treated like a path without a
+ * matching pattern. The aborted evaluations are counted.
+ */
+public final class PatternMatchPolicy {
+
+  /**
+   * The engines to evaluate the patterns.
+   */
+  public enum Engine {
+    JAVA, LINEAR
+  }
+
+  /**
+   * Evaluates all patterns with {@link java.util.regex.Pattern} without a step budget.
+   */
+  public static final PatternMatchPolicy UNLIMITED = new PatternMatchPolicy(Engine.JAVA, 0);
+
+  private final Engine engine;
+  private final long stepBudget;
+  private final LongAdder abortedMatches = new LongAdder();
+
+  /**
+   * @param engine the engine for the patterns
+   * @param stepBudget the maximum number of steps for the evaluation with {@link java.util.regex.Pattern} per
+   *                   request, 0 for no limit
+   */
+  public PatternMatchPolicy(Engine engine, long stepBudget) {
+    this.engine = engine;
+    this.stepBudget = stepBudget;
+  }
+
+  public Engine getEngine() {
+    return engine;
+  }
+
+  public long getStepBudget() {
+    return stepBudget;
+  }
+
+  /**
+   * Returns the number of evaluations, which have been aborted because of the step budget.
+   */
+  public long getAbortedMatches() {
+    return abortedMatches.sum();
+  }
+
+  void recordAbortedMatch() {
+    abortedMatches.increment();
+  }
+
+  /**
+   * Returns the path to be evaluated with {@link java.util.regex.Pattern}: a view counting the steps, if there is a
+   * step budget.
+   */
+  CharSequence budgeted(CharSequence path) {
+    return stepBudget > 0 ? new BudgetedPath(path, stepBudget) : path;
+  }
+
+  /**
+   * Thrown, when the step budget of a {@link BudgetedPath} is exhausted.
+   */
+  static final class StepBudgetExceededException extends RuntimeException {
+
+    StepBudgetExceededException() {
+      // No stack trace: it is used for control flow only
+      super("Step budget exceeded", null, false, false);
+    }
+  }
+
+  /**
+   * Path, which counts the characters read by a {@link java.util.regex.Matcher}. The matcher has no means to be
+   * interrupted, the exception on the exhausted budget aborts it.
+   */
+  private static final class BudgetedPath implements CharSequence {
+
+    private final CharSequence path;
+    private long remainingSteps;
+
+    BudgetedPath(CharSequence path, long stepBudget) {
+      this.path = path;
+      this.remainingSteps = stepBudget;
+    }
+
+    @Override
+    public int length() {
+      return path.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (--remainingSteps < 0) {
+        throw new StepBudgetExceededException();
+      }
+      return path.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return path.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return path.toString();
+    }
+  }
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.index;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Immutable matcher for all regex redirects of a site. It returns the first matching pattern, the redirects of the
+ * pattern are looked up by the caller: their changes do not require compiling the matcher again.
+ *
+ * Each pattern is stored in a {@link PrefixTree} under its literal prefix, i.e. the part of the pattern every
+ * matching path has to start with (e.g. {@code /en/shop/} for {@code /en/shop/.*}). A request path is only tested
+ * against the patterns, whose literal prefix is a prefix of the path.
+ *
+ * The patterns sharing the same literal prefix are combined into one alternation {@code (p1)|(p2)|...}, so they are
+ * tested with a single {@link Matcher} run instead of one matcher per pattern. Patterns which cannot be embedded
+ * safely (back references, named groups, comments or quoting) are kept as single patterns.
+ *
+ * The result is the same as testing all patterns in the given order: the first matching pattern wins.
+ *
+ * With the {@link PatternMatchPolicy.Engine#LINEAR linear engine}, the patterns of a bucket are combined into one
+ * {@link LinearPattern} instead, which is compiled on its first use. The step budget of the {@link PatternMatchPolicy}
+ * applies to all evaluations with {@link Pattern}.
+ */
+public class PatternRedirectsMatcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PatternRedirectsMatcher.class);
+
+  private static final PatternRedirectsMatcher EMPTY = new PatternRedirectsMatcher(new PrefixTree<>(), 0);
+
+  // Constructs, which rely on the group numbering or on the end of the pattern, cannot be embedded in an alternation.
+  private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]|\\\\Q|#");
+
+  private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+  private static final String QUANTIFIERS = "?*{";
+
+  private final PrefixTree<Bucket> buckets;
+  private final int size;
+
+  private PatternRedirectsMatcher(PrefixTree<Bucket> buckets, int size) {
+    this.buckets = buckets;
+    this.size = size;
+  }
+
+  /**
+   * Returns a matcher without any patterns.
+   */
+  public static PatternRedirectsMatcher empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Compiles a matcher for the given patterns. The order of the list defines the order, in which the patterns are
+   * tried. The matcher only has to be recompiled, if patterns are added, removed or reordered.
+   */
+  public static PatternRedirectsMatcher compile(List<Pattern> patterns) {
+    if (patterns.isEmpty()) {
+      return EMPTY;
+    }
+
+    Map<String, List<Entry>> entriesByPrefix = new LinkedHashMap<>();
+    int ordinal = 0;
+    for (Pattern pattern : patterns) {
+      entriesByPrefix.computeIfAbsent(literalPrefix(pattern), k -> new ArrayList<>()).add(new Entry(ordinal++, pattern));
+    }
+
+    PrefixTree<Bucket> buckets = new PrefixTree<>();
+    entriesByPrefix.forEach((prefix, entries) -> buckets.put(prefix, new Bucket(entries)));
+    LOG.debug("Compiled {} redirect patterns into {} prefix buckets", ordinal, buckets.size());
+    return new PatternRedirectsMatcher(buckets, ordinal);
+  }
+
+  /**
+   * Returns the first pattern matching the complete path or {@code null}, if no pattern matches. All patterns are
+   * evaluated with {@link Pattern}, without a step budget.
+   */
+  @Nullable
+  public Pattern match(CharSequence path) {
+    return match(path, PatternMatchPolicy.UNLIMITED);
+  }
+
+  /**
+   * Returns the first pattern matching the complete path or {@code null}, if no pattern matches or the evaluation has
+   * been aborted because of the step budget of the given policy.
+   */
+  @Nullable
+  public Pattern match(CharSequence path, PatternMatchPolicy policy) {
+    // Most paths do not start with the prefix of any pattern: answer them without allocating a visitor.
+    if (size == 0 || !buckets.containsPrefixOf(path)) {
+      return null;
+    }
+    boolean linear = policy.getEngine() == PatternMatchPolicy.Engine.LINEAR;
+    CharSequence budgetedPath = policy.budgeted(path);
+    MatchResult result = new MatchResult();
+    try {
+      buckets.forEachPrefixOf(path, (length, bucket) -> {
+        // Patterns of this bucket come after the best match found so far: they cannot win anymore.
+        if (bucket.firstOrdinal() < result.ordinal) {
+          Entry entry = bucket.match(path, budgetedPath, linear);
+          if (entry != null && entry.ordinal < result.ordinal) {
+            result.ordinal = entry.ordinal;
+            result.pattern = entry.pattern;
+          }
+        }
+        return true;
+      });
+    } catch (PatternMatchPolicy.StepBudgetExceededException e) {
+      policy.recordAbortedMatch();
+      return null;
+    }
+    return result.pattern;
+  }
+
+  /**
+   * Returns the number of patterns in this matcher.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the literal prefix of the given pattern: the longest string, every input matched by the pattern has to
+   * start with. Returns an empty string, if the pattern has no usable prefix.
+   */
+  static String literalPrefix(Pattern pattern) {
+    String regex = pattern.pattern();
+    if (pattern.flags() != 0 || hasTopLevelAlternation(regex)) {
+      return "";
+    }
+
+    StringBuilder prefix = new StringBuilder();
+    int i = 0;
+    while (i < regex.length()) {
+      char c = regex.charAt(i);
+      int next;
+      if (c == '\\') {
+        if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+          // Character classes like \d, quoting, back references ...
+          break;
+        }
+        c = regex.charAt(i + 1);
+        next = i + 2;
+      } else if (META_CHARACTERS.indexOf(c) >= 0) {
+        break;
+      } else {
+        next = i + 1;
+      }
+
+      if (next < regex.length()) {
+        char following = regex.charAt(next);
+        if (QUANTIFIERS.indexOf(following) >= 0) {
+          // The character is optional
+          break;
+        } else if (following == '+') {
+          // The character is required, but might be repeated
+          prefix.append(c);
+          break;
+        }
+      }
+      prefix.append(c);
+      i = next;
+    }
+    return prefix.toString();
+  }
+
+  private static boolean hasTopLevelAlternation(String regex) {
+    int depth = 0;
+    boolean inClass = false;
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (inClass) {
+        inClass = c != ']';
+      } else if (c == '[') {
+        inClass = true;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (c == '|' && depth == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isCombinable(Pattern pattern) {
+    return pattern.flags() == 0 && !NOT_COMBINABLE.matcher(pattern.pattern()).find();
+  }
+
+  private static class MatchResult {
+    private int ordinal = Integer.MAX_VALUE;
+    private Pattern pattern;
+  }
+
+  private static class Entry {
+
+    private final int ordinal;
+    private final Pattern pattern;
+    // The segment starting with this entry exceeded the step budget at least once
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    Entry(int ordinal, Pattern pattern) {
+      this.ordinal = ordinal;
+      this.pattern = pattern;
+    }
+  }
+
+  /**
+   * The patterns sharing one literal prefix, in their original order.
+   */
+  private static class Bucket {
+
+    private final int firstOrdinal;
+    private final List<Entry> entries;
+    private final Segment[] segments;
+    // Compiled on the first use of the linear engine
+    private volatile Segment[] linearSegments;
+
+    Bucket(List<Entry> entries) {
+      this.firstOrdinal = entries.get(0).ordinal;
+      this.entries = entries;
+      List<Segment> result = new ArrayList<>();
+      List<Entry> pending = new ArrayList<>();
+      for (Entry entry : entries) {
+        if (isCombinable(entry.pattern)) {
+          pending.add(entry);
+        } else {
+          addCombined(result, pending);
+          result.add(new SingleSegment(entry));
+        }
+      }
+      addCombined(result, pending);
+      this.segments = result.toArray(new Segment[0]);
+    }
+
+    int firstOrdinal() {
+      return firstOrdinal;
+    }
+
+    @Nullable
+    Entry match(CharSequence path, CharSequence budgetedPath, boolean linear) {
+      for (Segment segment : linear ? linearSegments() : segments) {
+        Entry entry = segment.match(path, budgetedPath);
+        if (entry != null) {
+          return entry;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Returns the segments for the linear engine: consecutive supported patterns share one {@link LinearPattern},
+     * the others are evaluated one by one. Compiling twice in a race does no harm.
+     */
+    private Segment[] linearSegments() {
+      Segment[] result = linearSegments;
+      if (result == null) {
+        List<Segment> list = new ArrayList<>();
+        List<Entry> pending = new ArrayList<>();
+        for (Entry entry : entries) {
+          if (entry.pattern.flags() == 0 && LinearPattern.isSupported(entry.pattern.pattern())) {
+            pending.add(entry);
+          } else {
+            LinearSegment.addTo(list, pending);
+            list.add(new SingleSegment(entry));
+          }
+        }
+        LinearSegment.addTo(list, pending);
+        result = list.toArray(new Segment[0]);
+        linearSegments = result;
+      }
+      return result;
+    }
+
+    private static void addCombined(List<Segment> segments, List<Entry> pending) {
+      if (pending.size() == 1) {
+        segments.add(new SingleSegment(pending.get(0)));
+      } else if (!pending.isEmpty()) {
+        segments.addAll(CombinedSegment.create(pending));
+      }
+      pending.clear();
+    }
+  }
+
+  private interface Segment {
+
+    /**
+     * @param path the path for linear evaluations
+     * @param budgetedPath the path for evaluations with a {@link Matcher}
+     */
+    @Nullable
+    Entry match(CharSequence path, CharSequence budgetedPath);
+  }
+
+  private static class SingleSegment implements Segment {
+
+    private final Entry entry;
+
+    SingleSegment(Entry entry) {
+      this.entry = entry;
+    }
+
+    @Override
+    public Entry match(CharSequence path, CharSequence budgetedPath) {
+      try {
+        return entry.pattern.matcher(budgetedPath).matches() ? entry : null;
+      } catch (PatternMatchPolicy.StepBudgetExceededException e) {
+        reportExceededBudget(List.of(entry));
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * One alternation over several patterns. Each pattern is wrapped in a capturing group, the group index of each
+   * pattern is stored to find out, which alternative has matched.
+   */
+  private static class CombinedSegment implements Segment {
+
+    private final Pattern pattern;
+    private final int[] groups;
+    private final List<Entry> entries;
+
+    private CombinedSegment(Pattern pattern, int[] groups, List<Entry> entries) {
+      this.pattern = pattern;
+      this.groups = groups;
+      this.entries = entries;
+    }
+
+    static List<Segment> create(List<Entry> entries) {
+      StringBuilder regex = new StringBuilder();
+      int[] groups = new int[entries.size()];
+      int group = 1;
+      for (int i = 0; i < entries.size(); i++) {
+        Pattern pattern = entries.get(i).pattern;
+        if (i > 0) {
+          regex.append('|');
+        }
+        regex.append('(').append(pattern.pattern()).append(')');
+        groups[i] = group;
+        group += pattern.matcher("").groupCount() + 1;
+      }
+
+      try {
+        Pattern combined = Pattern.compile(regex.toString());
+        if (combined.matcher("").groupCount() == group - 1) {
+          return List.of(new CombinedSegment(combined, groups, List.copyOf(entries)));
+        }
+        LOG.warn("Unexpected group count in combined redirect pattern, falling back to single patterns");
+      } catch (PatternSyntaxException e) {
+        LOG.warn("Unable to combine redirect patterns, falling back to single patterns: {}", e.getMessage());
+      }
+
+      List<Segment> singles = new ArrayList<>(entries.size());
+      entries.forEach(e -> singles.add(new SingleSegment(e)));
+      return singles;
+    }
+
+    @Override
+    public Entry match(CharSequence path, CharSequence budgetedPath) {
+      Matcher matcher = pattern.matcher(budgetedPath);
+      try {
+        if (!matcher.matches()) {
+          return null;
+        }
+      } catch (PatternMatchPolicy.StepBudgetExceededException e) {
+        reportExceededBudget(entries);
+        throw e;
+      }
+      for (int i = 0; i < groups.length; i++) {
+        if (matcher.start(groups[i]) >= 0) {
+          return entries.get(i);
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * The patterns of consecutive entries, evaluated with one {@link LinearPattern}.
+   */
+  private static class LinearSegment implements Segment {
+
+    private final LinearPattern pattern;
+    private final List<Entry> entries;
+
+    private LinearSegment(LinearPattern pattern, List<Entry> entries) {
+      this.pattern = pattern;
+      this.entries = entries;
+    }
+
+    /**
+     * Adds a segment for the pending entries, if there are any, and clears them.
+     */
+    static void addTo(List<Segment> segments, List<Entry> pending) {
+      if (!pending.isEmpty()) {
+        List<String> regexes = new ArrayList<>(pending.size());
+        pending.forEach(e -> regexes.add(e.pattern.pattern()));
+        segments.add(new LinearSegment(LinearPattern.compile(regexes), List.copyOf(pending)));
+        pending.clear();
+      }
+    }
+
+    @Override
+    public Entry match(CharSequence path, CharSequence budgetedPath) {
+      int index = pattern.match(path);
+      return index >= 0 ? entries.get(index) : null;
+    }
+  }
+
+  /**
+   * Logs the patterns of a segment, which exceeded the step budget, once per segment and matcher.
+   */
+  private static void reportExceededBudget(List<Entry> entries) {
+    if (entries.get(0).reported.compareAndSet(false, true)) {
+      List<String> patterns = new ArrayList<>(entries.size());
+      entries.forEach(e -> patterns.add(e.pattern.pattern()));
+      LOG.warn("Evaluation of the redirect patterns {} exceeded the step budget, consider simpler patterns", patterns);
+    }
+  }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.index;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable hash map with structural sharing (a hash array mapped trie).
+ *
+ * {@link #plus} and {@link #minus} return a new map and leave this map untouched. Only the nodes on the path to the
+ * changed entry are copied, so an update costs O(log32 n) instead of copying the whole map. This allows to publish
+ * a new version of a large map for every single change, while readers keep using the old version without locks.
+ *
+ * The mutating methods of {@link Map} are not supported. Neither {@code null} keys nor {@code null} values are
+ * allowed.
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+  @Nullable
+  private final Node root;
+  private final int size;
+
+  private PersistentHashMap(@Nullable Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <K, V> PersistentHashMap<K, V> empty() {
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  /**
+   * Returns a map containing all entries of the given map.
+   */
+  public static <K, V> PersistentHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+    PersistentHashMap<K, V> result = empty();
+    for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+      result = result.plus(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * Returns a map with the given entry added, replacing an existing entry with the same key.
+   */
+  public PersistentHashMap<K, V> plus(K key, V value) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(value);
+    boolean[] added = new boolean[1];
+    Node newRoot = (root == null ? BitmapNode.EMPTY : root).put(0, hash(key), key, value, added);
+    return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+  }
+
+  /**
+   * Returns a map without the entry for the given key.
+   */
+  public PersistentHashMap<K, V> minus(Object key) {
+    if (root == null || key == null) {
+      return this;
+    }
+    Node newRoot = root.remove(0, hash(key), key);
+    return newRoot == root ? this : new PersistentHashMap<>(newRoot, size - 1);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(Object key) {
+    return root == null || key == null ? null : (V) root.get(0, hash(key), key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator<>(root);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  private static int hash(Object key) {
+    return key.hashCode();
+  }
+
+  private interface Node {
+
+    @Nullable
+    Object get(int shift, int hash, Object key);
+
+    Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+    /**
+     * @return the new node, this node, if the key was not found, or {@code null}, if the node is empty now.
+     */
+    @Nullable
+    Node remove(int shift, int hash, Object key);
+
+    int slots();
+
+    /**
+     * Returns the key at the given slot or {@code null}, if the slot contains a sub node.
+     */
+    @Nullable
+    Object keyAt(int slot);
+
+    Object valueAt(int slot);
+  }
+
+  /**
+   * Node with up to 32 slots, addressed by 5 bits of the hash. The array holds pairs of key and value, or
+   * {@code null} and a sub node.
+   */
+  private static final class BitmapNode implements Node {
+
+    static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+    private final int bitmap;
+    private final Object[] array;
+
+    BitmapNode(int bitmap, Object[] array) {
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+
+    @Override
+    public Object get(int shift, int hash, Object key) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      int index = index(bit);
+      Object k = array[2 * index];
+      Object v = array[2 * index + 1];
+      if (k == null) {
+        return ((Node) v).get(shift + BITS, hash, key);
+      }
+      return key.equals(k) ? v : null;
+    }
+
+    @Override
+    public Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+      int bit = bit(hash, shift);
+      int index = index(bit);
+      if ((bitmap & bit) == 0) {
+        Object[] newArray = new Object[array.length + 2];
+        System.arraycopy(array, 0, newArray, 0, 2 * index);
+        newArray[2 * index] = key;
+        newArray[2 * index + 1] = value;
+        System.arraycopy(array, 2 * index, newArray, 2 * index + 2, array.length - 2 * index);
+        added[0] = true;
+        return new BitmapNode(bitmap | bit, newArray);
+      }
+
+      Object k = array[2 * index];
+      Object v = array[2 * index + 1];
+      if (k == null) {
+        Node sub = ((Node) v).put(shift + BITS, hash, key, value, added);
+        return sub == v ? this : with(2 * index + 1, sub);
+      }
+      if (key.equals(k)) {
+        return v == value ? this : with(2 * index + 1, value);
+      }
+      added[0] = true;
+      Node sub = createNode(shift + BITS, k, v, hash, key, value);
+      Object[] newArray = array.clone();
+      newArray[2 * index] = null;
+      newArray[2 * index + 1] = sub;
+      return new BitmapNode(bitmap, newArray);
+    }
+
+    @Override
+    public Node remove(int shift, int hash, Object key) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int index = index(bit);
+      Object k = array[2 * index];
+      Object v = array[2 * index + 1];
+      if (k == null) {
+        Node sub = ((Node) v).remove(shift + BITS, hash, key);
+        if (sub == v) {
+          return this;
+        }
+        return sub != null ? with(2 * index + 1, sub) : without(bit, index);
+      }
+      return key.equals(k) ? without(bit, index) : this;
+    }
+
+    @Override
+    public int slots() {
+      return array.length / 2;
+    }
+
+    @Override
+    public Object keyAt(int slot) {
+      return array[2 * slot];
+    }
+
+    @Override
+    public Object valueAt(int slot) {
+      return array[2 * slot + 1];
+    }
+
+    private BitmapNode with(int position, Object value) {
+      Object[] newArray = array.clone();
+      newArray[position] = value;
+      return new BitmapNode(bitmap, newArray);
+    }
+
+    @Nullable
+    private BitmapNode without(int bit, int index) {
+      if (bitmap == bit) {
+        return null;
+      }
+      Object[] newArray = new Object[array.length - 2];
+      System.arraycopy(array, 0, newArray, 0, 2 * index);
+      System.arraycopy(array, 2 * index + 2, newArray, 2 * index, newArray.length - 2 * index);
+      return new BitmapNode(bitmap & ~bit, newArray);
+    }
+
+    private int index(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static int bit(int hash, int shift) {
+      return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static Node createNode(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+      int hash1 = hash(key1);
+      if (hash1 == hash2) {
+        return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+      }
+      boolean[] added = new boolean[1];
+      return EMPTY.put(shift, hash1, key1, value1, added).put(shift, hash2, key2, value2, added);
+    }
+  }
+
+  /**
+   * Node for keys with the same hash code.
+   */
+  private static final class CollisionNode implements Node {
+
+    private final int hash;
+    private final Object[] array;
+
+    CollisionNode(int hash, Object[] array) {
+      this.hash = hash;
+      this.array = array;
+    }
+
+    @Override
+    public Object get(int shift, int hash, Object key) {
+      int index = indexOf(key);
+      return index < 0 ? null : array[index + 1];
+    }
+
+    @Override
+    public Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+      if (hash != this.hash) {
+        // Different hash with the same prefix: nest this node into a bitmap node and add the key there.
+        BitmapNode node = new BitmapNode(BitmapNode.bit(this.hash, shift), new Object[]{null, this});
+        return node.put(shift, hash, key, value, added);
+      }
+      int index = indexOf(key);
+      if (index >= 0) {
+        if (array[index + 1] == value) {
+          return this;
+        }
+        Object[] newArray = array.clone();
+        newArray[index + 1] = value;
+        return new CollisionNode(hash, newArray);
+      }
+      Object[] newArray = Arrays.copyOf(array, array.length + 2);
+      newArray[array.length] = key;
+      newArray[array.length + 1] = value;
+      added[0] = true;
+      return new CollisionNode(hash, newArray);
+    }
+
+    @Override
+    public Node remove(int shift, int hash, Object key) {
+      int index = indexOf(key);
+      if (index < 0) {
+        return this;
+      }
+      if (array.length == 2) {
+        return null;
+      }
+      Object[] newArray = new Object[array.length - 2];
+      System.arraycopy(array, 0, newArray, 0, index);
+      System.arraycopy(array, index + 2, newArray, index, newArray.length - index);
+      return new CollisionNode(hash, newArray);
+    }
+
+    @Override
+    public int slots() {
+      return array.length / 2;
+    }
+
+    @Override
+    public Object keyAt(int slot) {
+      return array[2 * slot];
+    }
+
+    @Override
+    public Object valueAt(int slot) {
+      return array[2 * slot + 1];
+    }
+
+    private int indexOf(Object key) {
+      for (int i = 0; i < array.length; i += 2) {
+        if (key.equals(array[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Depth-first iterator over the nodes.
+   */
+  private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+
+    private final Deque<Node> nodes = new ArrayDeque<>();
+    private final Deque<Integer> positions = new ArrayDeque<>();
+    private Map.Entry<K, V> next;
+
+    EntryIterator(@Nullable Node root) {
+      if (root != null) {
+        nodes.push(root);
+        positions.push(0);
+      }
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      Map.Entry<K, V> result = next;
+      advance();
+      return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void advance() {
+      next = null;
+      while (!nodes.isEmpty()) {
+        Node node = nodes.peek();
+        int position = positions.pop();
+        if (position >= node.slots()) {
+          nodes.pop();
+          continue;
+        }
+        positions.push(position + 1);
+        Object key = node.keyAt(position);
+        if (key == null) {
+          nodes.push((Node) node.valueAt(position));
+          positions.push(0);
+        } else {
+          next = new SimpleImmutableEntry<>((K) key, (V) node.valueAt(position));
+          return;
+        }
+      }
+    }
+  }
+}
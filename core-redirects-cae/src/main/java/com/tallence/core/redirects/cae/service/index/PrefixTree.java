@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.index;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compressed prefix tree (radix tree) mapping string keys to values.
+ *
+ * The main operation is {@link #forEachPrefixOf}, which visits the values of all keys being a prefix of a given
+ * string in O(length of the string), independent of the number of keys.
+ *
+ * The tree is filled once and not modified afterwards: it is not thread safe for concurrent writes, but can be read
+ * by any number of threads after it has been safely published.
+ */
+public class PrefixTree<V> {
+
+  private final Node<V> root = new Node<>("");
+  private int size;
+
+  /**
+   * Callback for {@link #forEachPrefixOf}.
+   */
+  public interface PrefixVisitor<V> {
+
+    /**
+     * Called for each key being a prefix of the visited string, shortest first.
+     *
+     * @param length the length of the key
+     * @param value the value of the key
+     * @return false, to stop the visit
+     */
+    boolean visit(int length, V value);
+  }
+
+  /**
+   * Stores the given value for the given key, replacing an existing one.
+   */
+  public void put(String key, V value) {
+    Node<V> node = root;
+    int pos = 0;
+    while (pos < key.length()) {
+      Node<V> child = node.children.get(key.charAt(pos));
+      if (child == null) {
+        child = new Node<>(key.substring(pos));
+        node.children.put(key.charAt(pos), child);
+        node = child;
+        pos = key.length();
+        break;
+      }
+
+      int common = commonLength(child.label, key, pos);
+      if (common < child.label.length()) {
+        // Split the edge: the new node takes the common part, the old child keeps the rest.
+        Node<V> split = new Node<>(child.label.substring(0, common));
+        child.label = child.label.substring(common);
+        split.children.put(child.label.charAt(0), child);
+        node.children.put(split.label.charAt(0), split);
+        child = split;
+      }
+      node = child;
+      pos += common;
+    }
+    if (node.value == null) {
+      size++;
+    }
+    node.value = value;
+  }
+
+  /**
+   * Returns the value for exactly the given key.
+   */
+  @Nullable
+  public V get(CharSequence key) {
+    Node<V> node = root;
+    int pos = 0;
+    while (pos < key.length()) {
+      node = node.children.get(key.charAt(pos));
+      if (node == null || !startsWith(key, pos, node.label)) {
+        return null;
+      }
+      pos += node.label.length();
+    }
+    return node.value;
+  }
+
+  /**
+   * Visits the values of all keys, which are a prefix of the given string (including the empty key and the string
+   * itself), ordered by the key length.
+   */
+  public void forEachPrefixOf(CharSequence string, PrefixVisitor<V> visitor) {
+    Node<V> node = root;
+    int pos = 0;
+    while (true) {
+      if (node.value != null && !visitor.visit(pos, node.value)) {
+        return;
+      }
+      if (pos >= string.length()) {
+        return;
+      }
+      node = node.children.get(string.charAt(pos));
+      if (node == null || !startsWith(string, pos, node.label)) {
+        return;
+      }
+      pos += node.label.length();
+    }
+  }
+
+  /**
+   * Returns true, if any key is a prefix of the given string. Other than {@link #forEachPrefixOf}, this does not
+   * allocate a visitor.
+   */
+  public boolean containsPrefixOf(CharSequence string) {
+    Node<V> node = root;
+    int pos = 0;
+    while (node.value == null) {
+      if (pos >= string.length()) {
+        return false;
+      }
+      node = node.children.get(string.charAt(pos));
+      if (node == null || !startsWith(string, pos, node.label)) {
+        return false;
+      }
+      pos += node.label.length();
+    }
+    return true;
+  }
+
+  /**
+   * Returns the value of the longest key, which is a prefix of the given string and ends at a boundary: the key is
+   * the complete string or it is followed by the given separator in the string. With the separator '/', the key
+   * "/a/b" matches "/a/b" and "/a/b/c", but not "/a/bc". Does not allocate.
+   */
+  @Nullable
+  public V longestPrefixOf(CharSequence string, char separator) {
+    Node<V> node = root;
+    int pos = 0;
+    V result = null;
+    while (true) {
+      if (node.value != null && (pos == string.length() || string.charAt(pos) == separator)) {
+        result = node.value;
+      }
+      if (pos >= string.length()) {
+        return result;
+      }
+      node = node.children.get(string.charAt(pos));
+      if (node == null || !startsWith(string, pos, node.label)) {
+        return result;
+      }
+      pos += node.label.length();
+    }
+  }
+
+  /**
+   * Returns the number of keys.
+   */
+  public int size() {
+    return size;
+  }
+
+  private static int commonLength(String label, String key, int offset) {
+    int max = Math.min(label.length(), key.length() - offset);
+    int i = 0;
+    while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean startsWith(CharSequence string, int offset, String label) {
+    if (string.length() - offset < label.length()) {
+      return false;
+    }
+    for (int i = 0; i < label.length(); i++) {
+      if (string.charAt(offset + i) != label.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static class Node<V> {
+
+    private String label;
+    private V value;
+    private final Map<Character, Node<V>> children = new HashMap<>(4);
+
+    Node(String label) {
+      this.label = label;
+    }
+  }
+}
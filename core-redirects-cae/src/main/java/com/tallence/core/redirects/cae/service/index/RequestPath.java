@@ -0,0 +1,135 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.index;
+
+import java.util.Locale;
+
+/**
+ * Normalized view of a request path for the lookup of redirects: lower case and without a trailing slash.
+ *
+ * The view does not copy the path. For ASCII paths the characters are folded on access and the hash code is computed
+ * in the same pass, which checks the path. Only paths with non-ASCII characters are copied once, to get exactly the
+ * result of {@link String#toLowerCase(Locale)}.
+ *
+ * The hash code is the hash code of the normalized string and {@link #equals} accepts every {@link CharSequence} with
+ * the same characters, so an instance can be used to look up {@link String} keys in hash based maps. Note that this
+ * equality is not symmetric: never store instances as keys, use {@link #toString()} instead.
+ */
+public final class RequestPath implements CharSequence {
+
+  private final String path;
+  private final int length;
+  private final boolean lowerCase;
+  private final int hash;
+
+  private RequestPath(String path, int length, boolean lowerCase, int hash) {
+    this.path = path;
+    this.length = length;
+    this.lowerCase = lowerCase;
+    this.hash = hash;
+  }
+
+  /**
+   * Returns the normalized view of the given path info.
+   */
+  public static RequestPath of(String pathInfo) {
+    int length = pathInfo.length();
+    if (length > 0 && pathInfo.charAt(length - 1) == '/') {
+      length--;
+    }
+
+    boolean lowerCase = true;
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      char c = pathInfo.charAt(i);
+      if (c >= 0x80) {
+        String normalized = pathInfo.substring(0, length).toLowerCase(Locale.ROOT);
+        return new RequestPath(normalized, normalized.length(), true, normalized.hashCode());
+      }
+      if (c >= 'A' && c <= 'Z') {
+        lowerCase = false;
+        c += 'a' - 'A';
+      }
+      hash = 31 * hash + c;
+    }
+    return new RequestPath(pathInfo, length, lowerCase, hash);
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index >= length) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+    }
+    char c = path.charAt(index);
+    return lowerCase || c < 'A' || c > 'Z' ? c : (char) (c + ('a' - 'A'));
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().substring(start, end);
+  }
+
+  /**
+   * Returns true, if the given object is a {@link CharSequence} with the same characters as this normalized path.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof CharSequence)) {
+      return false;
+    }
+    CharSequence other = (CharSequence) o;
+    if (other.length() != length || other.hashCode() != hash && o instanceof String) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (charAt(i) != other.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the hash code of the normalized path as {@link String}.
+   */
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  /**
+   * Returns the normalized path, a copy is only created, if the path info was not normalized yet.
+   */
+  @Override
+  public String toString() {
+    if (lowerCase) {
+      return length == path.length() ? path : path.substring(0, length);
+    }
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = charAt(i);
+    }
+    return new String(chars);
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.purge;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends the {@link RedirectPurgeEvent}s as JSON lines to a file, for local testing or to be picked up by a
+ * separate purge process.
+ */
+public class FileRedirectPurgeSink implements RedirectPurgeSink {
+
+  private final Path file;
+
+  public FileRedirectPurgeSink(Path file) {
+    this.file = file;
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  @Override
+  public synchronized void publish(RedirectPurgeEvent event) {
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND)) {
+      writer.write(event.toJson());
+      writer.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write the purge event to " + file, e);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.purge;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the latest {@link RedirectPurgeEvent}s in memory, for local testing.
+ */
+public class InMemoryRedirectPurgeSink implements RedirectPurgeSink {
+
+  private final int maxSize;
+  private final Deque<RedirectPurgeEvent> events = new ArrayDeque<>();
+
+  /**
+   * @param maxSize the maximum number of kept events, older events are dropped
+   */
+  public InMemoryRedirectPurgeSink(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  @Override
+  public synchronized void publish(RedirectPurgeEvent event) {
+    if (maxSize <= 0) {
+      return;
+    }
+    if (events.size() == maxSize) {
+      events.removeFirst();
+    }
+    events.addLast(event);
+  }
+
+  /**
+   * Returns the kept events, the oldest first.
+   */
+  public synchronized List<RedirectPurgeEvent> getEvents() {
+    return new ArrayList<>(events);
+  }
+
+  public synchronized void clear() {
+    events.clear();
+  }
+}
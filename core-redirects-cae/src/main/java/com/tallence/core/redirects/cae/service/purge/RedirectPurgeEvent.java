@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.purge;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Published by the {@link com.tallence.core.redirects.cae.service.RedirectUpdateTaskScheduler} to the
+ * {@link RedirectPurgeSink}s, after a change has been applied to the redirects of a site. Edge caches have to purge
+ * the responses tagged with one of the {@link #getSurrogateKeys() surrogate keys} then.
+ */
+public final class RedirectPurgeEvent {
+
+  /**
+   * The changes, which need a purge.
+   */
+  public enum Type {
+    /**
+     * A redirect has been created or updated, also after a change of its target.
+     */
+    UPDATED,
+    /**
+     * A redirect has been deleted.
+     */
+    REMOVED,
+    /**
+     * A redirect has been destroyed.
+     */
+    DESTROYED,
+    /**
+     * All redirects of the site have been read again or the validity of their targets has changed.
+     */
+    SITE_UPDATED
+  }
+
+  private final Type type;
+  private final String siteId;
+  private final String redirectId;
+  private final List<String> surrogateKeys;
+  private final long timestamp;
+
+  private RedirectPurgeEvent(Type type, String siteId, @Nullable String redirectId, List<String> surrogateKeys) {
+    this.type = type;
+    this.siteId = siteId;
+    this.redirectId = redirectId;
+    this.surrogateKeys = surrogateKeys;
+    this.timestamp = System.currentTimeMillis();
+  }
+
+  /**
+   * Creates the event for a single redirect, the responses of the redirect are purged.
+   */
+  public static RedirectPurgeEvent forRedirect(Type type, String siteId, String redirectId) {
+    return new RedirectPurgeEvent(type, siteId, redirectId, List.of(SurrogateKeys.forRedirect(redirectId)));
+  }
+
+  /**
+   * Creates the event for all redirects of a site with the given root segment.
+   */
+  public static RedirectPurgeEvent forSite(String siteId, String rootSegment) {
+    return new RedirectPurgeEvent(Type.SITE_UPDATED, siteId, null, List.of(SurrogateKeys.forSite(rootSegment)));
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getSiteId() {
+    return siteId;
+  }
+
+  /**
+   * Returns the content id of the changed redirect, {@code null} for {@link Type#SITE_UPDATED}.
+   */
+  @Nullable
+  public String getRedirectId() {
+    return redirectId;
+  }
+
+  public List<String> getSurrogateKeys() {
+    return surrogateKeys;
+  }
+
+  /**
+   * Returns the time in milliseconds, when the change has been applied.
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Returns the event as a single line JSON object.
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder("{\"type\":\"").append(type)
+            .append("\",\"siteId\":\"").append(siteId).append('"');
+    if (redirectId != null) {
+      json.append(",\"redirectId\":\"").append(redirectId).append('"');
+    }
+    json.append(",\"surrogateKeys\":[");
+    for (int i = 0; i < surrogateKeys.size(); i++) {
+      json.append(i > 0 ? ",\"" : "\"").append(surrogateKeys.get(i)).append('"');
+    }
+    return json.append("],\"timestamp\":").append(timestamp).append('}').toString();
+  }
+
+  @Override
+  public String toString() {
+    return "RedirectPurgeEvent{" +
+            "type=" + type +
+            ", siteId='" + siteId + '\'' +
+            ", redirectId='" + redirectId + '\'' +
+            ", surrogateKeys=" + surrogateKeys +
+            '}';
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.purge;
+
+/**
+ * Receives the {@link RedirectPurgeEvent}s, e.g. to purge the changed redirects from a CDN. Every bean implementing
+ * this interface receives all events.
+ *
+ * Events are published from the threads updating the redirects, implementations must be thread safe and should
+ * return quickly. Exceptions are logged and ignored.
+ */
+public interface RedirectPurgeSink {
+
+  /**
+   * A sink dropping all events, used if no sink is configured.
+   */
+  RedirectPurgeSink NONE = event -> {
+  };
+
+  void publish(RedirectPurgeEvent event);
+}
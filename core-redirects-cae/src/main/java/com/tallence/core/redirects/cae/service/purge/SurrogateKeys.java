@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.purge;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The surrogate keys of redirect responses, sent as {@code Surrogate-Key} and {@code Cache-Tag} header by the
+ * {@link com.tallence.core.redirects.cae.filter.RedirectFilter} and used by the {@link RedirectPurgeEvent}s to purge
+ * the responses from edge caches.
+ *
+ * Every redirect response has a key for the redirect ({@code redirect-<content number>}) and a key for its site
+ * ({@code redirects-<root segment>}), e.g. {@code redirect-1234 redirects-channela}.
+ */
+public final class SurrogateKeys {
+
+  public static final String SURROGATE_KEY_HEADER = "Surrogate-Key";
+  public static final String CACHE_TAG_HEADER = "Cache-Tag";
+
+  private static final String REDIRECT_PREFIX = "redirect-";
+  private static final String SITE_PREFIX = "redirects-";
+
+  private SurrogateKeys() {
+  }
+
+  /**
+   * Returns the key of the redirect with the given content id.
+   */
+  public static String forRedirect(String contentId) {
+    return REDIRECT_PREFIX + contentId.substring(contentId.lastIndexOf('/') + 1);
+  }
+
+  /**
+   * Returns the key of all redirects of the site with the given root segment, with or without leading slash.
+   */
+  public static String forSite(String rootSegment) {
+    String segment = rootSegment.startsWith("/") ? rootSegment.substring(1) : rootSegment;
+    return SITE_PREFIX + segment.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Returns the keys of a redirect response: the key of the redirect and the key of its site, which is taken from the
+   * first segment of the source, see {@link com.tallence.core.redirects.cae.model.Redirect#getSource()}.
+   */
+  public static List<String> forResponse(String contentId, String source) {
+    int end = source.indexOf('/', 1);
+    String rootSegment = end > 0 ? source.substring(0, end) : source;
+    return List.of(forRedirect(contentId), forSite(rootSegment));
+  }
+}
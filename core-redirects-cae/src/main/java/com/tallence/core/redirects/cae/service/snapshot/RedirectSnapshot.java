@@ -0,0 +1,244 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.snapshot;
+
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.content.ContentRepository;
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import com.tallence.core.redirects.model.RedirectSourceParameter;
+import com.tallence.core.redirects.model.RedirectStatus;
+import com.tallence.core.redirects.model.RedirectTargetParameter;
+import com.tallence.core.redirects.model.RedirectType;
+import com.tallence.core.redirects.model.SourceUrlType;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The binary format of a {@link SiteRedirects} snapshot. All values are big endian:
+ *
+ * <pre>
+ * int     magic number "CRSN"
+ * int     format version
+ * string  site id
+ * long    creation time in epoch millis
+ * string  checkpoint or null, see {@link #getCheckpoint()}
+ * int     number of redirects, followed by the redirects:
+ *   string  content id
+ *   byte    source url type, ordinal of {@link SourceUrlType}
+ *   string  source, including the root segment
+ *   byte    redirect type, ordinal of {@link RedirectType}
+ *   string  content id of the target or null
+ *   string  target url or null
+ *   int     priority
+ *   short   status code
+ *   long    validFrom of the target, long validTo of the target
+ *   int     number of source parameters, each: string name, string value, byte operator ordinal or -1
+ *   int     number of target parameters, each: string name, string value
+ * </pre>
+ *
+ * A string is its length in UTF-8 bytes as int (-1 for null) and the bytes. The format is read from a
+ * {@link ByteBuffer}, e.g. a memory mapped file. Files of another format version are not read.
+ */
+public final class RedirectSnapshot {
+
+  static final int MAGIC = 0x4352534e;
+  static final int FORMAT_VERSION = 2;
+
+  private final String siteId;
+  private final long created;
+  private final String checkpoint;
+  private final List<Redirect> redirects;
+
+  RedirectSnapshot(String siteId, long created, @Nullable String checkpoint, List<Redirect> redirects) {
+    this.siteId = siteId;
+    this.created = created;
+    this.checkpoint = checkpoint;
+    this.redirects = redirects;
+  }
+
+  public String getSiteId() {
+    return siteId;
+  }
+
+  /**
+   * Returns the time in epoch millis, when the snapshot has been written.
+   */
+  public long getCreated() {
+    return created;
+  }
+
+  /**
+   * Returns the timestamp of the content repository's event timeline, up to which all changes are contained in the
+   * snapshot, see {@link com.tallence.core.redirects.cae.service.RedirectCheckpoint}. {@code null}, if it was not
+   * known when the snapshot was written.
+   */
+  @Nullable
+  public String getCheckpoint() {
+    return checkpoint;
+  }
+
+  public List<Redirect> getRedirects() {
+    return redirects;
+  }
+
+  /**
+   * Returns the index of the redirects. The validity of the targets is computed for the current time.
+   */
+  public SiteRedirects toSiteRedirects() {
+    SiteRedirects.Builder builder = SiteRedirects.builder(siteId);
+    redirects.forEach(builder::add);
+    return builder.build();
+  }
+
+  /**
+   * Writes the given redirects in the snapshot format.
+   */
+  static void write(SiteRedirects redirects, @Nullable String checkpoint, OutputStream stream) throws IOException {
+    List<Redirect> all = new ArrayList<>(redirects.size());
+    redirects.forEachRedirect(all::add);
+    DataOutputStream out = new DataOutputStream(stream);
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    writeString(out, redirects.getSiteId());
+    out.writeLong(System.currentTimeMillis());
+    writeString(out, checkpoint);
+    out.writeInt(all.size());
+    for (Redirect redirect : all) {
+      writeString(out, redirect.getContentId());
+      out.writeByte(redirect.getSourceUrlType().ordinal());
+      writeString(out, redirect.getSource());
+      out.writeByte(redirect.getRedirectType().ordinal());
+      writeString(out, redirect.getTarget() != null ? redirect.getTarget().getId() : null);
+      writeString(out, redirect.getTargetUrl());
+      out.writeInt(redirect.getPriority());
+      out.writeShort(redirect.getStatus().getCode());
+      out.writeLong(redirect.getTargetValidFrom());
+      out.writeLong(redirect.getTargetValidTo());
+      out.writeInt(redirect.getSourceParameters().size());
+      for (RedirectSourceParameter parameter : redirect.getSourceParameters()) {
+        writeString(out, parameter.getName());
+        writeString(out, parameter.getValue());
+        out.writeByte(parameter.getOperator() != null ? parameter.getOperator().ordinal() : -1);
+      }
+      out.writeInt(redirect.getTargetParameters().size());
+      for (RedirectTargetParameter parameter : redirect.getTargetParameters()) {
+        writeString(out, parameter.getName());
+        writeString(out, parameter.getValue());
+      }
+    }
+    out.flush();
+  }
+
+  /**
+   * Reads a snapshot. The targets are resolved lazily by their ids, they are not read.
+   *
+   * @throws IOException if the buffer does not contain a complete snapshot of the current format version
+   */
+  static RedirectSnapshot read(ByteBuffer in, ContentRepository contentRepository) throws IOException {
+    try {
+      if (in.getInt() != MAGIC) {
+        throw new IOException("Not a redirect snapshot");
+      }
+      int formatVersion = in.getInt();
+      if (formatVersion != FORMAT_VERSION) {
+        throw new IOException("Unsupported snapshot format version " + formatVersion);
+      }
+      String siteId = readString(in);
+      long created = in.getLong();
+      String checkpoint = readString(in);
+      int count = in.getInt();
+      if (count < 0 || count > in.remaining()) {
+        throw new IOException("Invalid number of redirects " + count);
+      }
+      List<Redirect> redirects = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        String contentId = readString(in);
+        SourceUrlType sourceUrlType = SourceUrlType.values()[in.get()];
+        String source = readString(in);
+        RedirectType redirectType = RedirectType.values()[in.get()];
+        String targetId = readString(in);
+        Content target = targetId != null ? contentRepository.getContent(targetId) : null;
+        String targetUrl = readString(in);
+        int priority = in.getInt();
+        RedirectStatus status = RedirectStatus.asRedirectStatus(in.getShort());
+        long validFrom = in.getLong();
+        long validTo = in.getLong();
+        List<RedirectSourceParameter> sourceParameters = new ArrayList<>();
+        for (int n = in.getInt(); n > 0; n--) {
+          String name = readString(in);
+          String value = readString(in);
+          byte operator = in.get();
+          sourceParameters.add(new RedirectSourceParameter(name, value,
+                  operator >= 0 ? RedirectSourceParameter.Operator.values()[operator] : null));
+        }
+        List<RedirectTargetParameter> targetParameters = new ArrayList<>();
+        for (int n = in.getInt(); n > 0; n--) {
+          targetParameters.add(new RedirectTargetParameter(readString(in), readString(in)));
+        }
+        redirects.add(Redirect.builder(contentId, sourceUrlType, source, redirectType)
+                .target(target)
+                .targetUrl(targetUrl)
+                .sourceParameters(sourceParameters)
+                .targetParameters(targetParameters)
+                .priority(priority)
+                .status(status != null ? status : RedirectStatus.DEFAULT)
+                .targetValidity(validFrom, validTo)
+                .build());
+      }
+      if (in.hasRemaining()) {
+        throw new IOException("Unexpected data after " + count + " redirects");
+      }
+      return new RedirectSnapshot(siteId, created, checkpoint, redirects);
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IOException("Truncated or corrupt redirect snapshot", e);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = value.getBytes(UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  @Nullable
+  private static String readString(ByteBuffer in) throws IOException {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    // A corrupt length must not allocate more than the snapshot contains
+    if (length > in.remaining()) {
+      throw new IOException("String of " + length + " bytes exceeds the remaining " + in.remaining() + " bytes");
+    }
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+}
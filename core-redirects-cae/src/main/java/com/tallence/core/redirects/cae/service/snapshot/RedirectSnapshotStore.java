@@ -0,0 +1,175 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.snapshot;
+
+import com.coremedia.cap.content.ContentRepository;
+import com.coremedia.cap.multisite.Site;
+import com.tallence.core.redirects.cae.service.RedirectCheckpoint;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import com.tallence.core.redirects.cae.service.purge.RedirectPurgeEvent;
+import com.tallence.core.redirects.cae.service.purge.RedirectPurgeSink;
+import com.tallence.core.redirects.cae.service.util.SiteFileWriter;
+import com.tallence.core.redirects.cae.service.util.SiteTaskDebouncer;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Persists the redirects of every site as a {@link RedirectSnapshot} in a configured directory, so a starting CAE
+ * serves the redirects from the snapshot, while the redirects are read from the content repository in the background.
+ * Disabled, if no directory is configured.
+ *
+ * A site is saved after its redirects changed, like the {@link com.tallence.core.redirects.cae.service.export.EdgeRedirectExporter}
+ * it receives the {@link RedirectPurgeEvent}s for this. The file {@code <site>.snapshot} is replaced atomically and
+ * memory mapped for reading.
+ *
+ * A snapshot records the {@link RedirectCheckpoint}, if no change is pending while it is written. Starting from it, a
+ * CAE replays the later events of the content repository instead of reading all redirects of the site again. A
+ * snapshot with a checkpoint is not replaced by one without, the save is retried until the checkpoint is known.
+ */
+@Service
+public class RedirectSnapshotStore implements RedirectPurgeSink {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RedirectSnapshotStore.class);
+
+  private static final String SUFFIX = ".snapshot";
+
+  private final ContentRepository contentRepository;
+  private final RedirectCheckpoint checkpoint;
+  @Nullable
+  private final SiteFileWriter files;
+  // The ids of the sites, whose snapshot has a checkpoint
+  private final Set<String> checkpointedSites = ConcurrentHashMap.newKeySet();
+  @Nullable
+  private final SiteTaskDebouncer debouncer;
+
+  public RedirectSnapshotStore(ContentRepository contentRepository,
+                               @Qualifier("redirectsCache") ConcurrentMap<Site, SiteRedirects> redirectsCache,
+                               RedirectCheckpoint checkpoint,
+                               @Value("${core.redirects.snapshot.directory:}") String directory,
+                               @Value("${core.redirects.snapshot.delayMillis:5000}") long delayMillis) {
+    this.contentRepository = contentRepository;
+    this.checkpoint = checkpoint;
+    this.files = directory.isBlank() ? null : new SiteFileWriter(redirectsCache, Path.of(directory.trim()));
+    this.debouncer = this.files == null ? null
+            : new SiteTaskDebouncer("redirect-snapshots-%d", delayMillis, this::save);
+  }
+
+  public boolean isEnabled() {
+    return files != null;
+  }
+
+  /**
+   * Schedules saving the site of the event. Several events within the delay result in one save.
+   */
+  @Override
+  public void publish(RedirectPurgeEvent event) {
+    if (debouncer != null) {
+      debouncer.schedule(event.getSiteId());
+    }
+  }
+
+  /**
+   * Saves the current redirects of the site, if they have not been saved yet.
+   *
+   * @return true, if the snapshot has been written
+   */
+  public boolean save(String siteId) {
+    if (files == null) {
+      return false;
+    }
+    // Read before the redirects: changes applied in between are replayed again, which is harmless
+    String currentCheckpoint = checkpoint.get();
+    SiteRedirects redirects = files.findUnwritten(siteId);
+    if (redirects == null) {
+      return false;
+    }
+    if (currentCheckpoint == null && checkpointedSites.contains(siteId)) {
+      // Changes are pending: keep the snapshot with a checkpoint and save again later
+      if (debouncer != null) {
+        debouncer.schedule(siteId);
+      }
+      return false;
+    }
+    Path file = files.getFile(siteId, SUFFIX);
+    try {
+      files.write(file, out -> RedirectSnapshot.write(redirects, currentCheckpoint, out));
+    } catch (IOException e) {
+      LOG.error("Unable to save the redirects snapshot of site {} to {}", siteId, file, e);
+      return false;
+    }
+    if (currentCheckpoint != null) {
+      files.written(siteId, redirects.getVersion());
+      checkpointedSites.add(siteId);
+    } else if (debouncer != null) {
+      // Changes are pending, save again with a checkpoint later
+      debouncer.schedule(siteId);
+    }
+    LOG.debug("Saved {} redirects of site {} to {} at checkpoint {}", redirects.size(), siteId, file, currentCheckpoint);
+    return true;
+  }
+
+  /**
+   * Loads the snapshot of the site, or returns {@code null}, if there is none or it cannot be read.
+   */
+  @Nullable
+  public RedirectSnapshot load(String siteId) {
+    if (files == null) {
+      return null;
+    }
+    Path file = files.getFile(siteId, SUFFIX);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      RedirectSnapshot snapshot = RedirectSnapshot.read(buffer, contentRepository);
+      if (!siteId.equals(snapshot.getSiteId())) {
+        LOG.warn("Ignoring redirects snapshot {} of another site {}", file, snapshot.getSiteId());
+        return null;
+      }
+      if (snapshot.getCheckpoint() != null) {
+        checkpointedSites.add(siteId);
+      }
+      LOG.info("Loaded {} redirects of site {} from the snapshot {}", snapshot.getRedirects().size(), siteId, file);
+      return snapshot;
+    } catch (NoSuchFileException e) {
+      LOG.debug("No redirects snapshot {} for site {}", file, siteId);
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Unable to load the redirects snapshot {} of site {}, the redirects are read from the repository",
+              file, siteId, e);
+    }
+    return null;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (debouncer != null) {
+      debouncer.shutdown();
+    }
+  }
+}
@@ -18,12 +18,14 @@ package com.tallence.core.redirects.cae.service.tasks;
 import com.coremedia.cap.content.Content;
 import com.coremedia.cap.multisite.Site;
 import com.tallence.core.redirects.cae.service.SiteRedirects;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 
 import static com.tallence.core.redirects.cae.model.Redirect.*;
 
@@ -34,12 +36,41 @@ abstract class AbstractTask implements Runnable {
 
   private static final Logger LOG = LoggerFactory.getLogger(AbstractTask.class);
 
-  final Map<Site, SiteRedirects> redirectsMap;
+  // The values are immutable snapshots, they are replaced atomically with ConcurrentMap#computeIfPresent.
+  final ConcurrentMap<Site, SiteRedirects> redirectsMap;
 
-  AbstractTask(Map<Site, SiteRedirects> redirectsMap) {
+  AbstractTask(ConcurrentMap<Site, SiteRedirects> redirectsMap) {
     this.redirectsMap = redirectsMap;
   }
 
+  /**
+   * Applies the changes to the redirects of the site. The next snapshot is built outside of the lock of the map and
+   * only swapped in, if the redirects have not been replaced meanwhile. Otherwise, it is built again from the current
+   * ones.
+   *
+   * @return the redirects of the site after the changes or {@code null}, if the site is not in the map.
+   */
+  @Nullable
+  SiteRedirects apply(Site site, Consumer<SiteRedirects.Editor> changes) {
+    while (true) {
+      SiteRedirects base = redirectsMap.get(site);
+      if (base == null) {
+        return null;
+      }
+      SiteRedirects.Editor editor = base.edit();
+      changes.accept(editor);
+      SiteRedirects result = editor.build();
+      if (result == base) {
+        return base;
+      }
+      // Compared by identity: an equal snapshot might still be another version
+      SiteRedirects current = redirectsMap.computeIfPresent(site, (s, redirects) -> redirects == base ? result : redirects);
+      if (current == result || current == null) {
+        return current;
+      }
+    }
+  }
+
   String getRootSegment(Site site) {
     return Optional.ofNullable(site.getSiteRootDocument())
             .map(r -> "/" + r.getString("segment"))
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.tasks;
+
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.content.ContentRepository;
+import com.coremedia.cap.multisite.Site;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Applies the changes of many redirects of a site at once: the contents are prefetched with one server call, the
+ * changes are applied to one editor and the redirects of the site are replaced with the result in one atomic step.
+ */
+public class BatchUpdateTask extends AbstractTask {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BatchUpdateTask.class);
+
+  private final ContentRepository contentRepository;
+  private final Site targetSite;
+  private final List<? extends DocumentTask> tasks;
+  private final List<DocumentTask> appliedTasks = new ArrayList<>();
+
+  public BatchUpdateTask(ConcurrentMap<Site, SiteRedirects> redirectsMap, ContentRepository contentRepository,
+                         Site targetSite, List<? extends DocumentTask> tasks) {
+    super(redirectsMap);
+    this.contentRepository = contentRepository;
+    this.targetSite = targetSite;
+    this.tasks = tasks;
+  }
+
+  @Override
+  public void run() {
+    List<Content> contents = tasks.stream()
+            .map(DocumentTask::getContent)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    if (contents.size() > 1) {
+      contentRepository.prefetch(contents);
+    }
+
+    List<Consumer<SiteRedirects.Editor>> changes = new ArrayList<>(tasks.size());
+    List<DocumentTask> changingTasks = new ArrayList<>(tasks.size());
+    for (DocumentTask task : tasks) {
+      try {
+        Consumer<SiteRedirects.Editor> change = task.prepare();
+        if (change != null) {
+          changes.add(change);
+          changingTasks.add(task);
+        }
+      } catch (RuntimeException e) {
+        LOG.error("Unable to read redirect {}, skipping it", task.getContentId(), e);
+      }
+    }
+
+    if (!changes.isEmpty() && apply(targetSite, editor -> changes.forEach(change -> change.accept(editor))) != null) {
+      appliedTasks.addAll(changingTasks);
+    }
+    LOG.debug("Applied {} of {} redirect changes to site {}", appliedTasks.size(), tasks.size(), targetSite);
+  }
+
+  /**
+   * Returns the tasks, whose changes have been applied by {@link #run()}: tasks, whose content could not be read or
+   * which had nothing to change, and all tasks of a site, which has been removed meanwhile, are missing.
+   */
+  public List<DocumentTask> getAppliedTasks() {
+    return appliedTasks;
+  }
+}
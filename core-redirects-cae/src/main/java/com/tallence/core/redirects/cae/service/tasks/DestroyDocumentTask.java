@@ -20,30 +20,32 @@ import com.tallence.core.redirects.cae.service.SiteRedirects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 
 /**
  * Removes destroyed Redirects from the cache.
  */
-public class DestroyDocumentTask extends AbstractTask {
+public class DestroyDocumentTask extends DocumentTask {
 
   private static final Logger LOG = LoggerFactory.getLogger(DestroyDocumentTask.class);
 
   private String targetDocId;
-  private Site targetSite;
 
-  public DestroyDocumentTask(Map<Site, SiteRedirects> redirectsMap, Site targetSite, String targetDocId) {
-    super(redirectsMap);
+  public DestroyDocumentTask(ConcurrentMap<Site, SiteRedirects> redirectsMap, Site targetSite, String targetDocId) {
+    super(redirectsMap, targetSite);
     this.targetDocId = targetDocId;
-    this.targetSite = targetSite;
   }
 
   @Override
-  public void run() {
+  public String getContentId() {
+    return targetDocId;
+  }
 
-    SiteRedirects siteRedirects = redirectsMap.get(targetSite);
-    siteRedirects.removeRedirect(targetDocId);
-    LOG.info("Removed {} from redirect cache of site {}", targetDocId, targetSite);
+  @Override
+  Consumer<SiteRedirects.Editor> prepare() {
+    LOG.info("Removing {} from redirect cache of site {}", targetDocId, targetSite);
+    return editor -> editor.remove(targetDocId);
   }
 
 }
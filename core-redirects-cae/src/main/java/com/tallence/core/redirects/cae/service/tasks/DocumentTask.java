@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.tasks;
+
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.multisite.Site;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * A change of a single redirect of a site. The change is prepared from the content first and applied to the redirects
+ * of the site afterwards, so a {@link BatchUpdateTask} can prefetch the contents of many changes and apply them at
+ * once.
+ */
+public abstract class DocumentTask extends AbstractTask {
+
+  final Site targetSite;
+
+  DocumentTask(ConcurrentMap<Site, SiteRedirects> redirectsMap, Site targetSite) {
+    super(redirectsMap);
+    this.targetSite = targetSite;
+  }
+
+  /**
+   * Returns the id of the changed redirect.
+   */
+  public abstract String getContentId();
+
+  /**
+   * Returns the content read by {@link #prepare()}, or {@code null}, if the change needs none.
+   */
+  @Nullable
+  public Content getContent() {
+    return null;
+  }
+
+  /**
+   * Reads the content and returns the change to be applied to the redirects of the site or {@code null}, if there is
+   * nothing to change. The change might be applied more than once, to different snapshots.
+   */
+  @Nullable
+  abstract Consumer<SiteRedirects.Editor> prepare();
+
+  @Override
+  public void run() {
+    Consumer<SiteRedirects.Editor> change = prepare();
+    if (change != null) {
+      apply(targetSite, change);
+    }
+  }
+}
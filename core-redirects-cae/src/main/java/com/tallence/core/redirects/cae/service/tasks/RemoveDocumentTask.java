@@ -17,38 +17,44 @@ package com.tallence.core.redirects.cae.service.tasks;
 
 import com.coremedia.cap.content.Content;
 import com.coremedia.cap.multisite.Site;
-import com.tallence.core.redirects.cae.model.Redirect;
 import com.tallence.core.redirects.cae.service.SiteRedirects;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 
 /**
  * Removes deleted Redirects from the cache.
  */
-public class RemoveDocumentTask extends AbstractTask {
+public class RemoveDocumentTask extends DocumentTask {
 
   private static final Logger LOG = LoggerFactory.getLogger(RemoveDocumentTask.class);
 
   private Content targetDoc;
-  private Site targetSite;
 
-  public RemoveDocumentTask(Map<Site, SiteRedirects> redirectsMap, Site targetSite, Content targetDoc) {
-    super(redirectsMap);
+  public RemoveDocumentTask(ConcurrentMap<Site, SiteRedirects> redirectsMap, Site targetSite, Content targetDoc) {
+    super(redirectsMap, targetSite);
     this.targetDoc = targetDoc;
-    this.targetSite = targetSite;
   }
 
   @Override
-  public void run() {
+  public String getContentId() {
+    return targetDoc.getId();
+  }
+
+  @Override
+  @Nullable
+  Consumer<SiteRedirects.Editor> prepare() {
     String rootSegment = getRootSegment(targetSite);
     if (rootSegment != null) {
-      Redirect redirect = new Redirect(targetDoc, rootSegment);
-      SiteRedirects siteRedirects = redirectsMap.get(targetSite);
-      siteRedirects.removeRedirect(redirect);
-      LOG.info("Removed {} from redirect cache of site {}", targetDoc, targetSite);
+      // The redirect is identified by its id, the deleted content does not need to be read
+      String id = targetDoc.getId();
+      LOG.info("Removing {} from redirect cache of site {}", targetDoc, targetSite);
+      return editor -> editor.remove(id);
     }
+    return null;
   }
 
 }
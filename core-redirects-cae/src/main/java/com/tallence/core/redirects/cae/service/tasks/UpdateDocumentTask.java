@@ -19,34 +19,46 @@ import com.coremedia.cap.content.Content;
 import com.coremedia.cap.multisite.Site;
 import com.tallence.core.redirects.cae.model.Redirect;
 import com.tallence.core.redirects.cae.service.SiteRedirects;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 
 /**
  * This tasks adds a redirect to the
  */
-public class UpdateDocumentTask extends AbstractTask {
+public class UpdateDocumentTask extends DocumentTask {
 
   private static final Logger LOG = LoggerFactory.getLogger(UpdateDocumentTask.class);
 
   private Content targetDoc;
-  private Site targetSite;
 
-  public UpdateDocumentTask(Map<Site, SiteRedirects> redirectsMap, Site targetSite, Content targetDoc) {
-    super(redirectsMap);
+  public UpdateDocumentTask(ConcurrentMap<Site, SiteRedirects> redirectsMap, Site targetSite, Content targetDoc) {
+    super(redirectsMap, targetSite);
     this.targetDoc = targetDoc;
-    this.targetSite = targetSite;
   }
 
   @Override
-  public void run() {
+  public String getContentId() {
+    return targetDoc.getId();
+  }
+
+  @Override
+  public Content getContent() {
+    return targetDoc;
+  }
+
+  @Override
+  @Nullable
+  Consumer<SiteRedirects.Editor> prepare() {
     String rootSegment = getRootSegment(targetSite);
     if (rootSegment != null && validate(targetDoc)) {
       Redirect redirect = new Redirect(targetDoc, rootSegment);
-      redirectsMap.get(targetSite).addRedirect(redirect);
-      LOG.debug("Added redirect {} to site {}", redirect, targetSite);
+      LOG.debug("Adding redirect {} to site {}", redirect, targetSite);
+      return editor -> editor.add(redirect);
     }
+    return null;
   }
 }
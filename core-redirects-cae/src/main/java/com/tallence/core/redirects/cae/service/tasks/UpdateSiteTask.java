@@ -20,7 +20,6 @@ import com.coremedia.cap.content.ContentRepository;
 import com.coremedia.cap.multisite.Site;
 import com.tallence.core.redirects.cae.model.Redirect;
 import com.tallence.core.redirects.cae.service.SiteRedirects;
-import com.tallence.core.redirects.cae.service.util.PausableThreadPoolExecutorService;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,8 +27,8 @@ import org.slf4j.LoggerFactory;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 public class UpdateSiteTask extends AbstractTask {
@@ -42,14 +41,12 @@ public class UpdateSiteTask extends AbstractTask {
   private final ContentRepository contentRepository;
   private final String redirectsPath;
   private final Site site;
-  private final PausableThreadPoolExecutorService executorService;
 
-  public UpdateSiteTask(Map<Site, SiteRedirects> redirectsMap, ContentRepository contentRepository, String redirectsPath, Site targetSite, PausableThreadPoolExecutorService executorService) {
+  public UpdateSiteTask(ConcurrentMap<Site, SiteRedirects> redirectsMap, ContentRepository contentRepository, String redirectsPath, Site targetSite) {
     super(redirectsMap);
     this.contentRepository = contentRepository;
     this.redirectsPath = redirectsPath;
     this.site = targetSite;
-    this.executorService = executorService;
   }
 
   @Override
@@ -72,16 +69,14 @@ public class UpdateSiteTask extends AbstractTask {
     List<Redirect> redirectEntries = mapToRedirects(redirectContents, site);
 
     // Add redirects to model
-    final SiteRedirects result = new SiteRedirects(site.getId());
-    redirectEntries.forEach(result::addRedirect);
+    final SiteRedirects.Builder builder = SiteRedirects.builder(site.getId());
+    redirectEntries.forEach(builder::add);
+    final SiteRedirects result = builder.build();
 
     LOG.debug("Finished loading [{}] static and [{}] dynamic redirects for folder [{}]",
             result.getPlainRedirects().size(), result.getPatternRedirects().size(), redirectsFolder.getPath());
 
     redirectsMap.put(site, result);
-
-    // Unpause the regular updates
-    executorService.resume();
   }
 
   /**
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Collects items per key into batches and passes them to a consumer on an {@link Executor}. A batch is passed, once
+ * the delay after its first item has passed or it has reached the maximum size, whatever comes first. The batches of
+ * a key are passed one at a time and in order, see {@link KeyedTaskExecutor}.
+ *
+ * An item replaces a waiting item of the batch with the same item key: only the latest item is passed.
+ *
+ * The items of a key can be paused: they are buffered, until the key is resumed. Then they are passed or discarded.
+ * The other keys are not affected.
+ */
+public class KeyedBatchExecutor<K, T> {
+
+  private final KeyedTaskExecutor<K> executor;
+  private final ScheduledExecutorService timer;
+  private final int maxSize;
+  private final long delayMillis;
+  private final Function<T, ?> itemKey;
+  private final BiConsumer<K, List<T>> consumer;
+  // The waiting items per key, guarded by itself
+  private final Map<K, Batch<T>> batches = new HashMap<>();
+  private int waitingItems = 0;
+  private final LongAdder coalescedItems = new LongAdder();
+
+  /**
+   * @param executor the executor running the consumer
+   * @param timer the executor passing the batches after the delay
+   * @param maxSize the maximum number of items per batch
+   * @param delayMillis the maximum delay of an item, 0 to pass it at once
+   * @param itemKey the key of an item within its batch
+   * @param consumer the consumer of the batches, called with their key
+   */
+  public KeyedBatchExecutor(Executor executor, ScheduledExecutorService timer, int maxSize, long delayMillis,
+                            Function<T, ?> itemKey, BiConsumer<K, List<T>> consumer) {
+    this.executor = new KeyedTaskExecutor<>(executor);
+    this.timer = timer;
+    this.maxSize = Math.max(1, maxSize);
+    this.delayMillis = delayMillis;
+    this.itemKey = itemKey;
+    this.consumer = consumer;
+  }
+
+  /**
+   * Adds the item to the batch of the key.
+   *
+   * @return false, if the item replaced a waiting item, which will not be passed
+   */
+  public boolean submit(K key, T item) {
+    boolean added;
+    boolean dispatch = false;
+    synchronized (batches) {
+      Batch<T> batch = batches.computeIfAbsent(key, k -> new Batch<>());
+      Entry<T> entry = batch.items.get(itemKey.apply(item));
+      added = entry == null;
+      if (added) {
+        batch.items.put(itemKey.apply(item), new Entry<>(item));
+        waitingItems++;
+      } else {
+        // Keeps the time of the first item for the lag
+        entry.item = item;
+        entry.submitted = System.nanoTime();
+        coalescedItems.increment();
+      }
+      if (batch.paused) {
+        return added;
+      }
+      if (!batch.scheduled) {
+        batch.scheduled = true;
+        if (delayMillis > 0 && batch.items.size() < maxSize) {
+          timer.schedule(() -> dispatch(key), delayMillis, TimeUnit.MILLISECONDS);
+        } else {
+          dispatch = true;
+        }
+      } else if (batch.items.size() >= maxSize) {
+        dispatch = true;
+      }
+    }
+    if (dispatch) {
+      dispatch(key);
+    }
+    return added;
+  }
+
+  /**
+   * Buffers the items of the key, until it is resumed. A batch being passed already is not affected.
+   */
+  public void pause(K key) {
+    synchronized (batches) {
+      batches.computeIfAbsent(key, k -> new Batch<>()).paused = true;
+    }
+  }
+
+  /**
+   * Passes the buffered items of the key and the following ones again.
+   */
+  public void resume(K key) {
+    resume(key, entry -> false);
+  }
+
+  /**
+   * Passes the buffered items of the key and the following ones again. The items submitted the last time before the
+   * given {@link System#nanoTime()} are discarded.
+   *
+   * @return the discarded items
+   */
+  public List<T> resume(K key, long discardBefore) {
+    return resume(key, entry -> entry.submitted - discardBefore < 0);
+  }
+
+  private List<T> resume(K key, Predicate<Entry<T>> discard) {
+    List<T> discarded = new ArrayList<>();
+    synchronized (batches) {
+      Batch<T> batch = batches.get(key);
+      if (batch == null || !batch.paused) {
+        return discarded;
+      }
+      batch.paused = false;
+      Iterator<Entry<T>> iterator = batch.items.values().iterator();
+      while (iterator.hasNext()) {
+        Entry<T> entry = iterator.next();
+        if (discard.test(entry)) {
+          discarded.add(entry.item);
+          iterator.remove();
+        }
+      }
+      waitingItems -= discarded.size();
+      if (batch.items.isEmpty()) {
+        batches.remove(key);
+        return discarded;
+      }
+      batch.scheduled = true;
+    }
+    dispatch(key);
+    return discarded;
+  }
+
+  /**
+   * Returns the time in milliseconds, for which the oldest waiting item of each key with waiting items is waiting.
+   */
+  public Map<K, Long> getLagMillis() {
+    long now = System.nanoTime();
+    Map<K, Long> result = new HashMap<>();
+    synchronized (batches) {
+      batches.forEach((key, batch) -> batch.items.values().stream().findFirst()
+              .ifPresent(oldest -> result.put(key, TimeUnit.NANOSECONDS.toMillis(now - oldest.first))));
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * Returns the number of items waiting to be passed.
+   */
+  public int getQueueDepth() {
+    synchronized (batches) {
+      return waitingItems;
+    }
+  }
+
+  /**
+   * Returns the number of items, which have been replaced by a later item with the same item key.
+   */
+  public long getCoalescedItems() {
+    return coalescedItems.sum();
+  }
+
+  private void dispatch(K key) {
+    executor.execute(key, () -> drain(key));
+  }
+
+  /**
+   * Passes the next batch of the key to the consumer.
+   */
+  private void drain(K key) {
+    List<T> items = new ArrayList<>();
+    boolean more;
+    synchronized (batches) {
+      Batch<T> batch = batches.get(key);
+      if (batch == null) {
+        return;
+      }
+      if (batch.paused) {
+        // Dispatched again on resume
+        batch.scheduled = false;
+        return;
+      }
+      Iterator<Entry<T>> iterator = batch.items.values().iterator();
+      while (iterator.hasNext() && items.size() < maxSize) {
+        items.add(iterator.next().item);
+        iterator.remove();
+      }
+      waitingItems -= items.size();
+      more = !batch.items.isEmpty();
+      if (!more) {
+        batches.remove(key);
+      }
+    }
+    if (more) {
+      // Runs after this batch
+      dispatch(key);
+    }
+    if (!items.isEmpty()) {
+      consumer.accept(key, items);
+    }
+  }
+
+  /**
+   * The waiting items of a key.
+   */
+  private static final class Batch<T> {
+
+    private final Map<Object, Entry<T>> items = new LinkedHashMap<>();
+    // Whether the batch will be passed
+    private boolean scheduled = false;
+    private boolean paused = false;
+  }
+
+  /**
+   * A waiting item with the {@link System#nanoTime()} of its first and last submission.
+   */
+  private static final class Entry<T> {
+
+    private T item;
+    private final long first;
+    private long submitted;
+
+    Entry(T item) {
+      this.item = item;
+      this.first = System.nanoTime();
+      this.submitted = first;
+    }
+  }
+}
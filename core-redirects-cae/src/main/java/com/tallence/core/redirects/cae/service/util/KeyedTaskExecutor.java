@@ -0,0 +1,176 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs tasks on an {@link Executor}, one task per key at a time and in the order of their submission. A task
+ * submitted for a key, which has a task waiting already, replaces the waiting one: only the latest task of a burst is
+ * run. So the tasks must be idempotent and the latest one must supersede the earlier ones, like tasks reading the
+ * current state of a content.
+ *
+ * Tasks of different keys run in parallel on the threads of the executor.
+ */
+public class KeyedTaskExecutor<K> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(KeyedTaskExecutor.class);
+
+  private final Executor executor;
+  // The keys with a running or waiting task, guarded by itself
+  private final Map<K, Slot> slots = new HashMap<>();
+  private int waitingTasks = 0;
+  private final LongAdder coalescedTasks = new LongAdder();
+
+  public KeyedTaskExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Submits the task for the key.
+   *
+   * @return false, if the task replaced a waiting task of the key, which will not be run
+   * @throws RejectedExecutionException if the executor rejects the task. The task will not be run, unless it has been
+   *                                    replaced by a later task meanwhile: the later one is not run then.
+   */
+  public boolean execute(K key, Runnable task) {
+    Slot slot;
+    synchronized (slots) {
+      slot = slots.get(key);
+      if (slot != null) {
+        boolean coalesced = slot.waiting != null;
+        if (coalesced) {
+          coalescedTasks.increment();
+        } else {
+          // The running task of the key will run this one afterwards
+          waitingTasks++;
+        }
+        slot.waiting = task;
+        return !coalesced;
+      }
+      slot = new Slot(task);
+      slots.put(key, slot);
+      waitingTasks++;
+    }
+    Slot submitted = slot;
+    Runnable rejected = task;
+    while (true) {
+      try {
+        executor.execute(() -> drain(key, submitted));
+        return true;
+      } catch (RejectedExecutionException e) {
+        synchronized (slots) {
+          if (submitted.waiting == rejected) {
+            // Not started yet: only the rejected task is waiting
+            slots.remove(key);
+            waitingTasks--;
+            throw e;
+          }
+          // A later task replaced the rejected one meanwhile, it must not be dropped silently
+          rejected = submitted.waiting;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of tasks waiting to be run.
+   */
+  public int getQueueDepth() {
+    synchronized (slots) {
+      return waitingTasks;
+    }
+  }
+
+  /**
+   * Returns the number of tasks, which have been replaced by a later task of their key.
+   */
+  public long getCoalescedTasks() {
+    return coalescedTasks.sum();
+  }
+
+  /**
+   * Runs the tasks of the key, until none is waiting anymore.
+   */
+  private void drain(K key, Slot slot) {
+    boolean drained = false;
+    try {
+      while (true) {
+        Runnable task;
+        synchronized (slots) {
+          task = slot.waiting;
+          if (task == null) {
+            slots.remove(key);
+            drained = true;
+            return;
+          }
+          slot.waiting = null;
+          waitingTasks--;
+        }
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          LOG.error("Task for {} failed", key, e);
+        }
+      }
+    } finally {
+      if (!drained) {
+        // Aborted by an Error: the slot must not block the key forever
+        release(key, slot);
+      }
+    }
+  }
+
+  /**
+   * Releases the slot of an aborted drain. A task waiting in the slot is run by a new drain.
+   */
+  private void release(K key, Slot slot) {
+    synchronized (slots) {
+      if (slot.waiting == null) {
+        slots.remove(key);
+        return;
+      }
+    }
+    try {
+      executor.execute(() -> drain(key, slot));
+    } catch (RejectedExecutionException e) {
+      synchronized (slots) {
+        slots.remove(key);
+        waitingTasks -= slot.waiting != null ? 1 : 0;
+      }
+      LOG.error("Unable to run the waiting task for {}, dropping it", key, e);
+    }
+  }
+
+  /**
+   * The task of a key waiting to be run.
+   */
+  private static final class Slot {
+
+    private Runnable waiting;
+
+    Slot(Runnable waiting) {
+      this.waiting = waiting;
+    }
+  }
+}
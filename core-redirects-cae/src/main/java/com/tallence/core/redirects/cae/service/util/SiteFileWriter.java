@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.util;
+
+import com.coremedia.cap.multisite.Site;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes files derived from the {@link SiteRedirects} of a site into a directory, like the edge exports or the
+ * snapshots. Remembers the version of the redirects written last per site, so an unchanged site is not written again.
+ * Each file is replaced atomically: readers see either the old or the new content.
+ */
+public class SiteFileWriter {
+
+  /**
+   * Writes the content of a file.
+   */
+  @FunctionalInterface
+  public interface Content {
+    void writeTo(OutputStream out) throws IOException;
+  }
+
+  private final ConcurrentMap<Site, SiteRedirects> redirectsCache;
+  private final Path directory;
+  // The version of the last written redirects per site id
+  private final Map<String, Long> writtenVersions = new ConcurrentHashMap<>();
+
+  public SiteFileWriter(ConcurrentMap<Site, SiteRedirects> redirectsCache, Path directory) {
+    this.redirectsCache = redirectsCache;
+    this.directory = directory;
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Returns the current redirects of the site or {@code null}, if there are none or they have been written already.
+   */
+  @Nullable
+  public SiteRedirects findUnwritten(String siteId) {
+    SiteRedirects redirects = redirectsCache.values().stream()
+            .filter(r -> siteId.equals(r.getSiteId()))
+            .findFirst()
+            .orElse(null);
+    if (redirects == null || Long.valueOf(redirects.getVersion()).equals(writtenVersions.get(siteId))) {
+      return null;
+    }
+    return redirects;
+  }
+
+  /**
+   * Remembers, that the redirects of the site have been written in the given version.
+   */
+  public void written(String siteId, long version) {
+    writtenVersions.put(siteId, version);
+  }
+
+  /**
+   * Returns the file of the site with the given suffix. See {@link #toFileName(String)}.
+   */
+  public Path getFile(String siteId, String suffix) {
+    return directory.resolve(toFileName(siteId) + suffix);
+  }
+
+  /**
+   * Writes the file via a temporary file in the directory, which is created if needed.
+   */
+  public void write(Path file, Content content) throws IOException {
+    Files.createDirectories(directory);
+    Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+        content.writeTo(out);
+      }
+      try {
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Returns the site id with all characters but letters, digits, '-' and '_' replaced by '_'.
+   */
+  public static String toFileName(String siteId) {
+    return siteId.replaceAll("[^A-Za-z0-9_-]", "_");
+  }
+}
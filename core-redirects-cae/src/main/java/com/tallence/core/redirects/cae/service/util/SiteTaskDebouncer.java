@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.cae.service.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs a task per site after a delay, on a single daemon thread. Further requests for the same site within the delay
+ * are coalesced into the pending run.
+ */
+public class SiteTaskDebouncer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SiteTaskDebouncer.class);
+
+  private final ScheduledExecutorService executor;
+  private final long delayMillis;
+  private final Consumer<String> task;
+  // The ids of the sites with a pending run
+  private final Set<String> pendingSites = ConcurrentHashMap.newKeySet();
+
+  /**
+   * @param threadName the name of the thread
+   * @param delayMillis the delay of a run after the first request
+   * @param task the task, called with the site id
+   */
+  public SiteTaskDebouncer(String threadName, long delayMillis, Consumer<String> task) {
+    this.executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat(threadName).setDaemon(true).build());
+    this.delayMillis = delayMillis;
+    this.task = task;
+  }
+
+  /**
+   * Schedules a run for the site, if none is pending.
+   */
+  public void schedule(String siteId) {
+    if (pendingSites.add(siteId)) {
+      executor.schedule(() -> {
+        pendingSites.remove(siteId);
+        try {
+          task.accept(siteId);
+        } catch (RuntimeException e) {
+          LOG.error("Task for site {} failed", siteId, e);
+        }
+      }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,74 @@
+package com.tallence.core.redirects.cae.filter;
+
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.model.RedirectType;
+import com.tallence.core.redirects.model.SourceUrlType;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the {@link NotFoundMemo}.
+ */
+public class NotFoundMemoTest {
+
+  private final NotFoundMemo memo = new NotFoundMemo(100, 60);
+
+  @Test
+  public void testRequestRemembered() {
+    Redirect redirect = redirect();
+    memo.add(redirect, request("/site/old", null));
+
+    assertTrue(memo.contains(redirect, request("/site/old", null)));
+    assertFalse(memo.contains(redirect, request("/site/old", "page=2")));
+    assertFalse(memo.contains(redirect, request("/site/other", null)));
+    // An updated redirect is another instance
+    assertFalse(memo.contains(redirect(), request("/site/old", null)));
+  }
+
+  @Test
+  public void testInvalidate() {
+    Redirect redirect = redirect();
+    memo.add(redirect, request("/site/old", null));
+    memo.invalidate();
+
+    assertFalse(memo.contains(redirect, request("/site/old", null)));
+  }
+
+  @Test
+  public void testInvalidateSite() {
+    Redirect redirect = redirect();
+    memo.add(redirect, request("/site/old", null));
+    memo.add(redirect, request("/Site", null));
+    memo.add(redirect, request("/site-2/old", null));
+    memo.invalidateSite("site");
+
+    assertFalse(memo.contains(redirect, request("/site/old", null)));
+    assertFalse(memo.contains(redirect, request("/Site", null)));
+    assertTrue(memo.contains(redirect, request("/site-2/old", null)));
+  }
+
+  @Test
+  public void testDisabled() {
+    NotFoundMemo disabled = new NotFoundMemo(0, 60);
+    Redirect redirect = redirect();
+    disabled.add(redirect, request("/site/old", null));
+
+    assertFalse(disabled.contains(redirect, request("/site/old", null)));
+  }
+
+  private static Redirect redirect() {
+    return Redirect.builder("coremedia://cap/content/1312", SourceUrlType.REGEX, "/site/.*", RedirectType.AFTER_NOT_FOUND)
+            .targetUrl("https://example.org").build();
+  }
+
+  private static HttpServletRequest request(String path, String query) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getPathInfo()).thenReturn(path);
+    when(request.getQueryString()).thenReturn(query);
+    return request;
+  }
+}
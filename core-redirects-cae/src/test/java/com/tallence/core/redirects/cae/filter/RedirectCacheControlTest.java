@@ -0,0 +1,62 @@
+package com.tallence.core.redirects.cae.filter;
+
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.model.RedirectStatus;
+import com.tallence.core.redirects.model.RedirectType;
+import com.tallence.core.redirects.model.SourceUrlType;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test for the {@link RedirectCacheControl}.
+ */
+public class RedirectCacheControlTest {
+
+  @Test
+  public void testPolicy() {
+    RedirectCacheControl testling = new RedirectCacheControl(" Max-Age=3600 ,s-maxage = 86400,stale-while-revalidate=60",
+            "", "max-age=0", null);
+
+    assertEquals("max-age=3600, s-maxage=86400, stale-while-revalidate=60",
+            testling.getPolicy(RedirectStatus.MOVED_PERMANENTLY));
+    assertNull(testling.getPolicy(RedirectStatus.FOUND));
+    assertEquals("max-age=0", testling.getPolicy(RedirectStatus.TEMPORARY_REDIRECT));
+    assertNull(testling.getPolicy(RedirectStatus.PERMANENT_REDIRECT));
+  }
+
+  @Test(expected = RedirectConfigurationException.class)
+  public void testUnknownDirective() {
+    new RedirectCacheControl("public, max-age=3600", "", "", "");
+  }
+
+  @Test(expected = RedirectConfigurationException.class)
+  public void testInvalidValue() {
+    new RedirectCacheControl("max-age=1h", "", "", "");
+  }
+
+  @Test
+  public void testApply() {
+    RedirectCacheControl testling = new RedirectCacheControl("max-age=3600", "", "", "");
+
+    MockHttpServletResponse cached = new MockHttpServletResponse();
+    testling.apply(createRedirect(RedirectStatus.MOVED_PERMANENTLY), cached);
+    assertEquals("max-age=3600", cached.getHeader("Cache-Control"));
+    assertNull(cached.getHeader("Pragma"));
+    assertEquals("redirect-1234 redirects-channela", cached.getHeader("Surrogate-Key"));
+    assertEquals("redirect-1234,redirects-channela", cached.getHeader("Cache-Tag"));
+
+    MockHttpServletResponse notCached = new MockHttpServletResponse();
+    testling.apply(createRedirect(RedirectStatus.FOUND), notCached);
+    assertEquals(RedirectCacheControl.NO_CACHE, notCached.getHeader("Cache-Control"));
+    assertEquals("no-cache", notCached.getHeader("Pragma"));
+    assertNull(notCached.getHeader("Surrogate-Key"));
+  }
+
+  private static Redirect createRedirect(RedirectStatus status) {
+    return Redirect.builder("coremedia:///cap/content/1234", SourceUrlType.PLAIN, "/channela/campaign", RedirectType.ALWAYS)
+            .targetUrl("https://example.org/").status(status).build();
+  }
+}
@@ -15,11 +15,15 @@
  */
 package com.tallence.core.redirects.cae.filter;
 
+import com.coremedia.objectserver.beans.ContentBeanFactory;
+import com.coremedia.objectserver.web.links.LinkFormatter;
 import com.tallence.core.redirects.cae.AbstractRedirectsTest;
+import org.junit.Before;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockServletContext;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
@@ -30,16 +34,37 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class RedirectFilterTest extends AbstractRedirectsTest {
 
   @Autowired
   private RedirectFilter testling;
 
+  @Autowired
+  private NotFoundMemo notFoundMemo;
+
+  @Autowired
+  private ContentBeanFactory contentBeanFactory;
+
+  @Autowired
+  private LinkFormatter linkFormatter;
+
+  @Autowired
+  private RedirectMatchingService redirectMatchingService;
+
+  @Before
+  public void setUp() {
+    // The same paths are rendered as 404 and as 200 by the different tests
+    notFoundMemo.invalidate();
+  }
+
   @Test
   public void testRedirect() throws Exception {
     MockServletContext servletContext = new MockServletContext();
@@ -121,6 +146,85 @@ public class RedirectFilterTest extends AbstractRedirectsTest {
     assertThat(response.getHeader(HttpHeaders.LOCATION), anyOf(is("/context/servlet" + expectedUrl), is(expectedUrl)));
   }
 
+  @Test
+  public void testCachedLocation() throws Exception {
+    MockServletContext servletContext = new MockServletContext();
+    FilterChain filterChain = new MockFilterChain(getOkServlet());
+
+    HttpServletResponse first = new MockHttpServletResponse();
+    testling.doFilter(createRequest("/channela/redirect-test").buildRequest(servletContext), first, filterChain);
+    long hits = testling.getLocationCacheStats().hitCount();
+
+    HttpServletResponse second = new MockHttpServletResponse();
+    testling.doFilter(createRequest("/channela/redirect-test").buildRequest(servletContext), second, new MockFilterChain(getOkServlet()));
+    assertEquals(hits + 1, testling.getLocationCacheStats().hitCount());
+    assertEquals(first.getHeader(HttpHeaders.LOCATION), second.getHeader(HttpHeaders.LOCATION));
+
+    // The request parameters are still merged into the cached location
+    HttpServletResponse withParams = new MockHttpServletResponse();
+    testling.doFilter(createRequest("/channela/redirect-test").param("param1", "testValue1").buildRequest(servletContext),
+            withParams, new MockFilterChain(getOkServlet()));
+    assertEquals(first.getHeader(HttpHeaders.LOCATION) + "?param1=testValue1", withParams.getHeader(HttpHeaders.LOCATION));
+  }
+
+  @Test
+  public void testNotFoundMemo() throws Exception {
+    MockServletContext servletContext = new MockServletContext();
+    AtomicInteger renderings = new AtomicInteger();
+    Servlet notFoundServlet = new ResponseOnlyServlet(HttpServletResponse.SC_NOT_FOUND) {
+      @Override
+      public void service(ServletRequest servletRequest, ServletResponse servletResponse) {
+        renderings.incrementAndGet();
+        super.service(servletRequest, servletResponse);
+      }
+    };
+
+    HttpServletResponse first = new MockHttpServletResponse();
+    testling.doFilter(createRequest("/channela/redirect-test2/abc").buildRequest(servletContext), first,
+            new MockFilterChain(notFoundServlet));
+    HttpServletResponse second = new MockHttpServletResponse();
+    testling.doFilter(createRequest("/channela/redirect-test2/abc").buildRequest(servletContext), second,
+            new MockFilterChain(notFoundServlet));
+
+    // The second request is redirected without rendering
+    assertEquals(1, renderings.get());
+    assertEquals(HttpServletResponse.SC_MOVED_PERMANENTLY, second.getStatus());
+    assertEquals(first.getHeader(HttpHeaders.LOCATION), second.getHeader(HttpHeaders.LOCATION));
+
+    // Another query string is rendered again
+    HttpServletResponse third = new MockHttpServletResponse();
+    testling.doFilter(createRequest("/channela/redirect-test2/abc?page=2").buildRequest(servletContext), third,
+            new MockFilterChain(notFoundServlet));
+    assertEquals(2, renderings.get());
+  }
+
+  @Test
+  public void testErrorDispatch() throws Exception {
+    RedirectFilter errorDispatchFilter = new RedirectFilter(contentBeanFactory, false, redirectMatchingService,
+            linkFormatter, notFoundMemo, new RedirectCacheControl("", "", "", ""), new RedirectLocationCache(1000), 8192,
+            4194304, "error-dispatch");
+    MockServletContext servletContext = new MockServletContext();
+    MockHttpServletRequest request = createRequest("/channela/redirect-test2/abc").buildRequest(servletContext);
+
+    // The response is not wrapped
+    HttpServletResponse response = new MockHttpServletResponse();
+    MockFilterChain filterChain = new MockFilterChain(getNotFoundServlet());
+    errorDispatchFilter.doFilter(request, response, filterChain);
+    assertSame(response, filterChain.getResponse());
+
+    // The container dispatches the 404 to the error page
+    request.setDispatcherType(DispatcherType.ERROR);
+    request.setAttribute(RequestDispatcher.ERROR_STATUS_CODE, HttpServletResponse.SC_NOT_FOUND);
+    HttpServletResponse errorResponse = new MockHttpServletResponse();
+    MockFilterChain errorPageChain = new MockFilterChain(getOkServlet());
+    errorDispatchFilter.doFilter(request, errorResponse, errorPageChain);
+
+    // The redirect is sent instead of the error page
+    assertNull(errorPageChain.getResponse());
+    assertEquals(HttpServletResponse.SC_MOVED_PERMANENTLY, errorResponse.getStatus());
+    assertThat(errorResponse.getHeader(HttpHeaders.LOCATION), anyOf(is("/channela"), is("/context/servlet/channela")));
+  }
+
   @Test
   public void testKeepParamsWithSpecialChar() throws Exception {
     MockServletContext servletContext = new MockServletContext();
@@ -0,0 +1,162 @@
+package com.tallence.core.redirects.cae.filter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import jakarta.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the {@link RedirectHttpServletResponseWrapper}.
+ */
+public class RedirectHttpServletResponseWrapperTest {
+
+  private static final int BUFFER_SIZE = 16;
+
+  private MockHttpServletResponse response;
+  private ResponseBufferPool bufferPool;
+  private RedirectHttpServletResponseWrapper wrapper;
+
+  @Before
+  public void setUp() {
+    response = new MockHttpServletResponse();
+    bufferPool = new ResponseBufferPool(BUFFER_SIZE, 2 * BUFFER_SIZE);
+    wrapper = new RedirectHttpServletResponseWrapper(response, null, bufferPool);
+  }
+
+  @Test
+  public void testPassThroughWriter() throws Exception {
+    wrapper.getWriter().write("page");
+
+    // Written before the filter has inspected the response
+    assertEquals("page", response.getContentAsString());
+    assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    assertFalse(wrapper.isNotFound());
+
+    wrapper.writeOnSuper();
+    assertEquals("page", response.getContentAsString());
+    assertEquals(0, bufferPool.getAcquisitions());
+  }
+
+  @Test
+  public void testPassThroughOutputStream() throws Exception {
+    wrapper.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    wrapper.getOutputStream().write("error".getBytes(StandardCharsets.UTF_8));
+
+    assertEquals("error", response.getContentAsString());
+    assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, response.getStatus());
+    assertFalse(wrapper.isNotFound());
+  }
+
+  @Test
+  public void testNotFoundHeld() throws Exception {
+    wrapper.setStatus(HttpServletResponse.SC_NOT_FOUND);
+    wrapper.getWriter().write("not found");
+    wrapper.flushBuffer();
+
+    assertTrue(wrapper.isNotFound());
+    assertFalse(response.isCommitted());
+    assertEquals("", response.getContentAsString());
+    assertEquals("not found", wrapper.toString());
+    assertEquals(1, bufferPool.getBuffersInUse());
+
+    wrapper.release();
+    assertEquals(0, bufferPool.getBuffersInUse());
+    assertEquals(1, bufferPool.getAllocatedBuffers());
+  }
+
+  @Test
+  public void testNotFoundHeldUpToLimit() throws Exception {
+    wrapper.sendError(HttpServletResponse.SC_NOT_FOUND);
+    wrapper.getOutputStream().write(new byte[BUFFER_SIZE * 2]);
+
+    assertTrue(wrapper.isNotFound());
+    assertFalse(response.isCommitted());
+    assertEquals(0, response.getContentAsByteArray().length);
+    assertEquals(1, bufferPool.getSpills());
+  }
+
+  @Test
+  public void testBufferPoolBudget() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      RedirectHttpServletResponseWrapper notFound = new RedirectHttpServletResponseWrapper(response, null, bufferPool);
+      notFound.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      notFound.getWriter().write("page");
+      assertTrue(notFound.isNotFound());
+    }
+    // The budget allows two buffers
+    assertEquals(2, bufferPool.getBuffersInUse());
+    assertEquals(1, bufferPool.getSpills());
+  }
+
+  @Test
+  public void testBufferReused() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      RedirectHttpServletResponseWrapper notFound = new RedirectHttpServletResponseWrapper(response, null, bufferPool);
+      notFound.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      notFound.getOutputStream().write(i);
+      notFound.release();
+    }
+    assertEquals(1, bufferPool.getAllocatedBuffers());
+    assertEquals(3, bufferPool.getAcquisitions());
+    assertEquals(0, bufferPool.getSpills());
+  }
+
+  @Test
+  public void testSendError() throws Exception {
+    wrapper.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "error");
+
+    assertFalse(wrapper.isNotFound());
+    assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, response.getStatus());
+    assertEquals("error", response.getErrorMessage());
+  }
+
+  @Test
+  public void testHeldResponseWritten() throws Exception {
+    wrapper.setStatus(HttpServletResponse.SC_NOT_FOUND);
+    wrapper.getWriter().write("page");
+    wrapper.setStatus(HttpServletResponse.SC_OK);
+
+    assertFalse(wrapper.isNotFound());
+    wrapper.writeOnSuper();
+    assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    assertEquals("page", response.getContentAsString());
+  }
+
+  @Test
+  public void testSurrogatePairSplitAcrossWrites() throws Exception {
+    wrapper.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    wrapper.setStatus(HttpServletResponse.SC_NOT_FOUND);
+    String text = "a\uD83D\uDE00";
+    wrapper.getWriter().write(text, 0, 2);
+    wrapper.getWriter().write(text, 2, 1);
+
+    assertTrue(wrapper.isNotFound());
+    wrapper.writeOnSuper();
+    assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), response.getContentAsByteArray());
+  }
+
+  @Test
+  public void testPendingCharsFinished() throws Exception {
+    wrapper.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    wrapper.setStatus(HttpServletResponse.SC_NOT_FOUND);
+    // An unpaired high surrogate at the end of the body is replaced, not dropped
+    wrapper.getWriter().write("a\uD83D");
+
+    assertTrue(wrapper.isNotFound());
+    wrapper.writeOnSuper();
+    assertEquals("a?", response.getContentAsString());
+  }
+
+  @Test
+  public void testPassedThroughNotFound() throws Exception {
+    wrapper.getWriter().write("page");
+    wrapper.setStatus(HttpServletResponse.SC_NOT_FOUND);
+
+    // Too late, the response has been passed through already
+    assertFalse(wrapper.isNotFound());
+  }
+}
@@ -0,0 +1,70 @@
+package com.tallence.core.redirects.cae.filter;
+
+import com.coremedia.cap.content.Content;
+import com.tallence.core.redirects.cae.filter.RedirectLocationCache.Location;
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.model.RedirectType;
+import com.tallence.core.redirects.model.SourceUrlType;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the {@link RedirectLocationCache}.
+ */
+public class RedirectLocationCacheTest {
+
+  private static final String TARGET_ID = "coremedia://cap/content/1310";
+
+  private final RedirectLocationCache cache = new RedirectLocationCache(100);
+
+  @Test
+  public void testCached() {
+    Redirect redirect = redirect("coremedia://cap/content/1312", TARGET_ID);
+    Location location = cache.get(redirect, request("example.org"), () -> new Location("/target", "/target"));
+
+    assertSame(location, cache.get(redirect, request("example.org"), () -> new Location("/other", "/other")));
+    assertNotSame(location, cache.get(redirect, request("example.com"), () -> new Location("/other", "/other")));
+    // An updated redirect is another instance
+    assertNotSame(location, cache.get(redirect("coremedia://cap/content/1312", TARGET_ID), request("example.org"),
+            () -> new Location("/other", "/other")));
+  }
+
+  @Test
+  public void testInvalidateTarget() {
+    Redirect redirect = redirect("coremedia://cap/content/1312", TARGET_ID);
+    Redirect other = redirect("coremedia://cap/content/1314", "coremedia://cap/content/1316");
+    Location location = cache.get(redirect, request("example.org"), () -> new Location("/target", "/target"));
+    Location otherLocation = cache.get(other, request("example.org"), () -> new Location("/other", "/other"));
+
+    cache.invalidateTarget(TARGET_ID);
+    assertNotSame(location, cache.get(redirect, request("example.org"), () -> new Location("/moved", "/moved")));
+    assertSame(otherLocation, cache.get(other, request("example.org"), () -> new Location("/moved", "/moved")));
+  }
+
+  @Test
+  public void testDisabled() {
+    RedirectLocationCache disabled = new RedirectLocationCache(0);
+    Redirect redirect = redirect("coremedia://cap/content/1312", TARGET_ID);
+    Location location = disabled.get(redirect, request("example.org"), () -> new Location("/target", "/target"));
+
+    assertNotSame(location, disabled.get(redirect, request("example.org"), () -> new Location("/target", "/target")));
+  }
+
+  private static Redirect redirect(String id, String targetId) {
+    Content target = mock(Content.class);
+    when(target.getId()).thenReturn(targetId);
+    return Redirect.builder(id, SourceUrlType.PLAIN, "/site/old", RedirectType.ALWAYS).target(target).build();
+  }
+
+  private static HttpServletRequest request(String host) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getScheme()).thenReturn("https");
+    when(request.getServerName()).thenReturn(host);
+    when(request.getServerPort()).thenReturn(443);
+    return request;
+  }
+}
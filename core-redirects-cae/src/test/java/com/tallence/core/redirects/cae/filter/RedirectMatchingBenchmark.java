@@ -0,0 +1,107 @@
+package com.tallence.core.redirects.cae.filter;
+
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import com.tallence.core.redirects.model.RedirectType;
+import com.tallence.core.redirects.model.SourceUrlType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for requests without a redirect, the most common case in the {@link RedirectFilter}.
+ *
+ * Run the {@link #main} method with the test classpath: the GC profiler reports the allocated bytes per request
+ * ({@code gc.alloc.rate.norm}), which should be close to zero for the lookups of a miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedirectMatchingBenchmark {
+
+  private static final int REDIRECTS = 10000;
+
+  private RedirectMatchingServiceImpl uncachedService;
+  private RedirectMatchingServiceImpl cachedService;
+  private SiteRedirects siteRedirects;
+  private MockHttpServletRequest lowerCaseMiss;
+  private MockHttpServletRequest mixedCaseMiss;
+
+  @Setup
+  public void setUp() {
+    SiteRedirects.Builder builder = SiteRedirects.builder("site");
+    for (int i = 0; i < REDIRECTS; i++) {
+      builder.add(redirect(i, SourceUrlType.PLAIN, "/site/page-" + i));
+    }
+    builder.add(redirect(REDIRECTS, SourceUrlType.REGEX, "/site/shop/legacy-.*"));
+    builder.add(redirect(REDIRECTS + 1, SourceUrlType.REGEX, "/site/blog/\\d+"));
+    siteRedirects = builder.build();
+
+    uncachedService = new RedirectMatchingServiceImpl(null, null, 0, 0, "java", 0);
+    cachedService = new RedirectMatchingServiceImpl(null, null, 10000, 0, "java", 0);
+    lowerCaseMiss = request("/site/products/shoes/running/");
+    mixedCaseMiss = request("/site/Products/Shoes/Running");
+  }
+
+  @Benchmark
+  public Object missLowerCase() {
+    return uncachedService.determinePreAction(siteRedirects, lowerCaseMiss);
+  }
+
+  @Benchmark
+  public Object missMixedCase() {
+    return uncachedService.determinePreAction(siteRedirects, mixedCaseMiss);
+  }
+
+  @Benchmark
+  public Object missCached() {
+    return cachedService.determinePreAction(siteRedirects, mixedCaseMiss);
+  }
+
+  /**
+   * The former normalization: a lower case copy and a substring for the trailing slash.
+   */
+  @Benchmark
+  public Object formerNormalization() {
+    String pathInfo = lowerCaseMiss.getPathInfo().toLowerCase();
+    if (pathInfo.endsWith("/")) {
+      pathInfo = pathInfo.substring(0, pathInfo.length() - 1);
+    }
+    return siteRedirects.getPlainRedirects().get(pathInfo);
+  }
+
+  private static MockHttpServletRequest request(String pathInfo) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/blueprint/servlet" + pathInfo);
+    request.setPathInfo(pathInfo);
+    return request;
+  }
+
+  private static Redirect redirect(int id, SourceUrlType type, String source) {
+    return Redirect.builder("coremedia://cap/content/" + id, type, source, RedirectType.ALWAYS)
+            .targetUrl("https://example.org/").build();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+            .include(RedirectMatchingBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+  }
+}
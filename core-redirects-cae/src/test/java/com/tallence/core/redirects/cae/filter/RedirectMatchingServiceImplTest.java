@@ -0,0 +1,90 @@
+package com.tallence.core.redirects.cae.filter;
+
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import com.tallence.core.redirects.model.RedirectSourceParameter;
+import com.tallence.core.redirects.model.RedirectType;
+import com.tallence.core.redirects.model.SourceUrlType;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the caches of the {@link RedirectMatchingServiceImpl}.
+ */
+public class RedirectMatchingServiceImplTest {
+
+  private RedirectMatchingServiceImpl matchingService;
+  private Redirect patternRedirect;
+  private Redirect parameterRedirect;
+  private SiteRedirects siteRedirects;
+
+  @Before
+  public void setUp() {
+    matchingService = new RedirectMatchingServiceImpl(null, null, 100, 100, "java", 0);
+    patternRedirect = redirect("1", SourceUrlType.REGEX, "/site/shop/.*", List.of());
+    parameterRedirect = redirect("2", SourceUrlType.REGEX, "/site/shop/.*",
+            List.of(new RedirectSourceParameter("campaign", "summer", RedirectSourceParameter.Operator.EQUALS)));
+    siteRedirects = SiteRedirects.builder("site").add(patternRedirect).add(parameterRedirect).build();
+  }
+
+  @Test
+  public void testPatternResultCache() {
+    assertSame(patternRedirect, matchingService.determinePreAction(siteRedirects, request("/site/shop/a", Map.of())).getRedirect());
+    assertSame(patternRedirect, matchingService.determinePreAction(siteRedirects, request("/site/shop/a", Map.of())).getRedirect());
+    assertEquals(1, matchingService.getPatternResultCacheStats().hitCount());
+
+    // The source parameter is part of the key, other parameters are not
+    var summer = Map.of("campaign", new String[]{"Summer"}, "other", new String[]{"1"});
+    assertSame(parameterRedirect, matchingService.determinePreAction(siteRedirects, request("/site/shop/a", summer)).getRedirect());
+    var winter = Map.of("campaign", new String[]{"winter"}, "other", new String[]{"2"});
+    assertSame(patternRedirect, matchingService.determinePreAction(siteRedirects, request("/site/shop/a", winter)).getRedirect());
+    assertEquals(1, matchingService.getPatternResultCacheStats().hitCount());
+  }
+
+  @Test
+  public void testNewVersionIsNotHidden() {
+    var request = request("/site/page", Map.of());
+    assertNull(matchingService.determinePreAction(siteRedirects, request).getRedirect());
+    assertNull(matchingService.determinePreAction(siteRedirects, request).getRedirect());
+    assertEquals(1, matchingService.getMissCacheStats().hitCount());
+
+    var plainRedirect = redirect("3", SourceUrlType.PLAIN, "/site/page", List.of());
+    siteRedirects = siteRedirects.withRedirect(plainRedirect);
+    assertSame(plainRedirect, matchingService.determinePreAction(siteRedirects, request).getRedirect());
+
+    var shopRequest = request("/site/shop/b", Map.of());
+    assertSame(patternRedirect, matchingService.determinePreAction(siteRedirects, shopRequest).getRedirect());
+    siteRedirects = siteRedirects.withoutRedirect(patternRedirect);
+    assertNull(matchingService.determinePreAction(siteRedirects, shopRequest).getRedirect());
+  }
+
+  @Test
+  public void testPrefixBeforePatterns() {
+    var prefixRedirect = redirect("4", SourceUrlType.PREFIX, "/site/shop/legacy/", List.of());
+    siteRedirects = siteRedirects.withRedirect(prefixRedirect);
+
+    assertSame(prefixRedirect, matchingService.determinePreAction(siteRedirects, request("/site/shop/legacy/a/b", Map.of())).getRedirect());
+    assertSame(prefixRedirect, matchingService.determinePreAction(siteRedirects, request("/site/Shop/Legacy/", Map.of())).getRedirect());
+    assertSame(patternRedirect, matchingService.determinePreAction(siteRedirects, request("/site/shop/legacy-a", Map.of())).getRedirect());
+  }
+
+  private static HttpServletRequest request(String path, Map<String, String[]> parameters) {
+    var request = mock(HttpServletRequest.class);
+    when(request.getPathInfo()).thenReturn(path);
+    when(request.getParameterMap()).thenReturn(parameters);
+    return request;
+  }
+
+  private static Redirect redirect(String id, SourceUrlType type, String source, List<RedirectSourceParameter> parameters) {
+    return Redirect.builder("coremedia://cap/content/" + id, type, source, RedirectType.ALWAYS)
+            .targetUrl("https://example.org/").sourceParameters(parameters).build();
+  }
+}
@@ -0,0 +1,43 @@
+package com.tallence.core.redirects.cae.filter;
+
+import com.google.common.cache.Cache;
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import com.tallence.core.redirects.model.RedirectType;
+import com.tallence.core.redirects.model.SourceUrlType;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the {@link VersionedSiteCache}.
+ */
+public class VersionedSiteCacheTest {
+
+  @Test
+  public void testNewVersionClearsCache() {
+    VersionedSiteCache<String, Boolean> siteCache = new VersionedSiteCache<>(100);
+    SiteRedirects oldVersion = SiteRedirects.builder("site").build();
+    siteCache.forSnapshot(oldVersion).put("/site/page", Boolean.TRUE);
+    assertNotNull(siteCache.forSnapshot(oldVersion).getIfPresent("/site/page"));
+
+    SiteRedirects newVersion = oldVersion.withRedirect(redirect("/site/page"));
+    Cache<String, Boolean> cache = siteCache.forSnapshot(newVersion);
+    assertNotNull(cache);
+    assertNull(cache.getIfPresent("/site/page"));
+
+    // A request still working with the old version must not use or fill the new cache
+    assertNull(siteCache.forSnapshot(oldVersion));
+  }
+
+  @Test
+  public void testDisabled() {
+    assertNull(new VersionedSiteCache<>(0).forSnapshot(SiteRedirects.builder("site").build()));
+    assertNull(new VersionedSiteCache<>(100).forSnapshot(new SiteRedirects()));
+  }
+
+  private static Redirect redirect(String source) {
+    return Redirect.builder("coremedia://cap/content/2", SourceUrlType.PLAIN, source, RedirectType.ALWAYS)
+            .targetUrl("https://example.org/").build();
+  }
+}
@@ -0,0 +1,44 @@
+package com.tallence.core.redirects.cae.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for the {@link RedirectCheckpoint}.
+ */
+public class RedirectCheckpointTest {
+
+  @Test
+  public void testPendingTasks() {
+    RedirectCheckpoint testling = new RedirectCheckpoint();
+    assertNull(testling.get());
+
+    testling.reset("1");
+    assertEquals("1", testling.get());
+
+    testling.taskSubmitted();
+    testling.eventHandled("2");
+    assertNull(testling.get());
+    testling.taskCompleted();
+    assertEquals("2", testling.get());
+
+    // Events without a timestamp keep the last one
+    testling.eventHandled(null);
+    assertEquals("2", testling.get());
+  }
+
+  @Test
+  public void testCompare() {
+    assertTrue(RedirectCheckpoint.compare("12:900", "12:1000") < 0);
+    assertTrue(RedirectCheckpoint.compare("13:1", "12:1000") > 0);
+    assertEquals(0, RedirectCheckpoint.compare("12:1000", "12:1000"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCompareUnknownFormat() {
+    RedirectCheckpoint.compare("12:1000", "12:abc");
+  }
+}
@@ -7,6 +7,9 @@ import com.coremedia.cap.multisite.SitesService;
 import com.coremedia.objectserver.beans.ContentBean;
 import com.tallence.core.redirects.cae.AbstractRedirectsTest;
 import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.cae.service.purge.InMemoryRedirectPurgeSink;
+import com.tallence.core.redirects.cae.service.purge.RedirectPurgeEvent;
+import com.tallence.core.redirects.cae.service.purge.RedirectPurgeSink;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -36,9 +39,14 @@ public class RedirectContentListenerTest extends AbstractRedirectsTest {
   @Autowired
   private SitesService sitesService;
 
+  @Autowired
+  private RedirectPurgeSink redirectPurgeSink;
+
   @Test
   public void testAddRemoveRedirect() {
     redirectUpdateTaskScheduler.setTestMode(true);
+    InMemoryRedirectPurgeSink purgeSink = (InMemoryRedirectPurgeSink) redirectPurgeSink;
+    purgeSink.clear();
 
     ContentBean target = getContentBean(1002);
 
@@ -62,6 +70,8 @@ public class RedirectContentListenerTest extends AbstractRedirectsTest {
     assertThat(redirectService.getRedirectsForSite(site).getPatternRedirects().size(), equalTo(patternSizeBefore));
     assertThat(plainRedirects, hasKey("/channela/redirect-test-dynamic"));
     assertThat(plainRedirects.get("/channela/redirect-test-dynamic"), hasItem(hasProperty("source", equalTo("/channela/redirect-test-dynamic"))));
+    assertThat(purgeSink.getEvents(), hasItem(allOf(hasProperty("type", equalTo(RedirectPurgeEvent.Type.UPDATED)),
+            hasProperty("redirectId", equalTo(redirect.getId())))));
 
     // Test deletion
     redirect.delete();
@@ -69,6 +79,8 @@ public class RedirectContentListenerTest extends AbstractRedirectsTest {
     redirectUpdateTaskScheduler.runRemove(redirect);
 
     assertThat(redirectService.getRedirectsForSite(site).getPlainRedirects().size(), equalTo(plainSizeBefore));
+    assertThat(purgeSink.getEvents(), hasItem(allOf(hasProperty("type", equalTo(RedirectPurgeEvent.Type.REMOVED)),
+            hasProperty("redirectId", equalTo(redirect.getId())))));
     assertThat(redirectService.getRedirectsForSite(site).getPatternRedirects().size(), equalTo(patternSizeBefore));
 
     redirectUpdateTaskScheduler.setTestMode(false);
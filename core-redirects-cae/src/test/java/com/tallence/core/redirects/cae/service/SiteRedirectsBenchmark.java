@@ -0,0 +1,103 @@
+package com.tallence.core.redirects.cae.service;
+
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.model.RedirectType;
+import com.tallence.core.redirects.model.SourceUrlType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for updating a single redirect in the index of a large site: the reverse index of the
+ * {@link SiteRedirects} against the former scan over all redirect lists of the site.
+ *
+ * Not executed by the test phase, run the {@link #main} method with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SiteRedirectsBenchmark {
+
+  private static final int UPDATES = 1024;
+
+  @Param({"10000", "100000", "1000000"})
+  public int redirects;
+
+  private SiteRedirects siteRedirects;
+  private Map<String, List<Redirect>> scannedRedirects;
+  private Redirect[] updates;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    SiteRedirects.Builder builder = SiteRedirects.builder("site");
+    scannedRedirects = new ConcurrentHashMap<>();
+    for (int i = 0; i < redirects; i++) {
+      Redirect redirect = redirect(i, "/site/page-" + i);
+      builder.add(redirect);
+      scannedRedirects.computeIfAbsent(redirect.getSource(), k -> Collections.synchronizedList(new ArrayList<>())).add(redirect);
+    }
+    siteRedirects = builder.build();
+
+    // Existing redirects, moved to a new source.
+    updates = new Redirect[UPDATES];
+    for (int i = 0; i < UPDATES; i++) {
+      int id = (int) ((long) i * redirects / UPDATES);
+      updates[i] = redirect(id, "/site/moved-" + id);
+    }
+  }
+
+  @Benchmark
+  public SiteRedirects updateWithReverseIndex() {
+    siteRedirects = siteRedirects.withRedirect(nextUpdate());
+    return siteRedirects;
+  }
+
+  /**
+   * The former update: remove the redirect from every list with {@code removeIf}, then add it.
+   */
+  @Benchmark
+  public Map<String, List<Redirect>> updateWithScan() {
+    Redirect redirect = nextUpdate();
+    scannedRedirects.values().forEach(list -> list.removeIf(r -> r.getContentId().equals(redirect.getContentId())));
+    scannedRedirects.values().removeIf(List::isEmpty);
+    scannedRedirects.computeIfAbsent(redirect.getSource(), k -> Collections.synchronizedList(new ArrayList<>())).add(redirect);
+    return scannedRedirects;
+  }
+
+  private Redirect nextUpdate() {
+    Redirect redirect = updates[next];
+    next = (next + 1) % UPDATES;
+    return redirect;
+  }
+
+  private static Redirect redirect(int id, String source) {
+    return Redirect.builder(String.valueOf(id), SourceUrlType.PLAIN, source, RedirectType.ALWAYS)
+            .targetUrl("https://example.org/").build();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SiteRedirectsBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,83 @@
+package com.tallence.core.redirects.cae.service;
+
+import com.coremedia.blueprint.base.multisite.cae.SiteResolver;
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.multisite.Site;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the {@link SiteResolutionCache}.
+ */
+public class SiteResolutionCacheTest {
+
+  private final List<String> resolvedPaths = new ArrayList<>();
+  private Runnable onResolve = () -> { };
+  private Site site;
+  private SiteResolutionCache cache;
+
+  @Before
+  public void setUp() {
+    site = mock(Site.class);
+    SiteResolver siteResolver = mock(SiteResolver.class);
+    when(siteResolver.findSiteByPath("/site")).thenReturn(site);
+    cache = new SiteResolutionCache(new SiteResolver() {
+      @Override
+      public Site findSiteByPath(String path) {
+        resolvedPaths.add(path);
+        onResolve.run();
+        return siteResolver.findSiteByPath(path);
+      }
+
+      @Override
+      public Site findSiteBySegment(String segment) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Site findSiteFor(Content content) {
+        throw new UnsupportedOperationException();
+      }
+    }, 100);
+  }
+
+  @Test
+  public void testOncePerSegment() {
+    assertSame(site, cache.findSiteByPath("/site/a/b"));
+    assertSame(site, cache.findSiteByPath("/site"));
+    assertSame(site, cache.findSiteByPath("/site/c"));
+    assertNull(cache.findSiteByPath("/other/a"));
+    assertNull(cache.findSiteByPath("/other/b"));
+
+    assertEquals(List.of("/site", "/other"), resolvedPaths);
+    assertEquals(3, cache.stats().hitCount());
+  }
+
+  @Test
+  public void testInvalidate() {
+    assertSame(site, cache.findSiteByPath("/site/a"));
+    cache.invalidate();
+    assertSame(site, cache.findSiteByPath("/site/a"));
+
+    assertEquals(List.of("/site", "/site"), resolvedPaths);
+  }
+
+  @Test
+  public void testInvalidatedWhileResolving() {
+    onResolve = () -> cache.invalidate();
+    assertSame(site, cache.findSiteByPath("/site/a"));
+    onResolve = () -> { };
+    assertSame(site, cache.findSiteByPath("/site/a"));
+    assertSame(site, cache.findSiteByPath("/site/b"));
+
+    // The site resolved during the invalidation is not cached
+    assertEquals(List.of("/site", "/site"), resolvedPaths);
+  }
+}
@@ -1,13 +1,19 @@
 package com.tallence.core.redirects.cae.service;
 
+import com.coremedia.cap.content.Content;
 import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.model.RedirectType;
 import com.tallence.core.redirects.model.SourceUrlType;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Calendar;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -25,9 +31,9 @@ public class SteRedirectsTest {
     siteRedirects = new SiteRedirects();
 
     var patternRedirect = createRedirect(SourceUrlType.REGEX, "/my-page.*", "coremedia://cap/content/1222");
-    siteRedirects.addRedirect(patternRedirect);
+    siteRedirects = siteRedirects.withRedirect(patternRedirect);
     var plainRedirect = createRedirect(SourceUrlType.PLAIN, "/other-page", "coremedia://cap/content/1244");
-    siteRedirects.addRedirect(plainRedirect);
+    siteRedirects = siteRedirects.withRedirect(plainRedirect);
   }
 
   @Test
@@ -36,7 +42,7 @@ public class SteRedirectsTest {
     var oldRedirect = createRedirect(SourceUrlType.REGEX, "/abc.*", "coremedia://cap/content/123");
     var updatedRedirect = createRedirect(SourceUrlType.PLAIN, "/abc", "coremedia://cap/content/123");
 
-    siteRedirects.addRedirect(oldRedirect);
+    siteRedirects = siteRedirects.withRedirect(oldRedirect);
 
     //Make sure, the new plainRedirect exists alongside with the default redirect from the setUp method
     assertTrue(siteRedirects.getPatternRedirects().keySet().stream().anyMatch(p -> p.pattern().equals(oldRedirect.getSource())));
@@ -44,7 +50,7 @@ public class SteRedirectsTest {
     assertEquals(2, countRedirects(siteRedirects.getPatternRedirects()));
     assertEquals(1, countRedirects(siteRedirects.getPlainRedirects()));
 
-    siteRedirects.addRedirect(updatedRedirect);
+    siteRedirects = siteRedirects.withRedirect(updatedRedirect);
     //Make sure, the redirect has been updated to a plainRedirect and it exists alongside with the default redirects from the setUp method
     assertTrue(siteRedirects.getPatternRedirects().keySet().stream().noneMatch(p -> p.pattern().equals(oldRedirect.getSource())));
     assertTrue(siteRedirects.getPlainRedirects().get(updatedRedirect.getSource()).stream().findFirst().isPresent());
@@ -62,7 +68,7 @@ public class SteRedirectsTest {
     var oldRedirect = createRedirect(SourceUrlType.PLAIN, "/abc", "coremedia://cap/content/123");
     var updatedRedirect = createRedirect(SourceUrlType.REGEX, "/abc.*", "coremedia://cap/content/123");
 
-    siteRedirects.addRedirect(oldRedirect);
+    siteRedirects = siteRedirects.withRedirect(oldRedirect);
 
     //Make sure, the new patternRedirect exists alongside with the default redirect from the setUp method
     assertTrue(siteRedirects.getPatternRedirects().keySet().stream().noneMatch(p -> p.pattern().equals(oldRedirect.getSource())));
@@ -70,7 +76,7 @@ public class SteRedirectsTest {
     assertEquals(2, countRedirects(siteRedirects.getPlainRedirects()));
     assertEquals(1, countRedirects(siteRedirects.getPatternRedirects()));
 
-    siteRedirects.addRedirect(updatedRedirect);
+    siteRedirects = siteRedirects.withRedirect(updatedRedirect);
     //Make sure, the redirect has been updated to a patternRedirect and it exists alongside with the default redirects from the setUp method
     assertTrue(siteRedirects.getPatternRedirects().keySet().stream().anyMatch(p -> p.pattern().equals(updatedRedirect.getSource())));
     assertFalse(siteRedirects.getPlainRedirects().containsKey(updatedRedirect.getSource()));
@@ -78,6 +84,207 @@ public class SteRedirectsTest {
     assertEquals(1, countRedirects(siteRedirects.getPlainRedirects()));
   }
 
+  @Test
+  public void testSnapshotIsNotModified() {
+
+    var snapshot = siteRedirects;
+    var redirect = createRedirect(SourceUrlType.PLAIN, "/abc", "coremedia://cap/content/123");
+
+    siteRedirects = siteRedirects.withRedirect(redirect);
+    assertTrue(siteRedirects.getPlainRedirects().containsKey(redirect.getSource()));
+    assertFalse(snapshot.getPlainRedirects().containsKey(redirect.getSource()));
+    assertTrue(siteRedirects.getVersion() > snapshot.getVersion());
+
+    siteRedirects = siteRedirects.withoutRedirect(redirect.getContentId());
+    assertFalse(siteRedirects.getPlainRedirects().containsKey(redirect.getSource()));
+    assertEquals(snapshot, siteRedirects);
+  }
+
+  @Test
+  public void testRemoveById() {
+
+    var sharedPlain = createRedirect(SourceUrlType.PLAIN, "/other-page", "coremedia://cap/content/1266");
+    var sharedPattern = createRedirect(SourceUrlType.REGEX, "/my-page.*", "coremedia://cap/content/1288");
+    siteRedirects = SiteRedirects.builder("site")
+            .add(createRedirect(SourceUrlType.REGEX, "/my-page.*", "coremedia://cap/content/1222"))
+            .add(createRedirect(SourceUrlType.PLAIN, "/other-page", "coremedia://cap/content/1244"))
+            .add(sharedPlain)
+            .add(sharedPattern)
+            .build();
+    assertEquals(4, siteRedirects.size());
+
+    siteRedirects = siteRedirects.withoutRedirect("coremedia://cap/content/1244");
+    siteRedirects = siteRedirects.withoutRedirect("coremedia://cap/content/1222");
+    assertEquals(2, siteRedirects.size());
+    assertEquals(List.of(sharedPlain), siteRedirects.getPlainRedirects().get("/other-page"));
+    assertEquals(List.of(sharedPattern), siteRedirects.findPatternRedirects("/my-page-1"));
+
+    var snapshot = siteRedirects;
+    assertSame(snapshot, siteRedirects.withoutRedirect("coremedia://cap/content/999"));
+  }
+
+  @Test
+  public void testMightHavePlainRedirects() {
+
+    assertFalse(new SiteRedirects().mightHavePlainRedirects("/other-page"));
+    assertTrue(siteRedirects.mightHavePlainRedirects("/other-page"));
+
+    // Each added path must be found, also after the filter has been rebuilt
+    for (int i = 0; i < 5000; i++) {
+      siteRedirects = siteRedirects.withRedirect(createRedirect(SourceUrlType.PLAIN, "/page-" + i, "coremedia://cap/content/" + (2 * i + 1)));
+    }
+    for (int i = 0; i < 5000; i++) {
+      assertTrue(siteRedirects.mightHavePlainRedirects("/page-" + i));
+    }
+    long falsePositives = IntStream.range(0, 5000).filter(i -> siteRedirects.mightHavePlainRedirects("/none-" + i)).count();
+    assertTrue("false positives: " + falsePositives, falsePositives < 250);
+  }
+
+  @Test
+  public void testPrefixRedirects() {
+
+    var section = createRedirect(SourceUrlType.PREFIX, "/old-section/", "coremedia://cap/content/1300");
+    var archive = createRedirect(SourceUrlType.PREFIX, "/old-section/archive", "coremedia://cap/content/1302");
+    siteRedirects = siteRedirects.withRedirect(section).withRedirect(archive);
+
+    assertEquals(List.of(section), siteRedirects.findPrefixRedirects("/old-section"));
+    assertEquals(List.of(section), siteRedirects.findPrefixRedirects("/old-section/page"));
+    assertEquals(List.of(archive), siteRedirects.findPrefixRedirects("/old-section/archive/2019/page"));
+    assertNull(siteRedirects.findPrefixRedirects("/old-section-2/page"));
+    assertNull(siteRedirects.findPlainRedirects("/old-section"));
+
+    // Changing the type moves the redirect to the other map
+    siteRedirects = siteRedirects.withRedirect(createRedirect(SourceUrlType.PLAIN, "/old-section/archive", "coremedia://cap/content/1302"));
+    assertEquals(List.of(section), siteRedirects.findPrefixRedirects("/old-section/archive/2019/page"));
+
+    siteRedirects = siteRedirects.withoutRedirect("coremedia://cap/content/1300");
+    assertNull(siteRedirects.findPrefixRedirects("/old-section/page"));
+    assertTrue(siteRedirects.getPrefixRedirects().isEmpty());
+  }
+
+  @Test
+  public void testPatternOrder() {
+
+    var low = createRedirect(SourceUrlType.REGEX, "/shop/.*", "coremedia://cap/content/1300");
+    var high = createRedirect(SourceUrlType.REGEX, "/shop/sale/.*", "coremedia://cap/content/1304");
+    var older = createRedirect(SourceUrlType.REGEX, "/shop/s.*", "coremedia://cap/content/1302");
+    when(high.getPriority()).thenReturn(10);
+
+    // The order of the updates does not matter: the highest priority wins, then the lowest content id
+    var updated = siteRedirects.withRedirect(low).withRedirect(high).withRedirect(older);
+    var reversed = siteRedirects.withRedirect(older).withRedirect(high).withRedirect(low);
+    var built = SiteRedirects.builder("site").add(older).add(low).add(high).build();
+    for (SiteRedirects redirects : List.of(updated, reversed, built)) {
+      assertEquals(List.of(high), redirects.findPatternRedirects("/shop/sale/1"));
+      assertEquals(List.of(low), redirects.findPatternRedirects("/shop/summer"));
+      assertEquals(List.of("/shop/sale/.*", "/shop/.*", "/shop/s.*"), redirects.getPatternRedirects().keySet().stream()
+              .map(Pattern::pattern).filter(p -> p.startsWith("/shop/")).collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testPatternsAreReused() {
+
+    var matcher = siteRedirects.getPatternMatcher();
+    var plainRedirect = createRedirect(SourceUrlType.PLAIN, "/third-page", "coremedia://cap/content/1246");
+
+    // A change of a plain redirect does not compile the patterns again
+    var updated = siteRedirects.withRedirect(plainRedirect);
+    assertSame(matcher, updated.getPatternMatcher());
+
+    // Replacing a pattern redirect with the same regex removes and adds it in one step
+    var patternRedirect = createRedirect(SourceUrlType.REGEX, "/my-page.*", "coremedia://cap/content/1222");
+    updated = updated.withRedirect(patternRedirect);
+    assertNotSame(matcher, updated.getPatternMatcher());
+    assertEquals(List.of(patternRedirect), updated.findPatternRedirects("/my-page-1"));
+    assertEquals(3, updated.size());
+  }
+
+  @Test
+  public void testEdit() {
+
+    var plainRedirect = createRedirect(SourceUrlType.PLAIN, "/third-page", "coremedia://cap/content/1246");
+    var prefixRedirect = createRedirect(SourceUrlType.PREFIX, "/old-section/", "coremedia://cap/content/1248");
+
+    SiteRedirects.Editor editor = siteRedirects.edit();
+    editor.add(plainRedirect);
+    editor.add(prefixRedirect);
+    editor.remove("coremedia://cap/content/1222");
+    var edited = editor.build();
+
+    // The edited snapshot is not changed
+    assertEquals(2, siteRedirects.size());
+    assertEquals(3, edited.size());
+    assertEquals(List.of(plainRedirect), edited.findPlainRedirects("/third-page"));
+    assertEquals(List.of(prefixRedirect), edited.findPrefixRedirects("/old-section/page"));
+    assertNull(edited.findPatternRedirects("/my-page-1"));
+    assertSame(edited, edited.edit().build());
+  }
+
+  @Test
+  public void testTargetValidity() {
+
+    long now = System.currentTimeMillis();
+    Content target = mock(Content.class);
+    when(target.getId()).thenReturn("coremedia://cap/content/1310");
+    when(target.getDate(Redirect.VALID_FROM)).thenReturn(calendar(now + 60_000));
+    when(target.getDate(Redirect.VALID_TO)).thenReturn(calendar(now + 120_000));
+    var redirect = Redirect.builder("coremedia://cap/content/1312", SourceUrlType.PLAIN, "/campaign", RedirectType.ALWAYS)
+            .target(target).build();
+
+    assertFalse(redirect.isTargetValid());
+    assertTrue(redirect.hasValidityOf(target));
+    var redirects = new SiteRedirects("site").withRedirect(redirect);
+    assertEquals(List.of(redirect), redirects.findRedirectsWithTarget("coremedia://cap/content/1310"));
+    assertEquals(now + 60_000, redirects.getNextValidityChange());
+
+    // Switched at the start and the end of the validity
+    assertFalse(redirects.withTargetValidity(now + 30_000).findPlainRedirects("/campaign").get(0).isTargetValid());
+    redirects = redirects.withTargetValidity(now + 60_000);
+    assertTrue(redirects.findPlainRedirects("/campaign").get(0).isTargetValid());
+    assertEquals(now + 120_000, redirects.getNextValidityChange());
+    redirects = redirects.withTargetValidity(now + 120_000);
+    assertFalse(redirects.findPlainRedirects("/campaign").get(0).isTargetValid());
+    assertEquals(Long.MAX_VALUE, redirects.getNextValidityChange());
+
+    // The reverse index of the targets follows the changes
+    assertEquals(redirects.findPlainRedirects("/campaign"), redirects.findRedirectsWithTarget("coremedia://cap/content/1310"));
+    assertTrue(redirects.withoutRedirect(redirect).findRedirectsWithTarget("coremedia://cap/content/1310").isEmpty());
+    assertTrue(siteRedirects.findRedirectsWithTarget("coremedia://cap/content/1310").isEmpty());
+
+    when(target.getDate(Redirect.VALID_TO)).thenReturn(null);
+    assertFalse(redirect.hasValidityOf(target));
+  }
+
+  @Test
+  public void testTargetValidityKeepsPatterns() {
+
+    long now = System.currentTimeMillis();
+    Content target = mock(Content.class);
+    when(target.getId()).thenReturn("coremedia://cap/content/1310");
+    when(target.getDate(Redirect.VALID_FROM)).thenReturn(calendar(now + 60_000));
+    var redirect = Redirect.builder("coremedia://cap/content/1312", SourceUrlType.REGEX, "/campaign/.*", RedirectType.ALWAYS)
+            .target(target).build();
+    var redirects = new SiteRedirects("site").withRedirect(redirect);
+    var matcher = redirects.getPatternMatcher();
+    assertFalse(redirects.findPatternRedirects("/campaign/a").get(0).isTargetValid());
+
+    // The changed redirect is found with the compiled patterns of the former snapshot
+    var updated = redirects.withTargetValidity(now + 60_000);
+    assertSame(matcher, updated.getPatternMatcher());
+    assertTrue(updated.findPatternRedirects("/campaign/a").get(0).isTargetValid());
+    assertTrue(updated.getPatternRedirects().values().stream().flatMap(List::stream)
+            .filter(r -> r.getContentId().equals(redirect.getContentId())).allMatch(Redirect::isTargetValid));
+    assertEquals(updated.findPatternRedirects("/campaign/a"), updated.findRedirectsWithTarget("coremedia://cap/content/1310"));
+    assertFalse(redirects.findPatternRedirects("/campaign/a").get(0).isTargetValid());
+  }
+
+  private static Calendar calendar(long millis) {
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(millis);
+    return calendar;
+  }
+
   private Redirect createRedirect(SourceUrlType sourceUrlType, String source, String contentId) {
     var redirect = mock(Redirect.class);
     when(redirect.getSourceUrlType()).thenReturn(sourceUrlType);
@@ -0,0 +1,135 @@
+package com.tallence.core.redirects.cae.service.export;
+
+import com.coremedia.cap.multisite.Site;
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import com.tallence.core.redirects.model.RedirectSourceParameter;
+import com.tallence.core.redirects.model.RedirectStatus;
+import com.tallence.core.redirects.model.RedirectType;
+import com.tallence.core.redirects.model.SourceUrlType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test for the {@link EdgeRedirectExporter} and the {@link EdgeRedirectMap}.
+ */
+public class EdgeRedirectExporterTest {
+
+  private final ConcurrentMap<Site, SiteRedirects> redirectsCache = new ConcurrentHashMap<>();
+  private Path directory;
+  private Site site;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("redirect-export");
+    site = mock(Site.class);
+    redirectsCache.put(site, SiteRedirects.builder("siteA")
+            .add(redirect(1, SourceUrlType.PLAIN, "/channela/campaign", RedirectType.ALWAYS, "https://example.org/a"))
+            .add(redirect(2, SourceUrlType.PLAIN, "/channela/sale", RedirectType.AFTER_NOT_FOUND, "https://example.org/b"))
+            .add(redirect(3, SourceUrlType.PREFIX, "/channela/shop", RedirectType.ALWAYS, "https://example.org/c"))
+            .add(redirect(4, SourceUrlType.PLAIN, "/channela/quote", RedirectType.ALWAYS, "https://example.org/\"x\""))
+            .add(Redirect.builder("coremedia:///cap/content/5", SourceUrlType.PLAIN, "/channela/params", RedirectType.ALWAYS)
+                    .targetUrl("https://example.org/d")
+                    .sourceParameters(List.of(new RedirectSourceParameter("utm", "x", null)))
+                    .build())
+            .add(redirect(6, SourceUrlType.PLAIN, "/channela/Upper", RedirectType.ALWAYS, "https://example.org/e"))
+            .build());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Test
+  public void testMap() {
+    EdgeRedirectMap map = EdgeRedirectMap.of(redirectsCache.get(site));
+
+    assertEquals(1, map.getEntries().size());
+    EdgeRedirectMap.Entry entry = map.getEntries().get(0);
+    assertEquals("/channela/campaign", entry.getSource());
+    assertEquals("https://example.org/a", entry.getTarget());
+    assertEquals(308, entry.getStatus());
+
+    assertEquals(List.of("coremedia:///cap/content/6", "coremedia:///cap/content/5", "coremedia:///cap/content/4",
+            "coremedia:///cap/content/2", "coremedia:///cap/content/3"), map.getExclusions().stream()
+            .map(EdgeRedirectMap.Exclusion::getRedirectId).collect(Collectors.toList()));
+    // Never matched by the CAE, which compares the lower case request path
+    assertEquals("upper case letters in the source, never matched by the CAE", map.getExclusions().get(0).getReason());
+    assertEquals("prefix source", map.getExclusions().get(4).getReason());
+  }
+
+  @Test
+  public void testExport() throws Exception {
+    EdgeRedirectExporter testling = new EdgeRedirectExporter(redirectsCache, directory.toString(), "nginx, varnish", 0);
+
+    assertTrue(testling.export("siteA"));
+    // Same snapshot, nothing to do
+    assertFalse(testling.export("siteA"));
+    assertFalse(testling.export("unknown"));
+
+    List<String> locations = Files.readAllLines(directory.resolve("siteA.location.map"), StandardCharsets.UTF_8);
+    assertEquals("\"/channela/campaign\" \"https://example.org/a\";", locations.get(1));
+    List<String> statuses = Files.readAllLines(directory.resolve("siteA.status.map"), StandardCharsets.UTF_8);
+    assertEquals("\"/channela/campaign\" 308;", statuses.get(1));
+    String vcl = Files.readString(directory.resolve("siteA.vcl"));
+    assertTrue(vcl, vcl.contains("sub core_redirects_siteA {"));
+    assertTrue(vcl, vcl.contains("if (req.http.X-Core-Redirect-Path == \"/channela/campaign\") {"));
+    assertTrue(vcl, vcl.contains("return (synth(308));"));
+    assertEquals(6, Files.readAllLines(directory.resolve("siteA.report.csv"), StandardCharsets.UTF_8).size());
+    assertFalse(Files.exists(directory.resolve("siteA.json")));
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(4, files.count());
+    }
+
+    // A new snapshot is exported again
+    redirectsCache.computeIfPresent(site, (s, redirects) -> redirects.withoutRedirect("coremedia:///cap/content/1"));
+    assertTrue(testling.export("siteA"));
+    assertEquals(1, Files.readAllLines(directory.resolve("siteA.location.map"), StandardCharsets.UTF_8).size());
+  }
+
+  @Test
+  public void testJsonAndCsv() throws Exception {
+    EdgeRedirectExporter testling = new EdgeRedirectExporter(redirectsCache, directory.toString(), "json,csv", 0);
+    assertTrue(testling.export("siteA"));
+
+    String json = Files.readString(directory.resolve("siteA.json"));
+    assertTrue(json, json.contains("{\"id\": \"coremedia:///cap/content/1\", \"source\": \"/channela/campaign\", "
+            + "\"target\": \"https://example.org/a\", \"status\": 308}"));
+    assertTrue(json, json.contains("\"source\": \"/channela/quote\", \"reason\": "));
+    assertEquals(List.of("source,target,status,id", "/channela/campaign,https://example.org/a,308,coremedia:///cap/content/1"),
+            Files.readAllLines(directory.resolve("siteA.csv"), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testDisabled() {
+    EdgeRedirectExporter testling = new EdgeRedirectExporter(redirectsCache, "", "nginx", 0);
+    assertFalse(testling.isEnabled());
+    assertFalse(testling.export("siteA"));
+  }
+
+  private static Redirect redirect(int id, SourceUrlType type, String source, RedirectType redirectType, String target) {
+    return Redirect.builder("coremedia:///cap/content/" + id, type, source, redirectType)
+            .targetUrl(target).status(RedirectStatus.PERMANENT_REDIRECT).build();
+  }
+}
@@ -0,0 +1,64 @@
+package com.tallence.core.redirects.cae.service.index;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the {@link LinearPattern}.
+ */
+public class LinearPatternTest {
+
+  private static final List<String> REGEXES = List.of(
+          "/site/shop/.*", "/site/(a|b)+/\\d{2,4}", "/site/blog/[^/]+\\.html", "/site/[a-c-]?x*?", "/site/\\w+(?:-\\w+)*",
+          "^/site/(?<id>\\d+)$", "/site/.\\u00e4", "/site/\\s*\\.", "(a*)*b", "/site/x{3}|/site/y{0,2}");
+
+  private static final List<String> PATHS = List.of(
+          "/site/shop/", "/site/shop/a/b", "/site/abba/123", "/site/ab/12345", "/site/blog/post.html", "/site/blog/a/b.html",
+          "/site/-xx", "/site/d", "/site/a-b-c", "/site/a--b", "/site/42", "/site/42\n", "/site/😀ä", "/site/ä",
+          "/site/ \t.", "aaab", "aaaa", "/site/xxx", "/site/yy", "/site/", "");
+
+  @Test
+  public void testSameResultAsPattern() {
+    for (String regex : REGEXES) {
+      assertTrue(regex, LinearPattern.isSupported(regex));
+      LinearPattern linear = LinearPattern.compile(List.of(regex));
+      Pattern pattern = Pattern.compile(regex);
+      for (String path : PATHS) {
+        assertEquals(regex + " on " + path, pattern.matcher(path).matches(), linear.match(path) == 0);
+      }
+    }
+  }
+
+  @Test
+  public void testFirstMatchingExpression() {
+    LinearPattern linear = LinearPattern.compile(REGEXES);
+    for (String path : PATHS) {
+      int expected = -1;
+      for (int i = 0; i < REGEXES.size() && expected < 0; i++) {
+        expected = Pattern.compile(REGEXES.get(i)).matcher(path).matches() ? i : -1;
+      }
+      assertEquals(path, expected, linear.match(path));
+    }
+  }
+
+  @Test
+  public void testUnsupported() {
+    for (String regex : List.of("(x)\\1", "a(?=b)", "a(?<!b)", "a++", "(?i)a", "\\bword", "\\Qa.b\\E", "\\p{L}", "[a&&b]",
+            "[a[b]]", "(^a)*", "(a{1000}){1000}")) {
+      assertFalse(regex, LinearPattern.isSupported(regex));
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testNoBacktracking() {
+    LinearPattern linear = LinearPattern.compile(List.of("/site/(.*)*x", "/site/(a|aa)+b"));
+    String path = "/site/" + "a".repeat(100000);
+    assertEquals(-1, linear.match(path));
+    assertEquals(0, linear.match(path + "x"));
+    assertEquals(1, linear.match(path + "b"));
+  }
+}
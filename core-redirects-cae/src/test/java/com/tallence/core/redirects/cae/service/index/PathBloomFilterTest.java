@@ -0,0 +1,33 @@
+package com.tallence.core.redirects.cae.service.index;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the {@link PathBloomFilter}.
+ */
+public class PathBloomFilterTest {
+
+  @Test
+  public void testNoFalseNegatives() {
+    PathBloomFilter filter = PathBloomFilter.create(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      filter.put("/site/page-" + i);
+    }
+    assertFalse(filter.isFull());
+
+    int falsePositives = 0;
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(filter.mightContain("/site/page-" + i));
+      assertTrue(filter.mightContain(RequestPath.of("/Site/Page-" + i + "/")));
+      if (filter.mightContain("/site/other-" + i)) {
+        falsePositives++;
+      }
+    }
+    assertTrue("false positives: " + falsePositives, falsePositives < 200);
+
+    filter.put("/site/one-more");
+    assertTrue(filter.isFull());
+  }
+}
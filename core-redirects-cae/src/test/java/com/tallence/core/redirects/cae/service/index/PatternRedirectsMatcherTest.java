@@ -0,0 +1,130 @@
+package com.tallence.core.redirects.cae.service.index;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the {@link PatternRedirectsMatcher}.
+ */
+public class PatternRedirectsMatcherTest {
+
+  @Test
+  public void testSameResultAsLoop() {
+    List<Pattern> patterns = new ArrayList<>();
+    patterns.add(Pattern.compile("/site/shop/(a|b)+"));
+    patterns.add(Pattern.compile("/site/shop/.*"));
+    patterns.add(Pattern.compile("/site/(blog)/(\\d+)"));
+    patterns.add(Pattern.compile("/site/(x)\\1"));
+    patterns.add(Pattern.compile("/site/.*"));
+
+    PatternRedirectsMatcher matcher = PatternRedirectsMatcher.compile(patterns);
+    assertEquals(patterns.size(), matcher.size());
+
+    for (String path : List.of("/site/shop/abab", "/site/shop/abc", "/site/blog/12", "/site/xx", "/site/other", "/other")) {
+      assertSame(path, loop(patterns, path), matcher.match(path));
+    }
+  }
+
+  @Test
+  public void testOrderAcrossPrefixes() {
+    List<Pattern> patterns = new ArrayList<>();
+    patterns.add(Pattern.compile("/site/shop/legacy/.*"));
+    patterns.add(Pattern.compile("/site/.*"));
+    patterns.add(Pattern.compile("/site/shop/.*"));
+    patterns.add(Pattern.compile("/site/blog|/site/news"));
+    patterns.add(Pattern.compile("/site/shop/legacy/x"));
+
+    PatternRedirectsMatcher matcher = PatternRedirectsMatcher.compile(patterns);
+
+    for (String path : List.of("/site/shop/legacy/x", "/site/shop/a", "/site/news", "/site", "/other/shop")) {
+      assertSame(path, loop(patterns, path), matcher.match(path));
+    }
+  }
+
+  @Test
+  public void testLinearEngine() {
+    List<Pattern> patterns = new ArrayList<>();
+    patterns.add(Pattern.compile("/site/shop/(a|b)+"));
+    patterns.add(Pattern.compile("/site/(x)\\1"));
+    patterns.add(Pattern.compile("/site/shop/.*"));
+    patterns.add(Pattern.compile("/site/(blog)/(\\d+)"));
+    patterns.add(Pattern.compile("/site/.*"));
+
+    PatternRedirectsMatcher matcher = PatternRedirectsMatcher.compile(patterns);
+    PatternMatchPolicy policy = new PatternMatchPolicy(PatternMatchPolicy.Engine.LINEAR, 0);
+
+    for (String path : List.of("/site/shop/abab", "/site/shop/abc", "/site/blog/12", "/site/xx", "/site/other", "/other")) {
+      assertSame(path, loop(patterns, path), matcher.match(path, policy));
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testStepBudget() {
+    Pattern first = Pattern.compile("/site/(a|aa)+b");
+    List<Pattern> patterns = new ArrayList<>();
+    patterns.add(first);
+    patterns.add(Pattern.compile("/site/(a|aa)+\\1b"));
+
+    PatternRedirectsMatcher matcher = PatternRedirectsMatcher.compile(patterns);
+    String path = "/site/" + "a".repeat(60);
+
+    PatternMatchPolicy budget = new PatternMatchPolicy(PatternMatchPolicy.Engine.JAVA, 100000);
+    assertNull(matcher.match(path, budget));
+    assertEquals(1, budget.getAbortedMatches());
+    assertSame(first, matcher.match("/site/aab", budget));
+
+    // The back reference is not supported by the linear engine, it is evaluated with the budget
+    PatternMatchPolicy linear = new PatternMatchPolicy(PatternMatchPolicy.Engine.LINEAR, 100000);
+    assertNull(matcher.match(path, linear));
+    assertEquals(1, linear.getAbortedMatches());
+  }
+
+  @Test
+  public void testSingleSegmentOrder() {
+    List<Pattern> patterns = new ArrayList<>();
+    patterns.add(Pattern.compile("/site/(a)\\1x.*"));
+    patterns.add(Pattern.compile("/site/shop/.*"));
+    patterns.add(Pattern.compile("/site/(a)\\1.*"));
+    patterns.add(Pattern.compile("/site/(b)\\1"));
+
+    PatternRedirectsMatcher matcher = PatternRedirectsMatcher.compile(patterns);
+    PatternMatchPolicy linear = new PatternMatchPolicy(PatternMatchPolicy.Engine.LINEAR, 0);
+
+    // The segments are evaluated one after the other, the earlier matching pattern wins
+    for (String path : List.of("/site/aax", "/site/aay", "/site/bb", "/site/shop/a", "/site/other")) {
+      assertSame(path, loop(patterns, path), matcher.match(path));
+      assertSame(path, loop(patterns, path), matcher.match(path, linear));
+    }
+  }
+
+  @Test
+  public void testLiteralPrefix() {
+    assertEquals("/en/shop/", PatternRedirectsMatcher.literalPrefix(Pattern.compile("/en/shop/.*")));
+    assertEquals("/en/a.html", PatternRedirectsMatcher.literalPrefix(Pattern.compile("/en/a\\.html")));
+    assertEquals("/en/shop", PatternRedirectsMatcher.literalPrefix(Pattern.compile("/en/shops?/.*")));
+    assertEquals("/en/shop", PatternRedirectsMatcher.literalPrefix(Pattern.compile("/en/shop+/.*")));
+    assertEquals("/en/", PatternRedirectsMatcher.literalPrefix(Pattern.compile("/en/(a|b)/.*")));
+    assertEquals("/en/", PatternRedirectsMatcher.literalPrefix(Pattern.compile("/en/\\d+")));
+    assertEquals("", PatternRedirectsMatcher.literalPrefix(Pattern.compile("/en/a|/de/b")));
+    assertEquals("", PatternRedirectsMatcher.literalPrefix(Pattern.compile("/en/a", Pattern.CASE_INSENSITIVE)));
+  }
+
+  @Test
+  public void testEmpty() {
+    assertNull(PatternRedirectsMatcher.compile(List.of()).match("/site/any"));
+  }
+
+  private Pattern loop(List<Pattern> patterns, String path) {
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(path).matches()) {
+        return pattern;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,72 @@
+package com.tallence.core.redirects.cae.service.index;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the {@link PersistentHashMap}.
+ */
+public class PersistentHashMapTest {
+
+  @Test
+  public void testSameContentAsHashMap() {
+    Random random = new Random(42);
+    Map<Key, Integer> expected = new HashMap<>();
+    PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+
+    for (int i = 0; i < 20000; i++) {
+      // Few distinct hashes, to get collisions on every level
+      Key key = new Key(random.nextInt(3000), random.nextInt(50));
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        map = map.minus(key);
+      } else {
+        expected.put(key, i);
+        map = map.plus(key, i);
+      }
+    }
+
+    assertEquals(expected.size(), map.size());
+    assertEquals(expected, map);
+    assertEquals(map, expected);
+    for (Key key : expected.keySet()) {
+      assertEquals(expected.get(key), map.get(key));
+    }
+  }
+
+  @Test
+  public void testOldVersionIsUnchanged() {
+    PersistentHashMap<String, String> first = PersistentHashMap.<String, String>empty().plus("a", "1");
+    PersistentHashMap<String, String> second = first.plus("b", "2").minus("a");
+
+    assertEquals(Map.of("a", "1"), first);
+    assertEquals(Map.of("b", "2"), second);
+    assertSame(second, second.minus("c"));
+  }
+
+  private static class Key {
+
+    private final int id;
+    private final int hash;
+
+    Key(int id, int hash) {
+      this.id = id;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && ((Key) o).id == id && ((Key) o).hash == hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash * 0x9E3779B9;
+    }
+  }
+}
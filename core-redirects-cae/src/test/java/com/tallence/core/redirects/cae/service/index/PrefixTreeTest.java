@@ -0,0 +1,54 @@
+package com.tallence.core.redirects.cae.service.index;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the {@link PrefixTree}.
+ */
+public class PrefixTreeTest {
+
+  @Test
+  public void testForEachPrefixOf() {
+    PrefixTree<String> tree = new PrefixTree<>();
+    tree.put("/en/shop/legacy", "legacy");
+    tree.put("/en/shop", "shop");
+    tree.put("/en/blog", "blog");
+    tree.put("", "root");
+    tree.put("/en/shoe", "shoe");
+
+    assertEquals(5, tree.size());
+    assertEquals(List.of("root", "shop", "legacy"), prefixesOf(tree, "/en/shop/legacy/abc"));
+    assertEquals(List.of("root", "shop"), prefixesOf(tree, "/en/shop/leg"));
+    assertEquals(List.of("root"), prefixesOf(tree, "/en/sh"));
+    assertEquals(List.of("root", "blog"), prefixesOf(tree, "/en/blog"));
+    assertEquals("shoe", tree.get("/en/shoe"));
+    assertNull(tree.get("/en/sho"));
+  }
+
+  @Test
+  public void testLongestPrefixOf() {
+    PrefixTree<String> tree = new PrefixTree<>();
+    tree.put("/old-section", "section");
+    tree.put("/old-section/archive", "archive");
+    tree.put("/old", "old");
+
+    assertEquals("section", tree.longestPrefixOf("/old-section", '/'));
+    assertEquals("section", tree.longestPrefixOf("/old-section/page", '/'));
+    assertEquals("archive", tree.longestPrefixOf("/old-section/archive/2019/page", '/'));
+    assertEquals("section", tree.longestPrefixOf("/old-section/archives", '/'));
+    assertEquals("old", tree.longestPrefixOf("/old/page", '/'));
+    assertNull(tree.longestPrefixOf("/older/page", '/'));
+    assertNull(tree.longestPrefixOf("/ol", '/'));
+  }
+
+  private List<String> prefixesOf(PrefixTree<String> tree, String string) {
+    List<String> result = new ArrayList<>();
+    tree.forEachPrefixOf(string, (length, value) -> result.add(value));
+    return result;
+  }
+}
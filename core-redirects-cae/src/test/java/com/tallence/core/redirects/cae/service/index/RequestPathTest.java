@@ -0,0 +1,47 @@
+package com.tallence.core.redirects.cae.service.index;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for the {@link RequestPath}.
+ */
+public class RequestPathTest {
+
+  @Test
+  public void testSameAsStringNormalization() {
+    for (String pathInfo : List.of("/site/page", "/site/Page/", "/SITE/a-B_c.html", "/", "", "/site/Über/", "/site/page//")) {
+      String expected = pathInfo.toLowerCase(Locale.ROOT);
+      if (expected.endsWith("/")) {
+        expected = expected.substring(0, expected.length() - 1);
+      }
+
+      RequestPath path = RequestPath.of(pathInfo);
+      assertEquals(pathInfo, expected, path.toString());
+      assertEquals(pathInfo, expected.hashCode(), path.hashCode());
+      assertEquals(pathInfo, expected.length(), path.length());
+      assertTrue(pathInfo, path.equals(expected));
+    }
+  }
+
+  @Test
+  public void testLookup() {
+    Map<String, String> map = new HashMap<>();
+    map.put("/site/page", "value");
+    assertEquals("value", map.get(RequestPath.of("/Site/PAGE/")));
+    assertNull(map.get(RequestPath.of("/site/pages")));
+    assertEquals("value", PersistentHashMap.copyOf(map).get(RequestPath.of("/site/Page")));
+  }
+
+  @Test
+  public void testNoCopy() {
+    String pathInfo = "/site/page";
+    assertSame(pathInfo, RequestPath.of(pathInfo).toString());
+  }
+}
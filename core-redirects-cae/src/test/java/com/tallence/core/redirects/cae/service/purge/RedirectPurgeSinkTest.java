@@ -0,0 +1,71 @@
+package com.tallence.core.redirects.cae.service.purge;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for the {@link RedirectPurgeSink}s and the {@link RedirectPurgeEvent}.
+ */
+public class RedirectPurgeSinkTest {
+
+  @Test
+  public void testSurrogateKeys() {
+    assertEquals(List.of("redirect-42", "redirects-channela"),
+            SurrogateKeys.forResponse("coremedia:///cap/content/42", "/channela/a/b"));
+    assertEquals(List.of("redirect-42", "redirects-channela"),
+            SurrogateKeys.forResponse("coremedia:///cap/content/42", "/channela"));
+    assertEquals("redirects-channela", SurrogateKeys.forSite("ChannelA"));
+  }
+
+  @Test
+  public void testEvents() {
+    RedirectPurgeEvent updated = RedirectPurgeEvent.forRedirect(RedirectPurgeEvent.Type.UPDATED, "siteA",
+            "coremedia:///cap/content/42");
+    assertEquals(List.of("redirect-42"), updated.getSurrogateKeys());
+    assertEquals("{\"type\":\"UPDATED\",\"siteId\":\"siteA\",\"redirectId\":\"coremedia:///cap/content/42\","
+            + "\"surrogateKeys\":[\"redirect-42\"],\"timestamp\":" + updated.getTimestamp() + "}", updated.toJson());
+
+    RedirectPurgeEvent site = RedirectPurgeEvent.forSite("siteA", "channela");
+    assertEquals(RedirectPurgeEvent.Type.SITE_UPDATED, site.getType());
+    assertEquals(List.of("redirects-channela"), site.getSurrogateKeys());
+  }
+
+  @Test
+  public void testInMemorySink() {
+    InMemoryRedirectPurgeSink sink = new InMemoryRedirectPurgeSink(2);
+    RedirectPurgeEvent first = RedirectPurgeEvent.forSite("siteA", "channela");
+    RedirectPurgeEvent second = RedirectPurgeEvent.forSite("siteB", "channelb");
+    RedirectPurgeEvent third = RedirectPurgeEvent.forSite("siteC", "channelc");
+    sink.publish(first);
+    sink.publish(second);
+    sink.publish(third);
+
+    assertEquals(List.of(second, third), sink.getEvents());
+    sink.clear();
+    assertTrue(sink.getEvents().isEmpty());
+  }
+
+  @Test
+  public void testFileSink() throws Exception {
+    Path file = Files.createTempFile("redirect-purge", ".jsonl");
+    try {
+      FileRedirectPurgeSink sink = new FileRedirectPurgeSink(file);
+      RedirectPurgeEvent first = RedirectPurgeEvent.forSite("siteA", "channela");
+      RedirectPurgeEvent second = RedirectPurgeEvent.forRedirect(RedirectPurgeEvent.Type.DESTROYED, "siteA",
+              "coremedia:///cap/content/42");
+      sink.publish(first);
+      sink.publish(second);
+
+      assertEquals(List.of(first.toJson(), second.toJson()), Files.readAllLines(file, StandardCharsets.UTF_8));
+    } finally {
+      Files.delete(file);
+    }
+  }
+}
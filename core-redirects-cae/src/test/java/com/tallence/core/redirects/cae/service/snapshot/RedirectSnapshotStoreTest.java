@@ -0,0 +1,179 @@
+package com.tallence.core.redirects.cae.service.snapshot;
+
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.content.ContentRepository;
+import com.coremedia.cap.multisite.Site;
+import com.tallence.core.redirects.cae.model.Redirect;
+import com.tallence.core.redirects.cae.service.RedirectCheckpoint;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import com.tallence.core.redirects.model.RedirectSourceParameter;
+import com.tallence.core.redirects.model.RedirectStatus;
+import com.tallence.core.redirects.model.RedirectTargetParameter;
+import com.tallence.core.redirects.model.RedirectType;
+import com.tallence.core.redirects.model.SourceUrlType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the {@link RedirectSnapshotStore} and the {@link RedirectSnapshot}.
+ */
+public class RedirectSnapshotStoreTest {
+
+  private static final String TARGET_ID = "coremedia:///cap/content/1002";
+
+  private final ConcurrentMap<Site, SiteRedirects> redirectsCache = new ConcurrentHashMap<>();
+  private Path directory;
+  private Content target;
+  private volatile String checkpoint = "1234:5678";
+  private RedirectSnapshotStore testling;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("redirect-snapshots");
+    target = mock(Content.class);
+    when(target.getId()).thenReturn(TARGET_ID);
+    ContentRepository contentRepository = mock(ContentRepository.class);
+    when(contentRepository.getContent(TARGET_ID)).thenReturn(target);
+
+    long now = System.currentTimeMillis();
+    redirectsCache.put(mock(Site.class), SiteRedirects.builder("site/A")
+            .add(Redirect.builder("coremedia:///cap/content/1", SourceUrlType.PLAIN, "/channela/ümlaut", RedirectType.ALWAYS)
+                    .target(target)
+                    .sourceParameters(List.of(new RedirectSourceParameter("utm", "x", RedirectSourceParameter.Operator.EQUALS)))
+                    .targetParameters(List.of(new RedirectTargetParameter("ref", "y")))
+                    .status(RedirectStatus.FOUND)
+                    .targetValidity(now - 1000, now + 60000)
+                    .build())
+            .add(Redirect.builder("coremedia:///cap/content/2", SourceUrlType.REGEX, "/channela/shop/.*",
+                    RedirectType.AFTER_NOT_FOUND).targetUrl("https://example.org/").priority(5).build())
+            .build());
+    RedirectCheckpoint redirectCheckpoint = new RedirectCheckpoint() {
+      @Override
+      public String get() {
+        return checkpoint;
+      }
+    };
+    // The tests save directly: a scheduled retry must not overwrite their snapshots
+    testling = new RedirectSnapshotStore(contentRepository, redirectsCache, redirectCheckpoint, directory.toString(),
+            60_000);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    testling.shutdown();
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Test
+  public void testSaveAndLoad() {
+    assertNull(testling.load("site/A"));
+    assertTrue(testling.save("site/A"));
+    // Same version, nothing to do
+    assertFalse(testling.save("site/A"));
+    assertTrue(Files.exists(directory.resolve("site_A.snapshot")));
+
+    RedirectSnapshot snapshot = testling.load("site/A");
+    assertNotNull(snapshot);
+    assertEquals("site/A", snapshot.getSiteId());
+    assertEquals("1234:5678", snapshot.getCheckpoint());
+    SiteRedirects redirects = snapshot.toSiteRedirects();
+    assertEquals(2, redirects.size());
+
+    Redirect plain = redirects.findPlainRedirects("/channela/ümlaut").get(0);
+    Redirect original = redirectsCache.values().iterator().next().findPlainRedirects("/channela/ümlaut").get(0);
+    assertEquals(original.getContentId(), plain.getContentId());
+    assertEquals(SourceUrlType.PLAIN, plain.getSourceUrlType());
+    assertSame(target, plain.getTarget());
+    assertNull(plain.getTargetUrl());
+    assertEquals(original.getSourceParameters(), plain.getSourceParameters());
+    assertEquals(original.getTargetParameters(), plain.getTargetParameters());
+    assertEquals(RedirectStatus.FOUND, plain.getStatus());
+    assertEquals(original.getTargetValidFrom(), plain.getTargetValidFrom());
+    assertEquals(original.getTargetValidTo(), plain.getTargetValidTo());
+    assertTrue(plain.isTargetValid());
+
+    Redirect pattern = redirects.findPatternRedirects("/channela/shop/abc").get(0);
+    assertEquals(RedirectType.AFTER_NOT_FOUND, pattern.getRedirectType());
+    assertEquals("https://example.org/", pattern.getTargetUrl());
+    assertEquals(5, pattern.getPriority());
+    assertEquals(RedirectStatus.DEFAULT, pattern.getStatus());
+  }
+
+  @Test
+  public void testPendingCheckpoint() {
+    checkpoint = null;
+    // Saved, but retried until the checkpoint is known
+    assertTrue(testling.save("site/A"));
+    assertNull(testling.load("site/A").getCheckpoint());
+
+    checkpoint = "1234:5679";
+    assertTrue(testling.save("site/A"));
+    assertEquals("1234:5679", testling.load("site/A").getCheckpoint());
+    assertFalse(testling.save("site/A"));
+
+    // Changed while other changes are pending: the snapshot with the checkpoint is kept
+    redirectsCache.replaceAll((site, redirects) -> redirects.withoutRedirect("coremedia:///cap/content/2"));
+    checkpoint = null;
+    assertFalse(testling.save("site/A"));
+    assertEquals("1234:5679", testling.load("site/A").getCheckpoint());
+    assertEquals(2, testling.load("site/A").getRedirects().size());
+
+    checkpoint = "1234:5680";
+    assertTrue(testling.save("site/A"));
+    assertEquals(1, testling.load("site/A").getRedirects().size());
+  }
+
+  @Test
+  public void testCorruptSnapshot() throws Exception {
+    assertTrue(testling.save("site/A"));
+    Path file = directory.resolve("site_A.snapshot");
+    byte[] bytes = Files.readAllBytes(file);
+
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+    assertNull(testling.load("site/A"));
+
+    // Another format version
+    bytes[7]++;
+    Files.write(file, bytes);
+    assertNull(testling.load("site/A"));
+    bytes[7]--;
+
+    // A corrupt length of the site id is not allocated
+    bytes[8] = 0x7f;
+    Files.write(file, bytes);
+    assertNull(testling.load("site/A"));
+  }
+
+  @Test
+  public void testDisabled() {
+    RedirectSnapshotStore disabled = new RedirectSnapshotStore(mock(ContentRepository.class), redirectsCache,
+            new RedirectCheckpoint(), " ", 0);
+    assertFalse(disabled.isEnabled());
+    assertFalse(disabled.save("site/A"));
+    assertNull(disabled.load("site/A"));
+  }
+}
@@ -0,0 +1,128 @@
+package com.tallence.core.redirects.cae.service.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test for the {@link KeyedBatchExecutor}.
+ */
+public class KeyedBatchExecutorTest {
+
+  private final Queue<Runnable> executor = new ArrayDeque<>();
+  private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+  private final List<String> batches = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    timer.shutdownNow();
+  }
+
+  @Test
+  public void testMaxSize() {
+    KeyedBatchExecutor<String, String> testling = newTestling(3, 60000);
+    for (String item : List.of("a1", "a2", "b1", "a3")) {
+      testling.submit(item.substring(0, 1), item);
+    }
+    // Only the full batch of "a" is passed before the delay
+    assertEquals(1, executor.size());
+    runAll();
+    assertEquals(List.of("a:a1,a2,a3"), batches);
+
+    testling.submit("a", "a4");
+    assertEquals(0, executor.size());
+    assertEquals(2, testling.getQueueDepth());
+
+    // Items exceeding a full batch are passed right after it
+    for (String item : List.of("a5", "a6", "a7", "a8")) {
+      testling.submit("a", item);
+    }
+    runAll();
+    assertEquals(List.of("a:a1,a2,a3", "a:a4,a5,a6", "a:a7,a8"), batches);
+    assertEquals(1, testling.getQueueDepth());
+  }
+
+  @Test
+  public void testCoalescing() {
+    KeyedBatchExecutor<String, String> testling = newTestling(2, 0);
+    // Items with the same key in their batch: the first character after the key
+    assertTrue(testling.submit("a", "a1x"));
+    assertFalse(testling.submit("a", "a1y"));
+    assertTrue(testling.submit("a", "a2"));
+    assertTrue(testling.submit("a", "a3"));
+    assertEquals(1, testling.getCoalescedItems());
+    assertEquals(3, testling.getQueueDepth());
+    runAll();
+    assertEquals(List.of("a:a1y,a2", "a:a3"), batches);
+    assertEquals(0, testling.getQueueDepth());
+  }
+
+  @Test
+  public void testPause() throws Exception {
+    KeyedBatchExecutor<String, String> testling = newTestling(10, 0);
+    testling.pause("a");
+    testling.submit("a", "a1");
+    testling.submit("a", "a2");
+    testling.submit("b", "b1");
+    runAll();
+    // The other keys are passed
+    assertEquals(List.of("b:b1"), batches);
+    assertEquals(Set.of("a"), testling.getLagMillis().keySet());
+
+    Thread.sleep(2);
+    long rebuild = System.nanoTime();
+    testling.submit("a", "a3");
+    // Submitted again after the rebuild started: kept
+    testling.submit("a", "a1");
+    assertEquals(List.of("a2"), testling.resume("a", rebuild));
+    runAll();
+    assertEquals(List.of("b:b1", "a:a1,a3"), batches);
+    assertEquals(0, testling.getQueueDepth());
+    assertTrue(testling.getLagMillis().isEmpty());
+
+    // Resuming without discarding
+    testling.pause("a");
+    testling.submit("a", "a4");
+    testling.resume("a");
+    runAll();
+    assertEquals(List.of("b:b1", "a:a1,a3", "a:a4"), batches);
+  }
+
+  @Test(timeout = 5000)
+  public void testDelay() throws Exception {
+    CountDownLatch passed = new CountDownLatch(1);
+    KeyedBatchExecutor<String, String> testling = new KeyedBatchExecutor<>(Runnable::run, timer, 100, 50,
+            item -> item, (key, items) -> {
+      batches.add(key + ":" + String.join(",", items));
+      passed.countDown();
+    });
+    testling.submit("a", "a1");
+    testling.submit("a", "a2");
+    passed.await();
+    assertEquals(List.of("a:a1,a2"), batches);
+  }
+
+  private KeyedBatchExecutor<String, String> newTestling(int maxSize, long delayMillis) {
+    return new KeyedBatchExecutor<>(executor::add, timer, maxSize, delayMillis, item -> item.substring(0, 2),
+            (key, items) -> batches.add(key + ":" + String.join(",", items)));
+  }
+
+  private void runAll() {
+    while (!executor.isEmpty()) {
+      executor.poll().run();
+    }
+  }
+}
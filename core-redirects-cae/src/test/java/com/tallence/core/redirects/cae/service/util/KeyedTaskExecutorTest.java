@@ -0,0 +1,134 @@
+package com.tallence.core.redirects.cae.service.util;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test for the {@link KeyedTaskExecutor}.
+ */
+public class KeyedTaskExecutorTest {
+
+  private final Queue<Runnable> executor = new ArrayDeque<>();
+  private final List<String> runs = new ArrayList<>();
+  private final KeyedTaskExecutor<String> testling = new KeyedTaskExecutor<>(executor::add);
+
+  @Test
+  public void testCoalescing() {
+    assertTrue(testling.execute("a", () -> runs.add("a1")));
+    assertFalse(testling.execute("a", () -> runs.add("a2")));
+    assertTrue(testling.execute("b", () -> runs.add("b1")));
+    assertFalse(testling.execute("a", () -> runs.add("a3")));
+
+    assertEquals(2, executor.size());
+    assertEquals(2, testling.getQueueDepth());
+    assertEquals(2, testling.getCoalescedTasks());
+
+    runAll();
+    assertEquals(List.of("a3", "b1"), runs);
+    assertEquals(0, testling.getQueueDepth());
+  }
+
+  @Test
+  public void testOrderPerKey() {
+    testling.execute("a", () -> {
+      runs.add("a1");
+      // Submitted while the first task of the key is running: run afterwards by the same thread
+      assertTrue(testling.execute("a", () -> runs.add("a2")));
+      assertTrue(testling.execute("b", () -> runs.add("b1")));
+    });
+    runAll();
+    assertEquals(List.of("a1", "a2", "b1"), runs);
+
+    // Done, a new task of the key is submitted to the executor again
+    testling.execute("a", () -> runs.add("a3"));
+    assertEquals(1, executor.size());
+  }
+
+  @Test
+  public void testFailingTask() {
+    testling.execute("a", () -> {
+      testling.execute("a", () -> runs.add("a2"));
+      throw new IllegalStateException("expected");
+    });
+    runAll();
+    assertEquals(List.of("a2"), runs);
+  }
+
+  @Test
+  public void testError() {
+    testling.execute("a", () -> {
+      testling.execute("a", () -> runs.add("a2"));
+      throw new AssertionError("expected");
+    });
+    try {
+      executor.poll().run();
+      fail();
+    } catch (AssertionError e) {
+      // The waiting task is run by a new drain
+      runAll();
+    }
+    assertEquals(List.of("a2"), runs);
+    assertEquals(0, testling.getQueueDepth());
+
+    testling.execute("a", () -> runs.add("a3"));
+    runAll();
+    assertEquals(List.of("a2", "a3"), runs);
+  }
+
+  @Test
+  public void testRejected() {
+    AtomicBoolean reject = new AtomicBoolean(true);
+    KeyedTaskExecutor<String> rejecting = new KeyedTaskExecutor<>(task -> {
+      if (reject.getAndSet(false)) {
+        throw new RejectedExecutionException("expected");
+      }
+      executor.add(task);
+    });
+    try {
+      rejecting.execute("a", () -> runs.add("a1"));
+      fail();
+    } catch (RejectedExecutionException e) {
+      assertEquals(0, rejecting.getQueueDepth());
+    }
+    assertTrue(rejecting.execute("a", () -> runs.add("a2")));
+    runAll();
+    assertEquals(List.of("a2"), runs);
+  }
+
+  @Test
+  public void testReplacedWhileRejected() {
+    AtomicBoolean reject = new AtomicBoolean(true);
+    AtomicReference<KeyedTaskExecutor<String>> rejecting = new AtomicReference<>();
+    rejecting.set(new KeyedTaskExecutor<>(task -> {
+      if (reject.getAndSet(false)) {
+        // Another thread replaces the task, before it is rejected
+        assertFalse(rejecting.get().execute("a", () -> runs.add("a2")));
+        throw new RejectedExecutionException("expected");
+      }
+      executor.add(task);
+    }));
+    // The later task is submitted again instead
+    assertTrue(rejecting.get().execute("a", () -> runs.add("a1")));
+    runAll();
+    assertEquals(List.of("a2"), runs);
+    assertEquals(0, rejecting.get().getQueueDepth());
+  }
+
+  private void runAll() {
+    while (!executor.isEmpty()) {
+      executor.poll().run();
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package com.tallence.core.redirects.cae.service.util;
+
+import com.coremedia.cap.multisite.Site;
+import com.tallence.core.redirects.cae.service.SiteRedirects;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test for the {@link SiteFileWriter}.
+ */
+public class SiteFileWriterTest {
+
+  @Test
+  public void testWrite() throws Exception {
+    ConcurrentMap<Site, SiteRedirects> redirectsCache = new ConcurrentHashMap<>();
+    SiteRedirects redirects = SiteRedirects.builder("site/A").build();
+    redirectsCache.put(mock(Site.class), redirects);
+    Path directory = Files.createTempDirectory("site-files").resolve("sub");
+    SiteFileWriter testling = new SiteFileWriter(redirectsCache, directory);
+
+    assertNull(testling.findUnwritten("site/B"));
+    assertSame(redirects, testling.findUnwritten("site/A"));
+
+    Path file = testling.getFile("site/A", ".txt");
+    assertEquals(directory.resolve("site_A.txt"), file);
+    testling.write(file, out -> out.write("first".getBytes(StandardCharsets.UTF_8)));
+    testling.write(file, out -> out.write("second".getBytes(StandardCharsets.UTF_8)));
+    assertEquals("second", Files.readString(file));
+    try (var list = Files.list(directory)) {
+      assertEquals(1, list.count());
+    }
+
+    testling.written("site/A", redirects.getVersion());
+    assertNull(testling.findUnwritten("site/A"));
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 Tallence AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.tallence.core.redirects.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This enum represents the http status code of a redirect.
+ * Permanent redirects (301, 308) may be cached by browsers, temporary ones (302, 307) not. 307 and 308 keep the
+ * request method.
+ */
+public enum RedirectStatus {
+
+  MOVED_PERMANENTLY(301), FOUND(302), TEMPORARY_REDIRECT(307), PERMANENT_REDIRECT(308);
+
+  /**
+   * The status of redirects without a status code.
+   */
+  public static final RedirectStatus DEFAULT = MOVED_PERMANENTLY;
+
+  private static final Map<Integer, RedirectStatus> LOOKUP = new HashMap<>(4);
+
+  static {
+    Arrays.stream(RedirectStatus.values()).forEach(status -> LOOKUP.put(status.code, status));
+  }
+
+  private final int code;
+
+  RedirectStatus(int code) {
+    this.code = code;
+  }
+
+  public int getCode() {
+    return code;
+  }
+
+  /**
+   * Returns the status for the given status code, or {@code null}, if it is no supported redirect status code.
+   */
+  public static RedirectStatus asRedirectStatus(int code) {
+    return LOOKUP.get(code);
+  }
+
+}
@@ -21,12 +21,13 @@ import java.util.Map;
 
 /**
  * This enum represents the type of the source url.
- * An url can either be plain or a regular expression.
+ * An url can either be plain, a regular expression or a prefix. A prefix matches the url itself and all urls below
+ * it, e.g. {@code /old-section} matches {@code /old-section/a/b}, but not {@code /old-sections}.
  */
 public enum SourceUrlType {
-  REGEX, PLAIN;
+  REGEX, PLAIN, PREFIX;
 
-  private static final Map<String, SourceUrlType> LOOKUP = new HashMap<>(2);
+  private static final Map<String, SourceUrlType> LOOKUP = new HashMap<>(3);
 
   static {
     Arrays.stream(SourceUrlType.values()).forEach(sourceUrlType -> LOOKUP.put(sourceUrlType.name(), sourceUrlType));
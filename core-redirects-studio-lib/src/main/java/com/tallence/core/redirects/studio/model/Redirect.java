@@ -19,6 +19,7 @@ package com.tallence.core.redirects.studio.model;
 import com.coremedia.cap.content.Content;
 import com.tallence.core.redirects.model.RedirectParameter;
 import com.tallence.core.redirects.model.RedirectSourceParameter;
+import com.tallence.core.redirects.model.RedirectStatus;
 import com.tallence.core.redirects.model.RedirectTargetParameter;
 import com.tallence.core.redirects.model.RedirectType;
 import com.tallence.core.redirects.model.SourceUrlType;
@@ -89,6 +90,17 @@ public interface Redirect {
    */
   boolean isImported();
 
+  /**
+   * Returns the priority of the redirect: of several matching pattern redirects, the one with the highest priority
+   * wins.
+   */
+  int getPriority();
+
+  /**
+   * Returns the http status of the redirect.
+   */
+  RedirectStatus getStatus();
+
   /**
    * Returns the list of source parameters or an empty list.
    */
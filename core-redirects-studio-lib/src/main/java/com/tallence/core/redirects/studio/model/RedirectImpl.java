@@ -18,6 +18,7 @@ package com.tallence.core.redirects.studio.model;
 
 import com.coremedia.cap.content.Content;
 import com.tallence.core.redirects.model.RedirectSourceParameter;
+import com.tallence.core.redirects.model.RedirectStatus;
 import com.tallence.core.redirects.model.RedirectTargetParameter;
 import com.tallence.core.redirects.model.RedirectType;
 import com.tallence.core.redirects.model.SourceUrlType;
@@ -41,6 +42,8 @@ public class RedirectImpl implements Redirect {
   private RedirectType redirectType;
   private String description;
   private boolean isImported;
+  private int priority;
+  private RedirectStatus status;
   private List<RedirectSourceParameter> sourceParameters;
   private List<RedirectTargetParameter> targetParameters;
 
@@ -64,6 +67,8 @@ public class RedirectImpl implements Redirect {
                       RedirectType redirectType,
                       String description,
                       boolean isImported,
+                      int priority,
+                      RedirectStatus status,
                       List<RedirectSourceParameter> sourceParameters,
                       List<RedirectTargetParameter> targetParameters) {
     this.id = id;
@@ -77,6 +82,8 @@ public class RedirectImpl implements Redirect {
     this.redirectType = redirectType;
     this.description = description;
     this.isImported = isImported;
+    this.priority = priority;
+    this.status = status;
     this.sourceParameters = sourceParameters;
     this.targetParameters = targetParameters;
   }
@@ -136,6 +143,16 @@ public class RedirectImpl implements Redirect {
     return isImported;
   }
 
+  @Override
+  public int getPriority() {
+    return priority;
+  }
+
+  @Override
+  public RedirectStatus getStatus() {
+    return status;
+  }
+
   @Override
   public List<RedirectSourceParameter> getSourceParameters() {
     return sourceParameters;
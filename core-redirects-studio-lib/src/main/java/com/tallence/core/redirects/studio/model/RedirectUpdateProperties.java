@@ -19,6 +19,7 @@ package com.tallence.core.redirects.studio.model;
 import com.coremedia.cap.content.Content;
 import com.tallence.core.redirects.model.RedirectParameter;
 import com.tallence.core.redirects.model.RedirectSourceParameter;
+import com.tallence.core.redirects.model.RedirectStatus;
 import com.tallence.core.redirects.model.RedirectTargetParameter;
 import com.tallence.core.redirects.model.RedirectType;
 import com.tallence.core.redirects.model.SourceUrlType;
@@ -47,6 +48,8 @@ public class RedirectUpdateProperties {
   public static final String REDIRECT_TYPE = "redirectType";
   public static final String DESCRIPTION = "description";
   public static final String IMPORTED = "imported";
+  public static final String PRIORITY = "priority";
+  public static final String STATUS_CODE = "statusCode";
   public static final String SOURCE_PARAMETERS = "sourceParameters";
   public static final String TARGET_PARAMETERS = "targetParameters";
 
@@ -54,9 +57,12 @@ public class RedirectUpdateProperties {
   static final String INVALID_SOURCE_URL_TYPE_VALUE = "sourceUrlType_invalid";
   static final String INVALID_SOURCE_VALUE = "source_invalid";
   static final String INVALID_SOURCE_WHITESPACE = "source_whitespace";
+  static final String INVALID_PREFIX_SOURCE = "source_prefix_invalid";
   static final String SOURCE_ALREADY_EXISTS = "source_already_exists";
   static final String INVALID_REDIRECT_TYPE_VALUE = "redirectType_invalid";
   static final String INVALID_DESCRIPTION_VALUE = "description_invalid";
+  static final String INVALID_PRIORITY_VALUE = "priority_invalid";
+  static final String INVALID_STATUS_CODE_VALUE = "statusCode_invalid";
   static final String MISSING_TARGET_LINK = "target_missing";
   static final String BOTH_TARGET = "target_both";
   static final String INVALID_TARGET_LINK = "target_invalid";
@@ -111,6 +117,14 @@ public class RedirectUpdateProperties {
     return getProperty(IMPORTED, Boolean.class);
   }
 
+  public Integer getPriority() {
+    return Optional.ofNullable(getProperty(PRIORITY, Number.class)).map(Number::intValue).orElse(null);
+  }
+
+  public Integer getStatusCode() {
+    return Optional.ofNullable(getProperty(STATUS_CODE, Number.class)).map(Number::intValue).orElse(null);
+  }
+
   public boolean urlParametersChanged() {
     return sourceParametersChanged() || targetParametersChanged();
   }
@@ -220,6 +234,8 @@ public class RedirectUpdateProperties {
         errors.put(SOURCE, INVALID_SOURCE_VALUE);
       } else if (sourceHasWhitespaces(source)) {
         errors.put(SOURCE, INVALID_SOURCE_WHITESPACE);
+      } else if (getSourceUrlType() == SourceUrlType.PREFIX && !prefixSourceIsValid(source)) {
+        errors.put(SOURCE, INVALID_PREFIX_SOURCE);
       } else if (isNotBlank(redirectId) && repository.sourceAlreadyExists(siteId, redirectId, source, getSourceParameters()) ||
               isBlank(redirectId) && repository.sourceAlreadyExists(siteId, source, getSourceParameters())) {
         errors.put(SOURCE, SOURCE_ALREADY_EXISTS);
@@ -263,6 +279,15 @@ public class RedirectUpdateProperties {
       errors.put(DESCRIPTION, INVALID_DESCRIPTION_VALUE);
     }
 
+    if (properties.get(PRIORITY) != null && getPriority() == null) {
+      errors.put(PRIORITY, INVALID_PRIORITY_VALUE);
+    }
+
+    if (properties.get(STATUS_CODE) != null
+            && (getStatusCode() == null || RedirectStatus.asRedirectStatus(getStatusCode()) == null)) {
+      errors.put(STATUS_CODE, INVALID_STATUS_CODE_VALUE);
+    }
+
     return errors;
   }
 
@@ -270,6 +295,13 @@ public class RedirectUpdateProperties {
     return isNotEmpty(source) && source.startsWith("/") && source.length() < 512;
   }
 
+  /**
+   * A prefix must not contain wildcards: it matches all urls below it anyway.
+   */
+  private static boolean prefixSourceIsValid(String source) {
+    return !source.contains("*");
+  }
+
   private static boolean sourceHasWhitespaces(String source) {
     return isNotEmpty(source) && !source.matches("\\S+"); //only non-whitespace characters
   }
@@ -31,6 +31,7 @@ import com.coremedia.rest.cap.content.search.solr.SolrSearchService;
 import com.tallence.core.redirects.helper.RedirectHelper;
 import com.tallence.core.redirects.model.RedirectParameter;
 import com.tallence.core.redirects.model.RedirectSourceParameter;
+import com.tallence.core.redirects.model.RedirectStatus;
 import com.tallence.core.redirects.model.RedirectTargetParameter;
 import com.tallence.core.redirects.model.RedirectType;
 import com.tallence.core.redirects.model.SourceUrlType;
@@ -69,6 +70,8 @@ public class RedirectRepositoryImpl implements RedirectRepository {
 
   private static final String DESCRIPTION = "description";
   private static final String IMPORTED = "imported";
+  private static final String PRIORITY = "priority";
+  private static final String STATUS_CODE = "statusCode";
   private static final String SOURCE = "source";
   private static final String SOURCE_URL_TYPE = "sourceUrlType";
   private static final String REDIRECT_TYPE = "redirectType";
@@ -324,6 +327,8 @@ public class RedirectRepositoryImpl implements RedirectRepository {
         RedirectType.asRedirectType(redirectEntry.getString(REDIRECT_TYPE)),
         redirectEntry.getString(DESCRIPTION),
         redirectEntry.getBoolean(IMPORTED),
+        redirectEntry.getInt(PRIORITY),
+        Optional.ofNullable(RedirectStatus.asRedirectStatus(redirectEntry.getInt(STATUS_CODE))).orElse(RedirectStatus.DEFAULT),
         RedirectHelper.getSourceParameters(redirectEntry),
         RedirectHelper.getTargetParameters(redirectEntry)
     );
@@ -339,6 +344,8 @@ public class RedirectRepositoryImpl implements RedirectRepository {
   private void updateRedirect(Content redirect, boolean wasPublished, RedirectUpdateProperties updateProperties) {
     updateProperty(updateProperties::getDescription, DESCRIPTION, redirect);
     updateBooleanProperty(updateProperties::getImported, IMPORTED, redirect);
+    updateProperty(updateProperties::getPriority, PRIORITY, redirect);
+    updateProperty(updateProperties::getStatusCode, STATUS_CODE, redirect);
     updateProperty(updateProperties::getSource, SOURCE, redirect);
     updateEnumProperty(updateProperties::getRedirectType, REDIRECT_TYPE, redirect);
     updateEnumProperty(updateProperties::getSourceUrlType, SOURCE_URL_TYPE, redirect);
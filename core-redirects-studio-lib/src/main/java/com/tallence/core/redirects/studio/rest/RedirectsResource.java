@@ -131,7 +131,8 @@ public class RedirectsResource {
                                                    @RequestParam String targetId,
                                                    @RequestParam(required = false) String targetUrl, //it might be not available
                                                    @RequestParam Boolean active,
-                                                   @RequestParam List<RedirectSourceParameter> sourceParameters) {
+                                                   @RequestParam List<RedirectSourceParameter> sourceParameters,
+                                                   @RequestParam(required = false) String sourceUrlType) {
     Map<String, Object> properties = new HashMap<>();
 
     properties.put(ACTIVE, active);
@@ -141,8 +142,9 @@ public class RedirectsResource {
     properties.put(SOURCE_PARAMETERS, sourceParameters);
     // Let's assume default values for the types, so that the validation does not fail.
     // These are not sent by the validation request, as they cannot be empty.
+    // The sourceUrlType is sent by newer clients, a prefix has additional rules for the source.
     properties.put(REDIRECT_TYPE, RedirectType.AFTER_NOT_FOUND.toString());
-    properties.put(SOURCE_URL_TYPE, SourceUrlType.PLAIN.toString());
+    properties.put(SOURCE_URL_TYPE, StringUtils.isNotBlank(sourceUrlType) ? sourceUrlType : SourceUrlType.PLAIN.toString());
 
     Map<String, String> errors = new RedirectUpdateProperties(properties, redirectRepository, siteId, redirectId).validate();
 
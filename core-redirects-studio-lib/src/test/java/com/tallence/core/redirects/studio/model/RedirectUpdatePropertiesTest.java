@@ -27,15 +27,20 @@ import java.util.Map;
 
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.ACTIVE;
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.INVALID_ACTIVE_VALUE;
+import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.INVALID_PREFIX_SOURCE;
+import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.INVALID_PRIORITY_VALUE;
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.INVALID_REDIRECT_TYPE_VALUE;
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.INVALID_SOURCE_URL_TYPE_VALUE;
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.INVALID_SOURCE_VALUE;
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.INVALID_SOURCE_WHITESPACE;
+import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.INVALID_STATUS_CODE_VALUE;
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.INVALID_TARGET_LINK;
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.MISSING_TARGET_LINK;
+import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.PRIORITY;
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.REDIRECT_TYPE;
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.SOURCE;
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.SOURCE_ALREADY_EXISTS;
+import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.STATUS_CODE;
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.SOURCE_URL_TYPE;
 import static com.tallence.core.redirects.studio.model.RedirectUpdateProperties.TARGET_LINK;
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -115,6 +120,48 @@ public class RedirectUpdatePropertiesTest {
   }
 
 
+  @Test
+  public void testUpdateValidationPrefixSource() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put(SOURCE_URL_TYPE, "PREFIX");
+    properties.put(SOURCE, "/old-section/*");
+
+    Map<String, String> errors = new RedirectUpdateProperties(properties, repository, null, "123").validate(true);
+    assertThat(errors.get(SOURCE), equalTo(INVALID_PREFIX_SOURCE));
+
+    properties.put(SOURCE, "/old-section/");
+    errors = new RedirectUpdateProperties(properties, repository, null, "123").validate(true);
+    assertThat(errors.isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void testUpdateValidationPriority() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put(PRIORITY, "high");
+
+    Map<String, String> errors = new RedirectUpdateProperties(properties, repository, null, "123").validate(true);
+    assertThat(errors.get(PRIORITY), equalTo(INVALID_PRIORITY_VALUE));
+
+    properties.put(PRIORITY, 10L);
+    RedirectUpdateProperties updateProperties = new RedirectUpdateProperties(properties, repository, null, "123");
+    assertThat(updateProperties.validate(true).isEmpty(), equalTo(true));
+    assertThat(updateProperties.getPriority(), equalTo(10));
+  }
+
+  @Test
+  public void testUpdateValidationStatusCode() {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put(STATUS_CODE, 303L);
+
+    Map<String, String> errors = new RedirectUpdateProperties(properties, repository, null, "123").validate(true);
+    assertThat(errors.get(STATUS_CODE), equalTo(INVALID_STATUS_CODE_VALUE));
+
+    properties.put(STATUS_CODE, 308L);
+    RedirectUpdateProperties updateProperties = new RedirectUpdateProperties(properties, repository, null, "123");
+    assertThat(updateProperties.validate(true).isEmpty(), equalTo(true));
+    assertThat(updateProperties.getStatusCode(), equalTo(308));
+  }
+
   @Test
   public void testCreateValidationInvalidTargetLink() {
 